@@ -13,6 +13,11 @@ public class JwtConfig {
     private String header = "Authorization";
     private String prefix = "Bearer ";
 
+    // Verified tokens kept in memory, keyed by token hash
+    private long claimsCacheMaxSize = 100_000;
+    // Upper bound on how long a verified token is served from the cache, even if its exp is later
+    private long claimsCacheMaxTtlMs = 300_000;
+
     public String getSecret() {
         return secret;
     }
@@ -36,4 +41,20 @@ public class JwtConfig {
     public void setPrefix(String prefix) {
         this.prefix = prefix;
     }
+
+    public long getClaimsCacheMaxSize() {
+        return claimsCacheMaxSize;
+    }
+
+    public void setClaimsCacheMaxSize(long claimsCacheMaxSize) {
+        this.claimsCacheMaxSize = claimsCacheMaxSize;
+    }
+
+    public long getClaimsCacheMaxTtlMs() {
+        return claimsCacheMaxTtlMs;
+    }
+
+    public void setClaimsCacheMaxTtlMs(long claimsCacheMaxTtlMs) {
+        this.claimsCacheMaxTtlMs = claimsCacheMaxTtlMs;
+    }
 }
@@ -0,0 +1,43 @@
+package vn.tt.practice.apigateway.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Base64UrlNamingStrategy;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    public static final String PRODUCT_EXCHANGE = "product.exchange";
+    public static final String PRODUCT_ROUTING_PATTERN = "product.*";
+
+    @Bean
+    TopicExchange productExchange() {
+        return new TopicExchange(PRODUCT_EXCHANGE);
+    }
+
+    // one auto-delete queue per gateway node: every node has to purge its own in-memory cache
+    @Bean
+    Queue responseCachePurgeQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy("gateway.response-cache."));
+    }
+
+    @Bean
+    Binding responseCachePurgeBinding() {
+        return BindingBuilder
+                .bind(responseCachePurgeQueue())
+                .to(productExchange())
+                .with(PRODUCT_ROUTING_PATTERN);
+    }
+
+    @Bean
+    MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
@@ -0,0 +1,71 @@
+package vn.tt.practice.apigateway.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    // Most requests a node takes from Redis in one script call and then serves locally; sized by the caller's rate
+    private int leaseSize = 10;
+    // Unused leased requests are dropped after this, so a quiet node does not sit on budget
+    private long leaseTtlMs = 1000;
+    // Used when neither the route nor the caller's role has a policy
+    private Policy defaults = new Policy();
+    // Per role, e.g. ROLE_ADMIN; applies to every route without its own entry for that role
+    private Map<String, Policy> roles = new HashMap<>();
+    // Per gateway route id; a route's own roles map wins over the global one
+    private Map<String, RoutePolicy> routes = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        // Requests allowed per period, spread evenly (GCRA), not reset at window edges
+        private long limit = 100;
+        private long periodMs = 60_000;
+        // Requests that may arrive back to back; 0 means the same as limit
+        private long burst = 0;
+
+        public long effectiveBurst() {
+            return burst > 0 ? burst : limit;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class RoutePolicy extends Policy {
+        private Map<String, Policy> roles = new HashMap<>();
+    }
+
+    /**
+     * Most specific policy: route + role, route, role, then defaults.
+     */
+    public Policy resolve(String routeId, Iterable<String> callerRoles) {
+        RoutePolicy route = routeId != null ? routes.get(routeId) : null;
+        if (route != null) {
+            for (String role : callerRoles) {
+                Policy policy = route.getRoles().get(role);
+                if (policy != null) {
+                    return policy;
+                }
+            }
+            return route;
+        }
+        for (String role : callerRoles) {
+            Policy policy = roles.get(role);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return defaults;
+    }
+}
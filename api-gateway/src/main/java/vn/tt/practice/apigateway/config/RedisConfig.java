@@ -1,14 +1,18 @@
 package vn.tt.practice.apigateway.config;
 
-import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
@@ -22,9 +26,22 @@ public class RedisConfig {
         return new ReactiveRedisTemplate<>(factory, context);
     }
 
-    // default rate limiter: replenishRate=10, burstCapacity=20
+    // atomic GCRA check used by GcraRateLimiter, see scripts/gcra_rate_limit.lua
+    @Bean
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RedisScript<List<Long>> gcraRateLimitScript() {
+        return (RedisScript) RedisScript.of(new ClassPathResource("scripts/gcra_rate_limit.lua"), List.class);
+    }
+
+    // monotonic bump of the response cache generation, see scripts/response_cache_generation.lua
+    @Bean
+    public RedisScript<Long> responseCacheGenerationScript() {
+        return RedisScript.of(new ClassPathResource("scripts/response_cache_generation.lua"), Long.class);
+    }
+
+    // pub/sub subscriptions, e.g. token revocations from user-service
     @Bean
-    public RedisRateLimiter defaultRateLimiter() {
-        return new RedisRateLimiter(10, 20);
+    public ReactiveRedisMessageListenerContainer reactiveRedisMessageListenerContainer(ReactiveRedisConnectionFactory factory) {
+        return new ReactiveRedisMessageListenerContainer(factory);
     }
 }
@@ -0,0 +1,28 @@
+package vn.tt.practice.apigateway.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Configuration
+@ConfigurationProperties(prefix = "response-cache")
+@Getter
+@Setter
+public class ResponseCacheProperties {
+
+    private boolean enabled = true;
+    // Gateway route ids whose GET responses may be cached; responses must not depend on the caller
+    private Set<String> routes = new HashSet<>();
+    // Used when the service sends no max-age / s-maxage
+    private long defaultTtlMs = 30_000;
+    // Total size of cached bodies and headers held in memory on each node
+    private long maxBytes = 64L * 1024 * 1024;
+    // Larger responses are passed through without being cached
+    private int maxEntryBytes = 512 * 1024;
+    // Second tier shared by all gateway nodes
+    private boolean redisEnabled = false;
+}
@@ -0,0 +1,22 @@
+package vn.tt.practice.apigateway.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "jwt.revocation")
+@Getter
+@Setter
+public class RevocationProperties {
+
+    // Revoked tokens the Bloom filter is sized for; past this the false-positive rate climbs
+    private int expectedRevocations = 100_000;
+    // Share of live tokens that hit the filter and cost one Redis lookup
+    private double falsePositiveRate = 0.001;
+    // Filter is rebuilt from the bl_* keys this often, dropping expired tokens and anything missed while disconnected
+    private long rebuildIntervalMs = 600_000;
+    // How long a Redis answer for a filter hit is reused; a new revocation always overrides it
+    private long confirmTtlMs = 60_000;
+}
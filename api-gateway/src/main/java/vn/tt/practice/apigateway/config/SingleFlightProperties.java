@@ -0,0 +1,33 @@
+package vn.tt.practice.apigateway.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "single-flight")
+@Getter
+@Setter
+public class SingleFlightProperties {
+
+    private boolean enabled = true;
+    // Responses larger than this are streamed to the leader only; waiting callers then make their own call
+    private int maxBufferedBytes = 1024 * 1024;
+    // Followers give up waiting on the leader after this and call the service themselves
+    private long maxWaitMs = 10_000;
+    // Opted-in gateway route ids; only GET and HEAD requests are coalesced
+    private Map<String, Route> routes = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Route {
+        // Ant patterns whose responses are the same for every caller; other paths are coalesced per user
+        private List<String> sharedPaths = new ArrayList<>();
+    }
+}
@@ -0,0 +1,18 @@
+package vn.tt.practice.apigateway.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Subset of product-service's ProductEvent needed to purge cached catalog responses.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductEvent {
+    private String eventType; // CREATED, UPDATED, DELETED
+    private Long productId;
+}
@@ -0,0 +1,37 @@
+package vn.tt.practice.apigateway.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.apigateway.util.ResponseCache;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResponseCachePurgeListener {
+
+    private final ResponseCache responseCache;
+
+    @RabbitListener(queues = "#{responseCachePurgeQueue.name}")
+    public void handleProductEvent(ProductEvent event,
+                                   @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+        log.debug("Purging cached catalog responses for {} of productId={}", event.getEventType(), event.getProductId());
+        responseCache.purgeProduct(event.getProductId(), eventSeq(messageId));
+    }
+
+    // the outbox relay sets "<source>:<outbox id>"; the id is the same on every node and grows with each event
+    private static long eventSeq(String messageId) {
+        if (messageId == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(messageId.substring(messageId.lastIndexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            log.warn("Product event without an outbox message id: {}", messageId);
+            return -1;
+        }
+    }
+}
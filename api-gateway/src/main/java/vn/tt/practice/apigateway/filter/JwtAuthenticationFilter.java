@@ -18,9 +18,9 @@ import reactor.core.publisher.Mono;
 import vn.tt.practice.apigateway.config.JwtConfig;
 import vn.tt.practice.apigateway.dto.ApiResponse;
 import vn.tt.practice.apigateway.util.JwtUtil;
+import vn.tt.practice.apigateway.util.TokenRevocationList;
 
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 
 @Slf4j
@@ -28,10 +28,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
+    /** Exchange attribute holding the caller's {@link JwtUtil.VerifiedToken}; absent for anonymous requests. */
+    public static final String VERIFIED_TOKEN_ATTR = JwtAuthenticationFilter.class.getName() + ".verifiedToken";
+
     private static final String CODE_UNAUTHORIZED = "UNAUTHORIZED";
     private static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final String USER_ID_HEADER = "X-User-Id";
+    private static final String USER_ROLES_HEADER = "X-User-Roles";
 
     private final JwtUtil jwtUtil;
+    private final TokenRevocationList revocationList;
     private final JwtConfig jwtConfig;
     private final ObjectMapper objectMapper;
 
@@ -39,9 +45,14 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         String path = exchange.getRequest().getPath().value();
 
-        // Allow /api/auth/** without token
+        // Allow /api/auth/** without token; identity headers only ever come from a verified token
         if (path.startsWith("/api/auth/") || path.startsWith("/products/")) {
-            return chain.filter(exchange);
+            return chain.filter(exchange.mutate()
+                    .request(b -> b.headers(headers -> {
+                        headers.remove(USER_ID_HEADER);
+                        headers.remove(USER_ROLES_HEADER);
+                    }))
+                    .build());
         }
 
         String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
@@ -54,21 +65,35 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
             return unauthorized(exchange, "Empty token", path);
         }
 
+        JwtUtil.VerifiedToken verified;
         try {
-            jwtUtil.validateToken(token);
+            verified = jwtUtil.verify(token);
         } catch (JwtException e) {
             log.debug("JWT validation failed: {}", e.getMessage());
             return unauthorized(exchange, "Invalid or expired token", path);
         }
 
-        String userId = jwtUtil.extractUserId(token);
-        List<String> roles = jwtUtil.extractRoles(token);
-        String rolesHeader = roles != null ? String.join(",", roles) : "";
+        if (!revocationList.mightBeRevoked(verified.tokenId())) {
+            return forward(exchange, chain, verified);
+        }
+        return revocationList.isRevoked(token, verified.tokenId())
+                .flatMap(revoked -> revoked
+                        ? unauthorized(exchange, "Token has been revoked", path)
+                        : forward(exchange, chain, verified));
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, JwtUtil.VerifiedToken verified) {
+        String userId = verified.userId();
+        String rolesHeader = String.join(",", verified.roles());
 
+        // set, not add: a client-supplied value must not survive next to the verified one
         ServerWebExchange mutated = exchange.mutate()
-                .request(b -> b.header("X-User-Id", userId != null ? userId : "")
-                        .header("X-User-Roles", rolesHeader))
+                .request(b -> b.headers(headers -> {
+                    headers.set(USER_ID_HEADER, userId != null ? userId : "");
+                    headers.set(USER_ROLES_HEADER, rolesHeader);
+                }))
                 .build();
+        mutated.getAttributes().put(VERIFIED_TOKEN_ATTR, verified);
 
         return chain.filter(mutated);
     }
@@ -91,6 +116,6 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
     @Override
     public int getOrder() {
-        return -2; // Run before RateLimitFilter (-1) so X-User-Id is set for rate limit
+        return -5; // Run before RateLimitFilter (-4) so the verified token is known for rate limit
     }
 }
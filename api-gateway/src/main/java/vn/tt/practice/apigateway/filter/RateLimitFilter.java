@@ -6,51 +6,62 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import vn.tt.practice.apigateway.config.RateLimitProperties;
 import vn.tt.practice.apigateway.dto.ApiResponse;
+import vn.tt.practice.apigateway.util.GcraRateLimiter;
+import vn.tt.practice.apigateway.util.JwtUtil;
 
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.util.List;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class RateLimitFilter implements GlobalFilter, Ordered {
 
-    private static final int REQUEST_LIMIT = 100;
-    private static final Duration TIME_WINDOW = Duration.ofMinutes(1);
     private static final String CODE_RATE_LIMIT = "RATE_LIMIT_EXCEEDED";
     private static final String REQUEST_ID_HEADER = "X-Request-Id";
 
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final GcraRateLimiter rateLimiter;
+    private final RateLimitProperties properties;
     private final ObjectMapper objectMapper;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        String userId = exchange.getRequest().getHeaders().getFirst("X-User-Id");
+        if (!properties.isEnabled()) {
+            return chain.filter(exchange);
+        }
+
+        // identity from the token JwtAuthenticationFilter verified, never from request headers;
+        // anonymous callers are limited per IP with the route's or the default policy
+        JwtUtil.VerifiedToken verified = exchange.getAttribute(JwtAuthenticationFilter.VERIFIED_TOKEN_ATTR);
+        String userId = verified != null ? verified.userId() : null;
+        List<String> roles = verified != null ? verified.roles() : List.of();
         String clientIp = exchange.getRequest().getRemoteAddress() != null
                 ? exchange.getRequest().getRemoteAddress().getAddress().getHostAddress()
                 : "unknown";
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : null;
 
-        String key = "rate_limit:" + (userId != null ? userId : clientIp);
+        String key = "rate_limit:" + (routeId != null ? routeId : "-") + ":"
+                + (userId != null && !userId.isEmpty() ? "user:" + userId : "ip:" + clientIp);
 
-        return redisTemplate.opsForValue().increment(key)
-                .flatMap(count -> {
-                    if (count == 1) {
-                        return redisTemplate.expire(key, TIME_WINDOW).thenReturn(count);
-                    }
-                    return Mono.just(count);
-                })
-                .flatMap(count -> {
-                    if (count > REQUEST_LIMIT) {
-                        log.warn("Rate limit exceeded for client: {}", key);
+        return rateLimiter.acquire(key, properties.resolve(routeId, roles))
+                .flatMap(decision -> {
+                    if (!decision.allowed()) {
+                        log.debug("Rate limit exceeded for client: {}", key);
+                        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                                Long.toString(Math.max(1, (decision.retryAfterMs() + 999) / 1000)));
                         return writeApiResponse(exchange, HttpStatus.TOO_MANY_REQUESTS,
                                 ApiResponse.error("Quá nhiều request. Vui lòng thử lại sau.", CODE_RATE_LIMIT,
                                         exchange.getRequest().getPath().value(),
@@ -76,8 +87,6 @@ public class RateLimitFilter implements GlobalFilter, Ordered {
 
     @Override
     public int getOrder() {
-        return -1; // Run before other filters (but after Auth filter if I set Auth order < -1)
-        // Wait, Auth filter must run BEFORE Rate Limit if we want to use User ID.
-        // So Auth Filter should be -2, Rate Limit -1.
+        return -4; // after JwtAuthenticationFilter (-5) so the verified token is known, before ResponseCacheFilter (-3)
     }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package vn.tt.practice.apigateway.filter;
+
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vn.tt.practice.apigateway.config.ResponseCacheProperties;
+import vn.tt.practice.apigateway.util.ResponseCache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Serves GETs of opted-in routes from {@link ResponseCache} and stores 200 responses the services allow to be
+ * shared. Honours the service's Cache-Control (no-store, private, s-maxage, max-age), gives every cached
+ * response an ETag and answers a matching If-None-Match with 304.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private final ResponseCache responseCache;
+    private final ResponseCacheProperties properties;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!properties.isEnabled() || request.getMethod() != HttpMethod.GET
+                || route == null || !properties.getRoutes().contains(route.getId())) {
+            return chain.filter(exchange);
+        }
+
+        String key = cacheKey(request);
+        Mono<ResponseCache.CachedResponse> lookup = hasNoCache(request.getHeaders())
+                ? Mono.empty()
+                : responseCache.get(key);
+        return lookup.map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(cached -> cached.isPresent()
+                        ? serve(exchange, cached.get())
+                        : chain.filter(exchange.mutate().response(capturing(exchange.getResponse(), key)).build()));
+    }
+
+    private Mono<Void> serve(ServerWebExchange exchange, ResponseCache.CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.etag());
+        if (cached.contentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, cached.contentType());
+        }
+        if (cached.cacheControl() != null) {
+            headers.setCacheControl(cached.cacheControl());
+        }
+        headers.set(HttpHeaders.AGE, Long.toString((System.currentTimeMillis() - cached.storedAtMillis()) / 1000));
+        headers.set(CACHE_STATUS_HEADER, "HIT");
+
+        if (matchesIfNoneMatch(exchange.getRequest().getHeaders(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private ServerHttpResponse capturing(ServerHttpResponse original, String key) {
+        return new ServerHttpResponseDecorator(original) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpHeaders headers = getDelegate().getHeaders();
+                long ttlMs = ttlMs(getStatusCode(), headers);
+                if (ttlMs <= 0 || headers.getContentLength() > properties.getMaxEntryBytes()) {
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(Flux.from(body)).flatMap(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+
+                    String etag = headers.getETag() != null ? headers.getETag() : weakEtag(bytes);
+                    headers.setETag(etag);
+                    headers.set(CACHE_STATUS_HEADER, "MISS");
+                    if (bytes.length <= properties.getMaxEntryBytes()) {
+                        long now = System.currentTimeMillis();
+                        String contentType = headers.getContentType() != null ? headers.getContentType().toString() : null;
+                        responseCache.put(key, new ResponseCache.CachedResponse(bytes, contentType, etag,
+                                headers.getCacheControl(), now, now + ttlMs));
+                    }
+                    return getDelegate().writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+        };
+    }
+
+    // 0 means do not store
+    private long ttlMs(HttpStatusCode status, HttpHeaders headers) {
+        if (status == null || status.value() != HttpStatus.OK.value() || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return 0;
+        }
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl == null) {
+            return properties.getDefaultTtlMs();
+        }
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            String d = directive.trim();
+            if (d.equals("no-store") || d.equals("private") || d.equals("no-cache")) {
+                return 0;
+            }
+            if (d.startsWith("s-maxage=")) {
+                sharedMaxAge = parseSeconds(d.substring("s-maxage=".length()));
+            } else if (d.startsWith("max-age=")) {
+                maxAge = parseSeconds(d.substring("max-age=".length()));
+            }
+        }
+        long seconds = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        return seconds >= 0 ? seconds * 1000 : properties.getDefaultTtlMs();
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // path plus query parameters sorted by name and value, so ?a=1&b=2 and ?b=2&a=1 share an entry
+    private static String cacheKey(ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(request.getPath().value());
+        Map<String, List<String>> params = new TreeMap<>(request.getQueryParams());
+        char separator = '?';
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            List<String> values = new ArrayList<>(param.getValue());
+            values.sort(null);
+            for (String value : values) {
+                key.append(separator).append(param.getKey()).append('=').append(value != null ? value : "");
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean hasNoCache(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        return (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-cache"))
+                || "no-cache".equalsIgnoreCase(headers.getPragma());
+    }
+
+    private static boolean matchesIfNoneMatch(HttpHeaders headers, String etag) {
+        String opaque = stripWeak(etag);
+        for (String candidate : headers.getIfNoneMatch()) {
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String weakEtag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return -3; // after JwtAuthenticationFilter (-5) and RateLimitFilter (-4), before NettyWriteResponseFilter (-1)
+    }
+}
@@ -0,0 +1,194 @@
+package vn.tt.practice.apigateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import vn.tt.practice.apigateway.config.SingleFlightProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces identical concurrent GET/HEAD requests of opted-in routes into one upstream call.
+ * <p>
+ * The first request for a key (the leader) goes downstream; requests arriving while it is in flight (followers)
+ * wait for its buffered response and get a copy. The key is dropped as soon as the leader's response is
+ * captured, so this never serves anything older than an in-flight call. If the response cannot be shared
+ * (too large, Set-Cookie, error or cancellation) or the leader is too slow, followers make their own call.
+ */
+@Component
+public class SingleFlightFilter implements GlobalFilter, Ordered {
+
+    private static final List<String> UNSHARED_HEADERS = List.of(HttpHeaders.TRANSFER_ENCODING,
+            HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, HttpHeaders.SET_COOKIE);
+
+    private final SingleFlightProperties properties;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter fallbacks;
+
+    public SingleFlightFilter(SingleFlightProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.leaders = requests(meterRegistry, "leader");
+        this.followers = requests(meterRegistry, "follower");
+        this.fallbacks = requests(meterRegistry, "fallback");
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        SingleFlightProperties.Route settings = route != null ? properties.getRoutes().get(route.getId()) : null;
+        if (!properties.isEnabled() || settings == null
+                || (request.getMethod() != HttpMethod.GET && request.getMethod() != HttpMethod.HEAD)) {
+            return chain.filter(exchange);
+        }
+
+        String key = flightKey(request, settings);
+        Flight flight = new Flight();
+        Flight leading = inFlight.putIfAbsent(key, flight);
+        if (leading != null) {
+            followers.increment();
+            return follow(exchange, chain, leading);
+        }
+
+        leaders.increment();
+        return chain.filter(exchange.mutate().response(capturing(exchange.getResponse(), key, flight)).build())
+                .doFinally(signal -> {
+                    inFlight.remove(key, flight);
+                    // no captured response (error, cancel, empty body): let followers go downstream themselves
+                    flight.result.tryEmitEmpty();
+                });
+    }
+
+    private Mono<Void> follow(ServerWebExchange exchange, GatewayFilterChain chain, Flight leading) {
+        return leading.result.asMono()
+                .timeout(Duration.ofMillis(properties.getMaxWaitMs()), Mono.empty())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(shared -> {
+                    if (shared.isEmpty()) {
+                        fallbacks.increment();
+                        return chain.filter(exchange);
+                    }
+                    return write(exchange.getResponse(), shared.get());
+                });
+    }
+
+    private Mono<Void> write(ServerHttpResponse response, SharedResponse shared) {
+        response.setStatusCode(shared.status());
+        response.getHeaders().putAll(shared.headers());
+        response.getHeaders().setContentLength(shared.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    private ServerHttpResponse capturing(ServerHttpResponse original, String key, Flight flight) {
+        return new ServerHttpResponseDecorator(original) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpHeaders headers = getDelegate().getHeaders();
+                if (headers.containsKey(HttpHeaders.SET_COOKIE)
+                        || headers.getContentLength() > properties.getMaxBufferedBytes()) {
+                    release();
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(Flux.from(body)).flatMap(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+
+                    if (bytes.length <= properties.getMaxBufferedBytes()) {
+                        inFlight.remove(key, flight);
+                        flight.result.tryEmitValue(new SharedResponse(getStatusCode(), copyOf(headers), bytes));
+                    } else {
+                        release();
+                    }
+                    return getDelegate().writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+
+            private void release() {
+                inFlight.remove(key, flight);
+                flight.result.tryEmitEmpty();
+            }
+        };
+    }
+
+    private static HttpHeaders copyOf(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        headers.forEach((name, values) -> {
+            if (UNSHARED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                copy.put(name, new ArrayList<>(values));
+            }
+        });
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    // method, path and sorted query; the caller's identity too unless the path is declared shared
+    private String flightKey(ServerHttpRequest request, SingleFlightProperties.Route settings) {
+        String path = request.getPath().value();
+        StringBuilder key = new StringBuilder(request.getMethod().name()).append(' ').append(path);
+        Map<String, List<String>> params = new TreeMap<>(request.getQueryParams());
+        char separator = '?';
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            List<String> values = new ArrayList<>(param.getValue());
+            values.sort(null);
+            for (String value : values) {
+                key.append(separator).append(param.getKey()).append('=').append(value != null ? value : "");
+                separator = '&';
+            }
+        }
+        boolean shared = settings.getSharedPaths().stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+        if (!shared) {
+            HttpHeaders headers = request.getHeaders();
+            key.append(" user=").append(headers.getFirst("X-User-Id"))
+                    .append(" roles=").append(headers.getFirst("X-User-Roles"))
+                    .append(" auth=").append(headers.getFirst(HttpHeaders.AUTHORIZATION));
+        }
+        return key.toString();
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("gateway.singleflight.requests")
+                .description("Coalescable requests: leaders go downstream, followers share a leader's response")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        return -2; // after ResponseCacheFilter (-3), so only cache misses are coalesced; before NettyWriteResponseFilter (-1)
+    }
+
+    private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {}
+
+    private static final class Flight {
+        private final Sinks.One<SharedResponse> result = Sinks.one();
+    }
+}
@@ -0,0 +1,196 @@
+package vn.tt.practice.apigateway.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import vn.tt.practice.apigateway.config.RateLimitProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA rate limiter with one atomic Redis script call per lease instead of per request.
+ * <p>
+ * A script call asks for as many requests as the caller's rate since the previous call would use within
+ * {@code rate-limit.lease-ttl-ms}, at most {@code rate-limit.lease-size}; whatever is granted beyond the current
+ * request is served from memory until used or until the lease expires. Leased requests are already charged in
+ * Redis, so the global limit holds across nodes. A new or slow caller leases one request at a time, so the
+ * requests lost with an expired lease stay in proportion to the caller's actual traffic. A rejection is
+ * remembered until its retry time, so a throttled caller does not reach Redis either.
+ */
+@Slf4j
+@Component
+public class GcraRateLimiter {
+
+    private static final Mono<Decision> ALLOWED = Mono.just(new Decision(true, 0));
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final RedisScript<List<Long>> script;
+    private final RateLimitProperties properties;
+    private final Cache<String, Lease> leases;
+    private final Counter servedLocally;
+    private final Counter servedByRedis;
+    private final Counter rejected;
+
+    public GcraRateLimiter(ReactiveRedisTemplate<String, String> redisTemplate,
+                           RedisScript<List<Long>> gcraRateLimitScript,
+                           RateLimitProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.script = gcraRateLimitScript;
+        this.properties = properties;
+        this.leases = Caffeine.newBuilder()
+                .expireAfter(new UntilLeaseOrBlockEnds(properties.getLeaseTtlMs()))
+                .build();
+        this.servedLocally = decisions(meterRegistry, "local");
+        this.servedByRedis = decisions(meterRegistry, "redis");
+        this.rejected = decisions(meterRegistry, "rejected");
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("gateway.ratelimit.decisions")
+                .description("Rate limit decisions by where they were made")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Fails open: if Redis cannot be reached the request is allowed.
+     */
+    public Mono<Decision> acquire(String key, RateLimitProperties.Policy policy) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.getIfPresent(key);
+        long burst = policy.effectiveBurst();
+        long wanted = 1;
+        if (lease != null) {
+            if (lease.tryTake()) {
+                servedLocally.increment();
+                lease.demand.incrementAndGet();
+                return ALLOWED;
+            }
+            long blockedUntil = lease.blockedUntil;
+            if (blockedUntil > now) {
+                rejected.increment();
+                return Mono.just(new Decision(false, blockedUntil - now));
+            }
+            wanted = leaseSize(lease.demand.getAndSet(0) + 1, now - lease.refilledAt,
+                    properties.getLeaseTtlMs(), Math.min(properties.getLeaseSize(), burst));
+        }
+
+        long emissionMicros = emissionMicros(policy);
+        List<String> args = List.of(Long.toString(emissionMicros), Long.toString(emissionMicros * burst),
+                Long.toString(wanted));
+
+        return redisTemplate.execute(script, List.of(key), args)
+                .reduce(new ArrayList<Long>(), (all, part) -> {
+                    all.addAll(part);
+                    return all;
+                })
+                .map(result -> {
+                    long granted = result.get(0);
+                    if (granted <= 0) {
+                        long retryAfterMs = result.get(1);
+                        leases.asMap().compute(key, (k, old) -> (old != null ? old : new Lease(now)).block(now + retryAfterMs));
+                        rejected.increment();
+                        return new Decision(false, retryAfterMs);
+                    }
+                    leases.asMap().compute(key, (k, old) -> (old != null ? old : new Lease(now)).refill(now, granted - 1));
+                    servedByRedis.increment();
+                    return new Decision(true, 0);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Rate limit check failed, letting request through: {}", e.getMessage());
+                    return ALLOWED;
+                });
+    }
+
+    /**
+     * GCRA emission interval: the policy's period divided by its limit, in microseconds, never below 1.
+     */
+    static long emissionMicros(RateLimitProperties.Policy policy) {
+        return Math.max(1, policy.getPeriodMs() * 1000 / Math.max(1, policy.getLimit()));
+    }
+
+    /**
+     * Requests to ask Redis for: what {@code demand} requests over {@code elapsedMs} would use up within one lease
+     * lifetime, between 1 and {@code maxLease}.
+     */
+    static long leaseSize(long demand, long elapsedMs, long leaseTtlMs, long maxLease) {
+        if (demand <= 0 || maxLease <= 1) {
+            return 1;
+        }
+        long expected = demand * leaseTtlMs / Math.max(1, elapsedMs);
+        return Math.max(1, Math.min(expected, maxLease));
+    }
+
+    public record Decision(boolean allowed, long retryAfterMs) {}
+
+    private static final class Lease {
+        private final AtomicLong remaining = new AtomicLong();
+        // requests seen since the last script call, the basis of the next lease's size
+        private final AtomicLong demand = new AtomicLong();
+        private volatile long refilledAt;
+        private volatile long blockedUntil;
+
+        Lease(long now) {
+            this.refilledAt = now;
+        }
+
+        boolean tryTake() {
+            long current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        Lease refill(long now, long requests) {
+            remaining.addAndGet(requests);
+            refilledAt = now;
+            blockedUntil = 0;
+            return this;
+        }
+
+        Lease block(long until) {
+            blockedUntil = until;
+            return this;
+        }
+    }
+
+    // unused leased requests go after lease-ttl-ms, but a rejection is kept for its whole Retry-After
+    private static final class UntilLeaseOrBlockEnds implements Expiry<String, Lease> {
+        private final long leaseTtlMs;
+
+        private UntilLeaseOrBlockEnds(long leaseTtlMs) {
+            this.leaseTtlMs = leaseTtlMs;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Lease lease, long currentTime) {
+            long blockedMs = lease.blockedUntil - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(leaseTtlMs, blockedMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Lease lease, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, lease, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Lease lease, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
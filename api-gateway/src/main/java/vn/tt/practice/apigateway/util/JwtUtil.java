@@ -1,52 +1,107 @@
 package vn.tt.practice.apigateway.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.apigateway.config.JwtConfig;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Verifies access tokens with one parser built at startup and remembers verified tokens until they expire,
+ * so a token is parsed and its signature checked once per node instead of once per request.
+ */
 @Component
 public class JwtUtil {
 
 //    @Value("${jwt.secret}")
     private String secret = "your-256-bit-secret-key-change-this-in-production";
 
-    private SecretKey getSignKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private final JwtParser parser;
+    private final long maxTtlMs;
+    private final Cache<String, VerifiedToken> verified;
+
+    public JwtUtil(JwtConfig jwtConfig, MeterRegistry meterRegistry) {
+        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.maxTtlMs = jwtConfig.getClaimsCacheMaxTtlMs();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getClaimsCacheMaxSize())
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwtClaims");
     }
 
-    public void validateToken(String token) {
-        Jwts.parser().verifyWith(getSignKey()).build().parseSignedClaims(token);
+    /**
+     * Checks signature and expiry and returns the claims the gateway forwards.
+     * Invalid tokens are never cached, so they are rejected again on every call.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        String tokenId = tokenId(token);
+        VerifiedToken cached = verified.getIfPresent(tokenId);
+        if (cached != null) {
+            return cached;
+        }
+        VerifiedToken parsed = parse(token, tokenId);
+        verified.put(tokenId, parsed);
+        return parsed;
     }
 
-    public String extractUserId(String token) {
-        return extractClaim(token, Claims::getSubject);
+    /**
+     * Base64 SHA-256 of the token; user-service publishes revocations under the same id.
+     */
+    public static String tokenId(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
-    public List<String> extractRoles(String token) {
-        String role = extractClaim(token, c -> c.get("roles", String.class));
-        return role != null ? List.of(role) : List.of();
+    private VerifiedToken parse(String token, String tokenId) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        String role = claims.get("roles", String.class);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(tokenId, claims.getSubject(), role != null ? List.of(role) : List.of(),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
     }
 
+    public record VerifiedToken(String tokenId, String userId, List<String> roles, long expiresAtMillis) {}
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
+    private final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            long remainingMs = Math.min(token.expiresAtMillis() - System.currentTimeMillis(), maxTtlMs);
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
-}
\ No newline at end of file
+}
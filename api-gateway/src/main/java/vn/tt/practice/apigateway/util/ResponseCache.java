@@ -0,0 +1,188 @@
+package vn.tt.practice.apigateway.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import vn.tt.practice.apigateway.config.ResponseCacheProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cached GET responses: a byte-bounded in-memory tier on every node and an optional Redis tier shared by all.
+ * <p>
+ * Redis keys carry a generation number; a purge raises it to the product event's outbox id instead of scanning
+ * for keys, which orphans every Redis entry at once and leaves them to their TTL. All nodes receive the same
+ * event and propose the same number, so they agree on the generation without coordinating.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    private static final String REDIS_PREFIX = "gateway:response:";
+    private static final String REDIS_GENERATION_KEY = "gateway:response:generation";
+    private static final Pattern PRODUCT_DETAIL = Pattern.compile("^/api/products/(\\d+)(/[^?]*)?(\\?.*)?$");
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final RedisScript<Long> generationScript;
+    private final ObjectMapper objectMapper;
+    private final ResponseCacheProperties properties;
+    private final Cache<String, CachedResponse> local;
+    private volatile long generation;
+
+    public ResponseCache(ReactiveRedisTemplate<String, String> redisTemplate,
+                         RedisScript<Long> responseCacheGenerationScript,
+                         ObjectMapper objectMapper,
+                         ResponseCacheProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.generationScript = responseCacheGenerationScript;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.local = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxBytes())
+                .weigher((String key, CachedResponse response) -> response.weight(key))
+                .expireAfter(new UntilResponseExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "gatewayResponses");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isRedisEnabled()) {
+            return;
+        }
+        redisTemplate.opsForValue().get(REDIS_GENERATION_KEY)
+                .subscribe(value -> generation = Long.parseLong(value),
+                        e -> log.warn("Cannot read response cache generation, starting at {}: {}",
+                                generation, e.getMessage()));
+    }
+
+    public Mono<CachedResponse> get(String key) {
+        CachedResponse cached = local.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        if (!properties.isRedisEnabled()) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(redisKey(key))
+                .flatMap(json -> {
+                    try {
+                        CachedResponse shared = objectMapper.readValue(json, CachedResponse.class);
+                        if (shared.expiresAtMillis() <= System.currentTimeMillis()) {
+                            return Mono.empty();
+                        }
+                        local.put(key, shared);
+                        return Mono.just(shared);
+                    } catch (JsonProcessingException e) {
+                        log.warn("Dropping unreadable cached response {}: {}", key, e.getMessage());
+                        return Mono.empty();
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Redis response cache read failed for {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    public void put(String key, CachedResponse response) {
+        local.put(key, response);
+        if (!properties.isRedisEnabled()) {
+            return;
+        }
+        long ttlMs = response.expiresAtMillis() - System.currentTimeMillis();
+        if (ttlMs <= 0) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue()
+                    .set(redisKey(key), objectMapper.writeValueAsString(response), Duration.ofMillis(ttlMs))
+                    .subscribe(stored -> { }, e -> log.warn("Redis response cache write failed for {}: {}",
+                            key, e.getMessage()));
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot serialize cached response {}", key, e);
+        }
+    }
+
+    /**
+     * Drops everything a change to one product can affect: its own detail responses and every listing,
+     * search and category page. Detail responses of other products stay.
+     * <p>
+     * With Redis, the local tier is cleared only once the new generation is known, so nothing read back from
+     * the old generation after the purge can land in it again.
+     *
+     * @param eventSeq the event's outbox id, the generation it moves the shared tier to; negative if unknown
+     */
+    public void purgeProduct(Long productId, long eventSeq) {
+        if (!properties.isRedisEnabled()) {
+            purgeLocal(productId);
+            return;
+        }
+        Mono<Long> nextGeneration = eventSeq >= 0
+                ? redisTemplate.execute(generationScript, List.of(REDIS_GENERATION_KEY), List.of(Long.toString(eventSeq))).next()
+                : redisTemplate.opsForValue().get(REDIS_GENERATION_KEY).map(Long::parseLong);
+        nextGeneration.subscribe(next -> {
+                    generation = next;
+                    purgeLocal(productId);
+                },
+                e -> {
+                    log.warn("Cannot move response cache generation for productId={}: {}", productId, e.getMessage());
+                    purgeLocal(productId);
+                });
+    }
+
+    private void purgeLocal(Long productId) {
+        local.asMap().keySet().removeIf(key -> {
+            Matcher detail = PRODUCT_DETAIL.matcher(key);
+            return !detail.matches() || detail.group(1).equals(String.valueOf(productId));
+        });
+    }
+
+    private String redisKey(String key) {
+        return REDIS_PREFIX + generation + ":" + key;
+    }
+
+    public record CachedResponse(byte[] body, String contentType, String etag, String cacheControl,
+                                 long storedAtMillis, long expiresAtMillis) {
+
+        int weight(String key) {
+            // body plus a rough allowance for the key, headers and object overhead
+            return body.length + key.length() * 2 + 256;
+        }
+    }
+
+    private static final class UntilResponseExpiry implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+            long remainingMs = response.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package vn.tt.practice.apigateway.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import vn.tt.practice.apigateway.config.RevocationProperties;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Local view of the tokens user-service has revoked (the {@code bl_<token>} keys written on logout).
+ * <p>
+ * A Bloom filter of revoked token ids answers the common case without leaving the node: a miss means the
+ * token was never revoked. Only a hit goes to Redis to tell a real revocation from a false positive.
+ * The filter is fed by the {@link #CHANNEL} pub/sub messages and rebuilt periodically from the keys
+ * themselves, which drops expired tokens and repairs anything missed while the subscription was down.
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    public static final String CHANNEL = "auth:token:revoked";
+    private static final String BLACKLIST_PREFIX = "bl_";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final RevocationProperties properties;
+    private final Cache<String, Boolean> confirmed;
+    private final Counter redisChecks;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile Bloom current;
+    // receives revocations published while a rebuild is scanning, so the swap does not lose them
+    private volatile Bloom next;
+    private Disposable subscription;
+
+    public TokenRevocationList(ReactiveRedisTemplate<String, String> redisTemplate,
+                               ReactiveRedisMessageListenerContainer listenerContainer,
+                               RevocationProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.properties = properties;
+        this.confirmed = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(properties.getConfirmTtlMs()))
+                .build();
+        this.redisChecks = Counter.builder("gateway.jwt.revocation.redis_checks")
+                .description("Bloom filter hits that had to be confirmed in Redis")
+                .register(meterRegistry);
+        this.current = newBloom();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        subscription = listenerContainer.receive(ChannelTopic.of(CHANNEL))
+                .doOnSubscribe(s -> rebuild())
+                .doOnNext(message -> revoked(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Token revocation subscription lost, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Allocation-free check on the request path; {@code false} is definite.
+     */
+    public boolean mightBeRevoked(String tokenId) {
+        return current.mightContain(tokenId);
+    }
+
+    /**
+     * Redis answer for a token the filter flagged. Fails closed: if Redis cannot be reached the token is treated
+     * as revoked, since a filter hit is already a strong signal.
+     */
+    public Mono<Boolean> isRevoked(String token, String tokenId) {
+        Boolean known = confirmed.getIfPresent(tokenId);
+        if (known != null) {
+            return Mono.just(known);
+        }
+        redisChecks.increment();
+        return redisTemplate.hasKey(BLACKLIST_PREFIX + token)
+                .doOnNext(revoked -> confirmed.put(tokenId, revoked))
+                .onErrorResume(e -> {
+                    log.warn("Token revocation check failed, rejecting flagged token: {}", e.getMessage());
+                    return Mono.just(Boolean.TRUE);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.rebuild-interval-ms:600000}",
+            initialDelayString = "${jwt.revocation.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Bloom fresh = newBloom();
+        next = fresh;
+        redisTemplate.scan(ScanOptions.scanOptions().match(BLACKLIST_PREFIX + "*").count(1000).build())
+                .doOnNext(key -> fresh.put(JwtUtil.tokenId(key.substring(BLACKLIST_PREFIX.length()))))
+                .count()
+                .doFinally(signal -> {
+                    next = null;
+                    rebuilding.set(false);
+                })
+                .subscribe(count -> {
+                    current = fresh;
+                    log.info("Token revocation filter rebuilt with {} revoked tokens", count);
+                }, e -> log.error("Token revocation filter rebuild failed, keeping the previous filter", e));
+    }
+
+    private void revoked(String tokenId) {
+        current.put(tokenId);
+        Bloom pending = next;
+        if (pending != null) {
+            pending.put(tokenId);
+        }
+        confirmed.invalidate(tokenId);
+    }
+
+    private Bloom newBloom() {
+        return new Bloom(properties.getExpectedRevocations(), properties.getFalsePositiveRate());
+    }
+
+    static final class Bloom {
+        private final AtomicLongArray words;
+        private final int bits;
+        private final int hashes;
+
+        Bloom(int expected, double falsePositiveRate) {
+            int capacity = Math.max(1, expected);
+            double size = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.bits = (int) Math.min(Integer.MAX_VALUE - 64, Math.max(64, Math.ceil(size)));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray((bits + 63) >>> 6);
+        }
+
+        // double hashing: bit i = h1 + i * h2
+        void put(String tokenId) {
+            long hash = hash(tokenId);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                long mask = 1L << bit;
+                words.getAndUpdate(bit >>> 6, word -> word | mask);
+            }
+        }
+
+        boolean mightContain(String tokenId) {
+            long hash = hash(tokenId);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a over the (ASCII) token id followed by the murmur3 finalizer
+        private static long hash(String tokenId) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < tokenId.length(); i++) {
+                hash ^= tokenId.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
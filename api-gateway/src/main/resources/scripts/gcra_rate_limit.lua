@@ -0,0 +1,26 @@
+-- GCRA (generic cell rate algorithm) check that can grant several requests at once.
+-- KEYS[1]  theoretical arrival time (TAT) of the limited subject, in microseconds
+-- ARGV[1]  emission interval: period / limit, in microseconds
+-- ARGV[2]  burst tolerance: emission interval * burst, in microseconds
+-- ARGV[3]  requests wanted; fewer are granted when the budget is short
+-- Returns {granted, retryAfterMillis}. Redis' own clock is used so every gateway node agrees on "now".
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local emission = tonumber(ARGV[1])
+local tolerance = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+if tat < now then
+    tat = now
+end
+
+local granted = math.min(requested, math.floor((now + tolerance - tat) / emission))
+if granted <= 0 then
+    return {0, math.ceil((tat - tolerance + emission - now) / 1000)}
+end
+
+tat = tat + granted * emission
+redis.call('SET', KEYS[1], string.format('%.0f', tat), 'PX', math.ceil((tat - now) / 1000))
+return {granted, 0}
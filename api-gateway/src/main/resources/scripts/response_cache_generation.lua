@@ -0,0 +1,13 @@
+-- Raises the shared response cache generation to the purging event's sequence number.
+-- KEYS[1]  generation key
+-- ARGV[1]  sequence number of the product event (its outbox id)
+-- Returns the generation now in effect. Every gateway node handles the same event and proposes the same
+-- number, so they all end up on one generation; an event delivered late never moves it backwards.
+
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local proposed = tonumber(ARGV[1])
+if proposed > current then
+    redis.call('SET', KEYS[1], ARGV[1])
+    return proposed
+end
+return current
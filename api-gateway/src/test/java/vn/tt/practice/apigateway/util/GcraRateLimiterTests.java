@@ -0,0 +1,149 @@
+package vn.tt.practice.apigateway.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import vn.tt.practice.apigateway.config.RateLimitProperties;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GcraRateLimiterTests {
+
+    private static final String KEY = "rate_limit:product-service:user:42";
+
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private RedisScript<List<Long>> script;
+    private RateLimitProperties properties;
+    private RateLimitProperties.Policy policy;
+    private GcraRateLimiter limiter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(ReactiveRedisTemplate.class);
+        script = mock(RedisScript.class);
+        properties = new RateLimitProperties();
+        properties.setLeaseSize(10);
+        // long enough that no lease expires while a test runs
+        properties.setLeaseTtlMs(60_000);
+        policy = policy(100, 60_000, 0);
+        limiter = new GcraRateLimiter(redisTemplate, script, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void emissionIntervalIsPeriodOverLimitInMicros() {
+        assertThat(GcraRateLimiter.emissionMicros(policy(100, 60_000, 0))).isEqualTo(600_000);
+        assertThat(GcraRateLimiter.emissionMicros(policy(3, 1_000, 0))).isEqualTo(333_333);
+        // never zero, never divided by zero
+        assertThat(GcraRateLimiter.emissionMicros(policy(10_000_000, 1, 0))).isEqualTo(1);
+        assertThat(GcraRateLimiter.emissionMicros(policy(0, 1_000, 0))).isEqualTo(1_000_000);
+    }
+
+    @Test
+    void leaseFollowsTheCallersRateWithinBounds() {
+        // 10 requests in the last second, lease lives one second
+        assertThat(GcraRateLimiter.leaseSize(10, 1_000, 1_000, 50)).isEqualTo(10);
+        // 5 requests in 100 ms would use 50 in a second, capped
+        assertThat(GcraRateLimiter.leaseSize(5, 100, 1_000, 20)).isEqualTo(20);
+        // a slow caller asks for one at a time
+        assertThat(GcraRateLimiter.leaseSize(1, 10_000, 1_000, 20)).isEqualTo(1);
+        assertThat(GcraRateLimiter.leaseSize(0, 1_000, 1_000, 20)).isEqualTo(1);
+        assertThat(GcraRateLimiter.leaseSize(100, 1_000, 1_000, 1)).isEqualTo(1);
+        // no time elapsed
+        assertThat(GcraRateLimiter.leaseSize(3, 0, 1_000, 20)).isEqualTo(20);
+    }
+
+    @Test
+    void firstCallAsksForOneRequestWithTheBurstTolerance() {
+        policy.setBurst(5);
+        answer(List.of(1L, 0L));
+
+        GcraRateLimiter.Decision decision = limiter.acquire(KEY, policy).block();
+
+        assertThat(decision).isEqualTo(new GcraRateLimiter.Decision(true, 0));
+        assertThat(scriptArgs(1).get(0)).containsExactly("600000", Long.toString(600_000L * 5), "1");
+    }
+
+    @Test
+    void busyCallerLeasesUpToTheLeaseSize() {
+        answer(List.of(1L, 0L));
+        limiter.acquire(KEY, policy).block();
+        limiter.acquire(KEY, policy).block();
+
+        // the second call came right after the first, so the caller's rate is high
+        assertThat(scriptArgs(2).get(1)).containsExactly("600000", "60000000", "10");
+    }
+
+    @Test
+    void leaseIsNeverLargerThanTheBurst() {
+        policy.setBurst(3);
+        answer(List.of(1L, 0L));
+        limiter.acquire(KEY, policy).block();
+        limiter.acquire(KEY, policy).block();
+
+        assertThat(scriptArgs(2).get(1).get(2)).isEqualTo("3");
+    }
+
+    @Test
+    void grantedRequestsBeyondTheFirstAreServedLocally() {
+        answer(List.of(3L, 0L));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.acquire(KEY, policy).block().allowed()).isTrue();
+        }
+
+        verify(redisTemplate, times(1)).execute(eq(script), anyList(), anyList());
+    }
+
+    @Test
+    void rejectionCarriesRetryAfterAndIsRememberedUntilThen() {
+        answer(List.of(0L, 5_000L));
+
+        GcraRateLimiter.Decision first = limiter.acquire(KEY, policy).block();
+        GcraRateLimiter.Decision second = limiter.acquire(KEY, policy).block();
+
+        assertThat(first).isEqualTo(new GcraRateLimiter.Decision(false, 5_000));
+        assertThat(second.allowed()).isFalse();
+        assertThat(second.retryAfterMs()).isPositive().isLessThanOrEqualTo(5_000);
+        verify(redisTemplate, times(1)).execute(eq(script), anyList(), anyList());
+    }
+
+    @Test
+    void redisFailureLetsTheRequestThrough() {
+        when(redisTemplate.execute(eq(script), anyList(), anyList()))
+                .thenReturn(Flux.error(new IllegalStateException("connection refused")));
+
+        assertThat(limiter.acquire(KEY, policy).block()).isEqualTo(new GcraRateLimiter.Decision(true, 0));
+    }
+
+    private void answer(List<Long> result) {
+        when(redisTemplate.execute(eq(script), anyList(), anyList())).thenReturn(Flux.just(result));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> scriptArgs(int calls) {
+        ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate, times(calls)).execute(eq(script), eq(List.of(KEY)), args.capture());
+        return args.getAllValues();
+    }
+
+    private static RateLimitProperties.Policy policy(long limit, long periodMs, long burst) {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setLimit(limit);
+        policy.setPeriodMs(periodMs);
+        policy.setBurst(burst);
+        return policy;
+    }
+}
@@ -0,0 +1,72 @@
+package vn.tt.practice.apigateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationListBloomTests {
+
+    @Test
+    void everyRevokedTokenIsReported() {
+        TokenRevocationList.Bloom bloom = new TokenRevocationList.Bloom(10_000, 0.001);
+        List<String> revoked = tokenIds(0, 10_000);
+        revoked.forEach(bloom::put);
+
+        assertThat(revoked).allMatch(bloom::mightContain);
+    }
+
+    @Test
+    void noFalseNegativesPastTheExpectedCount() {
+        TokenRevocationList.Bloom bloom = new TokenRevocationList.Bloom(100, 0.01);
+        List<String> revoked = tokenIds(0, 5_000);
+        revoked.forEach(bloom::put);
+
+        assertThat(revoked).allMatch(bloom::mightContain);
+    }
+
+    @Test
+    void concurrentRevocationsAreNotLost() throws Exception {
+        TokenRevocationList.Bloom bloom = new TokenRevocationList.Bloom(20_000, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = IntStream.range(0, 8)
+                    .mapToObj(t -> pool.submit(() -> tokenIds(t * 2_500, (t + 1) * 2_500).forEach(bloom::put)))
+                    .toList();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(tokenIds(0, 20_000)).allMatch(bloom::mightContain);
+    }
+
+    @Test
+    void emptyFilterReportsNothing() {
+        TokenRevocationList.Bloom bloom = new TokenRevocationList.Bloom(1_000, 0.01);
+
+        assertThat(tokenIds(0, 1_000)).noneMatch(bloom::mightContain);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredRate() {
+        TokenRevocationList.Bloom bloom = new TokenRevocationList.Bloom(10_000, 0.01);
+        tokenIds(0, 10_000).forEach(bloom::put);
+
+        long falsePositives = tokenIds(10_000, 30_000).stream().filter(bloom::mightContain).count();
+
+        assertThat(falsePositives / 20_000.0).isLessThan(0.03);
+    }
+
+    // the ids the gateway derives from raw tokens
+    private static List<String> tokenIds(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> JwtUtil.tokenId("token-" + i)).toList();
+    }
+}
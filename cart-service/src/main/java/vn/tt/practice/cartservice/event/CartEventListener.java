@@ -9,6 +9,12 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 import vn.tt.practice.cartservice.config.RabbitMQConfig;
 import vn.tt.practice.cartservice.service.CartService;
+import vn.tt.practice.messaging.MessagingAutoConfiguration;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -17,11 +23,16 @@ public class CartEventListener {
 
     private final CartService cartService;
 
-    @RabbitListener(queues = RabbitMQConfig.ORDER_CREATED_QUEUE)
-    public void handleOrderCreated(OrderCreatedEvent event) {
-        log.info("Received OrderCreatedEvent for userId: {}", event.getUserId());
-        if (event.getUserId() != null) {
-            cartService.clearCart(event.getUserId());
+    @RabbitListener(queues = RabbitMQConfig.ORDER_CREATED_QUEUE,
+            containerFactory = MessagingAutoConfiguration.BATCH_CONTAINER_FACTORY)
+    public void handleOrderCreated(List<OrderCreatedEvent> events) {
+        Set<Long> userIds = events.stream()
+                .map(OrderCreatedEvent::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        log.info("Received {} OrderCreatedEvents, clearing {} carts", events.size(), userIds.size());
+        if (!userIds.isEmpty()) {
+            cartService.clearCarts(userIds);
         }
     }
 
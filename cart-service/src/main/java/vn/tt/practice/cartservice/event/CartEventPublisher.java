@@ -2,26 +2,22 @@ package vn.tt.practice.cartservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 import vn.tt.practice.cartservice.config.RabbitMQConfig;
+import vn.tt.practice.outbox.OutboxPublisher;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class CartEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishCartItemAdded(Long userId, Long productId) {
         CartItemEvent event = new CartItemEvent(userId, productId, "ADDED");
         String routingKey = "cart.item.added";
-        try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.DOMAIN_EXCHANGE, routingKey, event);
-            log.info("Published cart item added event for userId: {}, productId: {}", userId, productId);
-        } catch (Exception e) {
-            log.error("Failed to publish cart item added event", e);
-        }
+        outboxPublisher.publish("Cart", userId, RabbitMQConfig.DOMAIN_EXCHANGE, routingKey, event);
+        log.info("Queued cart item added event for userId: {}, productId: {}", userId, productId);
     }
 
     @lombok.Data
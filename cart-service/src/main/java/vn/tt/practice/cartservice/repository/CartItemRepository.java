@@ -1,8 +1,12 @@
 package vn.tt.practice.cartservice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.tt.practice.cartservice.entity.CartItem;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +19,9 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByCartIdAndProductId(Long cartId, Long productId);
 
     void deleteByProductId(Long productId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM CartItem i WHERE i.cart.id IN (SELECT c.id FROM Cart c WHERE c.userId IN :userIds)")
+    int deleteByCartUserIdIn(@Param("userIds") Collection<Long> userIds);
 }
 
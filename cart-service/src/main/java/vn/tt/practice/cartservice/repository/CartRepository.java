@@ -1,13 +1,20 @@
 package vn.tt.practice.cartservice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import vn.tt.practice.cartservice.entity.Cart;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.userId = :userId")
     Optional<Cart> findByUserIdWithItems(@Param("userId") Long userId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalItems = 0, c.totalAmount = 0.0, c.updatedAt = :now WHERE c.userId IN :userIds")
+    int resetTotalsByUserIdIn(@Param("userIds") Collection<Long> userIds, @Param("now") Instant now);
 }
\ No newline at end of file
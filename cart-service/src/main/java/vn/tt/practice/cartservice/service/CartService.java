@@ -14,6 +14,8 @@ import vn.tt.practice.cartservice.repository.CartItemRepository;
 import vn.tt.practice.cartservice.repository.CartRepository;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -127,6 +129,15 @@ public class CartService {
         cartRepository.save(cart);
     }
 
+    /**
+     * Empties the carts of several users with two statements, for batches of order-created events.
+     */
+    @Transactional
+    public void clearCarts(Collection<Long> userIds) {
+        cartItemRepository.deleteByCartUserIdIn(userIds);
+        cartRepository.resetTotalsByUserIdIn(userIds, Instant.now());
+    }
+
     @Transactional
     public void removeProductFromCarts(Long productId) {
         List<CartItem> items = cartItemRepository.findByProductId(productId);
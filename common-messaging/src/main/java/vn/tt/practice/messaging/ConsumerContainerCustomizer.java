@@ -0,0 +1,63 @@
+package vn.tt.practice.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Applies {@link ConsumerProperties} to every listener container, keyed by the container's first queue,
+ * and counts delivered messages per queue as {@code messaging.consumer.messages} so throughput can be
+ * read as a rate in Prometheus.
+ */
+@Slf4j
+public class ConsumerContainerCustomizer implements ContainerCustomizer<SimpleMessageListenerContainer> {
+
+    private final ConsumerProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public ConsumerContainerCustomizer(ConsumerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void configure(SimpleMessageListenerContainer container) {
+        String[] queueNames = container.getQueueNames();
+        String queue = queueNames.length > 0 ? queueNames[0] : null;
+        ConsumerProperties.Settings settings = properties.forQueue(queue);
+
+        int concurrency = Math.max(1, settings.getConcurrency());
+        int batchSize = Math.max(1, settings.getBatchSize());
+        // drop to one first so the new max never falls below the current consumer count
+        container.setConcurrentConsumers(1);
+        container.setMaxConcurrentConsumers(Math.max(concurrency, settings.getMaxConcurrency()));
+        container.setConcurrentConsumers(concurrency);
+        container.setPrefetchCount(Math.max(settings.getPrefetch(), batchSize));
+        container.setBatchSize(batchSize);
+        container.setReceiveTimeout(settings.getReceiveTimeoutMs());
+
+        if (Boolean.TRUE.equals(settings.getVirtualThreads())) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor((queue != null ? queue : "rabbit") + "-");
+            executor.setVirtualThreads(true);
+            container.setTaskExecutor(executor);
+        }
+
+        if (meterRegistry != null && queue != null) {
+            Counter delivered = Counter.builder("messaging.consumer.messages")
+                    .description("Messages delivered to listeners")
+                    .tag("queue", queue)
+                    .register(meterRegistry);
+            container.addAfterReceivePostProcessors(message -> {
+                delivered.increment();
+                return message;
+            });
+        }
+
+        log.info("Consumer settings for queue={}: concurrency={}..{}, prefetch={}, batchSize={}, virtualThreads={}",
+                queue, concurrency, Math.max(concurrency, settings.getMaxConcurrency()),
+                Math.max(settings.getPrefetch(), batchSize), batchSize, settings.getVirtualThreads());
+    }
+}
@@ -0,0 +1,65 @@
+package vn.tt.practice.messaging;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Listener container settings per queue. Anything a queue leaves unset falls back to {@code defaults}.
+ * Queue names contain dots, so they need bracket keys in YAML: {@code queues: "[order.created.queue]": ...}.
+ */
+@ConfigurationProperties(prefix = "messaging.consumers")
+@Getter
+@Setter
+public class ConsumerProperties {
+
+    private Settings defaults = Settings.builtIn();
+    private Map<String, Settings> queues = new LinkedHashMap<>();
+
+    public Settings forQueue(String queue) {
+        Settings own = queue == null ? null : queues.get(queue);
+        return own == null ? defaults : own.orElse(defaults);
+    }
+
+    @Getter
+    @Setter
+    public static class Settings {
+        // Consumers started per container
+        private Integer concurrency;
+        // Upper bound when the container scales up under load; never below concurrency
+        private Integer maxConcurrency;
+        // Unacked messages the broker pushes to each consumer; raised to batchSize if lower
+        private Integer prefetch;
+        // Run consumers on virtual threads instead of one platform thread each
+        private Boolean virtualThreads;
+        // Messages acked together, and the list size handed to batch listeners
+        private Integer batchSize;
+        // How long a consumer waits to fill a batch before handing over what it has
+        private Long receiveTimeoutMs;
+
+        static Settings builtIn() {
+            Settings settings = new Settings();
+            settings.concurrency = 1;
+            settings.maxConcurrency = 1;
+            settings.prefetch = 250;
+            settings.virtualThreads = false;
+            settings.batchSize = 1;
+            settings.receiveTimeoutMs = 1000L;
+            return settings;
+        }
+
+        Settings orElse(Settings fallback) {
+            Settings merged = new Settings();
+            merged.concurrency = concurrency != null ? concurrency : fallback.concurrency;
+            merged.maxConcurrency = maxConcurrency != null ? maxConcurrency : fallback.maxConcurrency;
+            merged.prefetch = prefetch != null ? prefetch : fallback.prefetch;
+            merged.virtualThreads = virtualThreads != null ? virtualThreads : fallback.virtualThreads;
+            merged.batchSize = batchSize != null ? batchSize : fallback.batchSize;
+            merged.receiveTimeoutMs = receiveTimeoutMs != null ? receiveTimeoutMs : fallback.receiveTimeoutMs;
+            return merged;
+        }
+    }
+}
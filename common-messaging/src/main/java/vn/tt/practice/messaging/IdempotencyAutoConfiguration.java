@@ -0,0 +1,70 @@
+package vn.tt.practice.messaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+/**
+ * Active in every service with a JdbcTemplate and a transaction manager; handlers opt in by calling
+ * {@link IdempotentConsumer}.
+ */
+@AutoConfiguration(after = {JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+        TransactionAutoConfiguration.class})
+@ConditionalOnBean({JdbcTemplate.class, PlatformTransactionManager.class})
+@ConditionalOnProperty(prefix = "messaging.idempotency", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class IdempotencyAutoConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "messaging.idempotency", name = "initialize-schema", havingValue = "true",
+            matchIfMissing = true)
+    public DataSourceInitializer processedMessagesSchemaInitializer(JdbcTemplate jdbcTemplate) {
+        DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(jdbcTemplate.getDataSource());
+        // continue on error: several services may create the shared table at the same moment
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(true, false, null,
+                new ClassPathResource("messaging/schema-postgresql.sql")));
+        return initializer;
+    }
+
+    @Bean
+    public ProcessedMessageRepository processedMessageRepository(JdbcTemplate jdbcTemplate) {
+        return new ProcessedMessageRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public IdempotentConsumer idempotentConsumer(ProcessedMessageRepository processedMessageRepository,
+                                                 PlatformTransactionManager transactionManager,
+                                                 IdempotencyProperties properties, Environment environment,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        return new IdempotentConsumer(processedMessageRepository, transactionManager, properties,
+                source(properties, environment), meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public ProcessedMessagePruner processedMessagePruner(ProcessedMessageRepository processedMessageRepository,
+                                                         IdempotencyProperties properties, Environment environment) {
+        return new ProcessedMessagePruner(processedMessageRepository, properties, source(properties, environment));
+    }
+
+    private static String source(IdempotencyProperties properties, Environment environment) {
+        return StringUtils.hasText(properties.getSource())
+                ? properties.getSource()
+                : environment.getProperty("spring.application.name", "application");
+    }
+}
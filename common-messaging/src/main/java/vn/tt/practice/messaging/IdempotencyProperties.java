@@ -0,0 +1,29 @@
+package vn.tt.practice.messaging;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "messaging.idempotency")
+@Getter
+@Setter
+public class IdempotencyProperties {
+
+    // Register IdempotentConsumer and its pruner
+    private boolean enabled = true;
+    // Rows this service owns in the shared processed_messages table; defaults to spring.application.name
+    private String source;
+    // Create processed_messages on startup if it does not exist
+    private boolean initializeSchema = true;
+    // How long a message id is remembered; must exceed the longest time a message can be redelivered
+    private long retentionHours = 168;
+    // How often expired ids are deleted
+    private long pruneIntervalMs = 3_600_000;
+    // Rows deleted per statement while pruning
+    private int pruneBatchSize = 5000;
+    // Recently processed ids answered from memory without a query
+    private int recentSize = 10_000;
+    // Ids per Bloom filter generation; two generations are kept
+    private int bloomExpectedInsertions = 1_000_000;
+    private double bloomFalsePositiveRate = 0.01;
+}
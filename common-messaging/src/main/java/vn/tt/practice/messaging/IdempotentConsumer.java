@@ -0,0 +1,130 @@
+package vn.tt.practice.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a message handler at most once per message id. The id is recorded in processed_messages in the same
+ * transaction as the handler's own writes, so a handler that fails leaves no record and is retried, and a
+ * redelivery of a committed message is acked without touching domain tables.
+ * <p>
+ * Lookups go through {@link ProcessedMessageFilter} first: recent ids are answered from memory and ids the
+ * Bloom filter has never seen skip the lookup query. Messages without an id are handled without dedup.
+ */
+@Slf4j
+public class IdempotentConsumer {
+
+    private final ProcessedMessageRepository repository;
+    private final PlatformTransactionManager transactionManager;
+    private final ProcessedMessageFilter filter;
+    private final String source;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> duplicates = new ConcurrentHashMap<>();
+
+    public IdempotentConsumer(ProcessedMessageRepository repository, PlatformTransactionManager transactionManager,
+                              IdempotencyProperties properties, String source, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionManager = transactionManager;
+        this.filter = new ProcessedMessageFilter(properties.getRecentSize(),
+                properties.getBloomExpectedInsertions(), properties.getBloomFalsePositiveRate());
+        this.source = source;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code handler} in a transaction (joining the caller's, if any) unless {@code messageId} was already
+     * processed by {@code consumer}. If the handler marks the transaction rollback-only, the id is rolled back
+     * with it and the outcome reports {@code committed = false}.
+     */
+    public <T> Outcome<T> process(String consumer, String messageId, Supplier<T> handler) {
+        boolean tracked = StringUtils.hasText(messageId);
+        String key = tracked ? consumer + '\n' + messageId : null;
+        if (tracked && isKnownDuplicate(consumer, messageId, key)) {
+            return duplicate(consumer, messageId, key);
+        }
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            if (tracked && !repository.tryInsert(source, consumer, messageId, Instant.now())) {
+                transactionManager.commit(status);
+                return duplicate(consumer, messageId, key);
+            }
+            T result = handler.get();
+            if (status.isRollbackOnly()) {
+                transactionManager.rollback(status);
+                return new Outcome<>(false, false, result);
+            }
+            if (tracked) {
+                rememberAfterCommit(key);
+            }
+            transactionManager.commit(status);
+            return new Outcome<>(false, true, result);
+        } catch (RuntimeException | Error e) {
+            if (!status.isCompleted()) {
+                transactionManager.rollback(status);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if the message was a duplicate and {@code handler} did not run
+     */
+    public boolean process(String consumer, String messageId, Runnable handler) {
+        return !process(consumer, messageId, () -> {
+            handler.run();
+            return null;
+        }).duplicate();
+    }
+
+    private boolean isKnownDuplicate(String consumer, String messageId, String key) {
+        if (filter.isRecent(key)) {
+            return true;
+        }
+        return filter.mightContain(key) && repository.exists(source, consumer, messageId);
+    }
+
+    private <T> Outcome<T> duplicate(String consumer, String messageId, String key) {
+        filter.remember(key);
+        duplicates.computeIfAbsent(consumer, name -> Counter.builder("messaging.consumer.duplicates")
+                        .description("Redelivered messages acked without running the handler")
+                        .tag("consumer", name)
+                        .register(meterRegistry))
+                .increment();
+        log.info("Skip duplicate message {} for consumer {}", messageId, consumer);
+        return new Outcome<>(true, false, null);
+    }
+
+    // inside a caller's transaction the id only counts as processed once that transaction commits
+    private void rememberAfterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            filter.remember(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                filter.remember(key);
+            }
+        });
+    }
+
+    /**
+     * @param duplicate the handler did not run because the message was processed before
+     * @param committed the handler ran and its transaction, including the id, committed
+     * @param result    what the handler returned; null for duplicates
+     */
+    public record Outcome<T>(boolean duplicate, boolean committed, T result) {}
+}
@@ -0,0 +1,53 @@
+package vn.tt.practice.messaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Boot hands the customizer to its default listener container factory; batch listeners opt in with
+ * {@code @RabbitListener(containerFactory = MessagingAutoConfiguration.BATCH_CONTAINER_FACTORY)}.
+ */
+@AutoConfiguration(after = RabbitAutoConfiguration.class)
+@ConditionalOnClass(SimpleMessageListenerContainer.class)
+@EnableConfigurationProperties(ConsumerProperties.class)
+public class MessagingAutoConfiguration {
+
+    public static final String BATCH_CONTAINER_FACTORY = "batchRabbitListenerContainerFactory";
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ContainerCustomizer<SimpleMessageListenerContainer> consumerContainerCustomizer(
+            ConsumerProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ConsumerContainerCustomizer(properties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * Same broker settings as the default factory, but each listener call receives up to batchSize
+     * messages as a {@code List} and they are acked together.
+     */
+    @Bean(BATCH_CONTAINER_FACTORY)
+    @ConditionalOnBean(ConnectionFactory.class)
+    @ConditionalOnMissingBean(name = BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            ContainerCustomizer<SimpleMessageListenerContainer> consumerContainerCustomizer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setContainerCustomizer(consumerContainerCustomizer);
+        return factory;
+    }
+}
@@ -0,0 +1,106 @@
+package vn.tt.practice.messaging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory front of processed_messages. A hit in the recent-ids LRU is a certain duplicate; a Bloom filter
+ * miss means this node has not processed the id since it started, so the lookup query can be skipped and the
+ * marker insert alone decides.
+ * Two Bloom generations rotate so the false-positive rate stays bounded however long the process runs.
+ */
+class ProcessedMessageFilter {
+
+    private final int recentSize;
+    private final Map<String, Boolean> recent;
+    private final int bloomCapacity;
+    private final int bloomBits;
+    private final int bloomHashes;
+
+    private BloomGeneration current;
+    private BloomGeneration previous;
+
+    ProcessedMessageFilter(int recentSize, int bloomCapacity, double falsePositiveRate) {
+        this.recentSize = Math.max(1, recentSize);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > ProcessedMessageFilter.this.recentSize;
+            }
+        };
+        this.bloomCapacity = Math.max(1, bloomCapacity);
+        double bits = -this.bloomCapacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bloomBits = (int) Math.min(Integer.MAX_VALUE - 64, Math.max(64, Math.ceil(bits)));
+        this.bloomHashes = Math.max(1, (int) Math.round((double) bloomBits / this.bloomCapacity * Math.log(2)));
+        this.current = new BloomGeneration(bloomBits);
+        this.previous = new BloomGeneration(bloomBits);
+    }
+
+    synchronized boolean isRecent(String key) {
+        return recent.get(key) != null;
+    }
+
+    synchronized boolean mightContain(String key) {
+        long hash = hash(key);
+        return current.mightContain(hash, bloomHashes) || previous.mightContain(hash, bloomHashes);
+    }
+
+    synchronized void remember(String key) {
+        recent.put(key, Boolean.TRUE);
+        if (current.count >= bloomCapacity) {
+            previous = current;
+            current = new BloomGeneration(bloomBits);
+        }
+        current.put(hash(key), bloomHashes);
+    }
+
+    // FNV-1a over UTF-8 followed by the murmur3 finalizer
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class BloomGeneration {
+        private final long[] words;
+        private final int bits;
+        private int count;
+
+        private BloomGeneration(int bits) {
+            this.bits = bits;
+            this.words = new long[(bits + 63) >>> 6];
+        }
+
+        // double hashing: bit i = h1 + i * h2
+        void put(long hash, int hashes) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                words[bit >>> 6] |= 1L << bit;
+            }
+            count++;
+        }
+
+        boolean mightContain(long hash, int hashes) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
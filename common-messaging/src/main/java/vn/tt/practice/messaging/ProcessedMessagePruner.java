@@ -0,0 +1,73 @@
+package vn.tt.practice.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes this service's processed_messages rows older than the retention, in chunks of
+ * {@code messaging.idempotency.prune-batch-size} so no single statement holds many row locks.
+ */
+@Slf4j
+public class ProcessedMessagePruner implements SmartLifecycle {
+
+    private final ProcessedMessageRepository repository;
+    private final IdempotencyProperties properties;
+    private final String source;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public ProcessedMessagePruner(ProcessedMessageRepository repository, IdempotencyProperties properties,
+                                  String source) {
+        this.repository = repository;
+        this.properties = properties;
+        this.source = source;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "processed-message-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, properties.getPruneIntervalMs());
+        scheduler.scheduleWithFixedDelay(this::prune, interval, interval, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void prune() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(properties.getRetentionHours()));
+        int batchSize = Math.max(1, properties.getPruneBatchSize());
+        long total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = repository.pruneOlderThan(source, cutoff, batchSize);
+                total += deleted;
+            } while (deleted == batchSize && running);
+            if (total > 0) {
+                log.info("Pruned {} processed message ids older than {} for source={}", total, cutoff, source);
+            }
+        } catch (Exception e) {
+            log.error("Pruning processed message ids failed after {} rows, retrying next interval", total, e);
+        }
+    }
+}
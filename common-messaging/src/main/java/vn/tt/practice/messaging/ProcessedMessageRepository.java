@@ -0,0 +1,55 @@
+package vn.tt.practice.messaging;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * JDBC access to processed_messages. Inserts join the caller's transaction through the shared DataSource.
+ */
+public class ProcessedMessageRepository {
+
+    private static final String INSERT = """
+            INSERT INTO processed_messages (source, consumer, message_id, processed_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String EXISTS = """
+            SELECT EXISTS (SELECT 1 FROM processed_messages WHERE source = ? AND consumer = ? AND message_id = ?)
+            """;
+
+    // ctid keeps each chunk a single index range scan plus direct row deletes
+    private static final String PRUNE = """
+            DELETE FROM processed_messages
+            WHERE ctid = ANY (ARRAY(
+                SELECT ctid FROM processed_messages
+                WHERE source = ? AND processed_at < ?
+                LIMIT ?
+            ))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProcessedMessageRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records the id in the current transaction.
+     *
+     * @return false if it was already recorded; waits for a concurrent transaction holding the same id
+     */
+    public boolean tryInsert(String source, String consumer, String messageId, Instant processedAt) {
+        return jdbcTemplate.update(INSERT, source, consumer, messageId, Timestamp.from(processedAt)) == 1;
+    }
+
+    public boolean exists(String source, String consumer, String messageId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS, Boolean.class, source, consumer, messageId));
+    }
+
+    public int pruneOlderThan(String source, Instant cutoff, int limit) {
+        return jdbcTemplate.update(PRUNE, source, Timestamp.from(cutoff), limit);
+    }
+}
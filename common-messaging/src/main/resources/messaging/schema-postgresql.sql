@@ -0,0 +1,10 @@
+-- Shared by every service in the database; rows are scoped by source (spring.application.name).
+CREATE TABLE IF NOT EXISTS processed_messages (
+    source VARCHAR(100) NOT NULL,
+    consumer VARCHAR(150) NOT NULL,
+    message_id VARCHAR(200) NOT NULL,
+    processed_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (source, consumer, message_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_processed_messages_source_processed_at ON processed_messages (source, processed_at);
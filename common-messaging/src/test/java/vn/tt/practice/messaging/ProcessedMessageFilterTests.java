@@ -0,0 +1,68 @@
+package vn.tt.practice.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessedMessageFilterTests {
+
+    @Test
+    void recentIdsAreKeptInAccessOrderUpToTheLimit() {
+        ProcessedMessageFilter filter = new ProcessedMessageFilter(2, 100, 0.01);
+        filter.remember("a");
+        filter.remember("b");
+
+        assertThat(filter.isRecent("a")).isTrue();
+        filter.remember("c");
+
+        // "b" was the least recently used once "a" was read
+        assertThat(filter.isRecent("b")).isFalse();
+        assertThat(filter.isRecent("a")).isTrue();
+        assertThat(filter.isRecent("c")).isTrue();
+    }
+
+    @Test
+    void unknownIdIsNotRecent() {
+        ProcessedMessageFilter filter = new ProcessedMessageFilter(10, 100, 0.01);
+
+        assertThat(filter.isRecent("order-service:1")).isFalse();
+        assertThat(filter.mightContain("order-service:1")).isFalse();
+    }
+
+    @Test
+    void bloomHasNoFalseNegativesWithinTwoGenerations() {
+        ProcessedMessageFilter filter = new ProcessedMessageFilter(1, 1000, 0.01);
+        // fills one generation and most of the next
+        IntStream.range(0, 1900).forEach(i -> filter.remember(key(i)));
+
+        assertThat(IntStream.range(0, 1900)).allMatch(i -> filter.mightContain(key(i)));
+    }
+
+    @Test
+    void oldestGenerationIsDroppedOnSecondRotation() {
+        ProcessedMessageFilter filter = new ProcessedMessageFilter(1, 1000, 0.01);
+        // keys 0..999 fill the first generation, 1000..1999 the second, 2000 starts a third
+        IntStream.rangeClosed(0, 2000).forEach(i -> filter.remember(key(i)));
+
+        assertThat(IntStream.rangeClosed(1000, 2000)).allMatch(i -> filter.mightContain(key(i)));
+        long stillMatching = IntStream.range(0, 1000).filter(i -> filter.mightContain(key(i))).count();
+        // only false positives of the two live generations remain
+        assertThat(stillMatching).isLessThan(50);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredRate() {
+        ProcessedMessageFilter filter = new ProcessedMessageFilter(1, 10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.remember(key(i)));
+
+        long falsePositives = IntStream.range(10_000, 30_000).filter(i -> filter.mightContain(key(i))).count();
+
+        assertThat(falsePositives / 20_000.0).isLessThan(0.03);
+    }
+
+    private static String key(int i) {
+        return "order-service:" + i;
+    }
+}
@@ -0,0 +1,69 @@
+package vn.tt.practice.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+/**
+ * Active in every service that has both a RabbitTemplate and a JdbcTemplate on the same database.
+ */
+@AutoConfiguration(after = {RabbitAutoConfiguration.class, JdbcTemplateAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class, TransactionAutoConfiguration.class})
+@ConditionalOnBean({RabbitTemplate.class, JdbcTemplate.class, PlatformTransactionManager.class})
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxAutoConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "outbox", name = "initialize-schema", havingValue = "true", matchIfMissing = true)
+    public DataSourceInitializer outboxSchemaInitializer(JdbcTemplate jdbcTemplate) {
+        DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(jdbcTemplate.getDataSource());
+        // continue on error: several services may create the shared table at the same moment
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(true, false, null,
+                new ClassPathResource("outbox/schema-postgresql.sql")));
+        return initializer;
+    }
+
+    @Bean
+    public OutboxRepository outboxRepository(JdbcTemplate jdbcTemplate) {
+        return new OutboxRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public OutboxPublisher outboxPublisher(OutboxRepository outboxRepository, RabbitTemplate rabbitTemplate,
+                                           ObjectProvider<OutboxRelay> outboxRelay, OutboxProperties properties,
+                                           Environment environment) {
+        return new OutboxPublisher(outboxRepository, rabbitTemplate, outboxRelay, source(properties, environment));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "outbox", name = "relay-enabled", havingValue = "true", matchIfMissing = true)
+    public OutboxRelay outboxRelay(OutboxRepository outboxRepository, RabbitTemplate rabbitTemplate,
+                                   PlatformTransactionManager transactionManager, OutboxProperties properties,
+                                   Environment environment, MeterRegistry meterRegistry) {
+        return new OutboxRelay(outboxRepository, rabbitTemplate, transactionManager, properties,
+                source(properties, environment), meterRegistry);
+    }
+
+    private static String source(OutboxProperties properties, Environment environment) {
+        return StringUtils.hasText(properties.getSource())
+                ? properties.getSource()
+                : environment.getProperty("spring.application.name", "application");
+    }
+}
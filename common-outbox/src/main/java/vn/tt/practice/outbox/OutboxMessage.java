@@ -0,0 +1,17 @@
+package vn.tt.practice.outbox;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One outbox row: the already-converted AMQP message and where it goes.
+ */
+public record OutboxMessage(long id,
+                            String exchange,
+                            String routingKey,
+                            String contentType,
+                            String contentEncoding,
+                            Map<String, Object> headers,
+                            byte[] payload,
+                            Instant createdAt) {
+}
@@ -0,0 +1,35 @@
+package vn.tt.practice.outbox;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "outbox")
+@Getter
+@Setter
+public class OutboxProperties {
+
+    // Rows this service owns in the shared outbox_events table; defaults to spring.application.name
+    private String source;
+    // Run the relay in this process; writing to the outbox works either way
+    private boolean relayEnabled = true;
+    // Relay lanes, one thread each. Events of one aggregate always map to the same lane, so they keep
+    // their order. Only change while the outbox is drained.
+    private int partitions = 4;
+    // Max events published under one confirm wait
+    private int batchSize = 200;
+    // Idle lanes poll this often; commits that write events also wake them up
+    private long pollIntervalMs = 200;
+    // How long a batch waits for broker confirms before it is retried
+    private long confirmTimeoutMs = 5000;
+    // Pause after a failed batch
+    private long retryBackoffMs = 1000;
+    // How long a replica owns a lane without renewing it; taken as at least twice confirm-timeout-ms so a lane
+    // cannot change hands while a batch waits for confirms
+    private long laneLeaseMs = 30000;
+    // Failed sends of a row on its own before it is parked (parked_at set) and skipped, so it stops blocking
+    // its lane. Parked rows stay in the table for inspection and are re-sent once parked_at is cleared.
+    private int maxAttempts = 10;
+    // Create outbox_events on startup if it does not exist
+    private boolean initializeSchema = true;
+}
@@ -0,0 +1,51 @@
+package vn.tt.practice.outbox;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+/**
+ * Replacement for {@code rabbitTemplate.convertAndSend} in business code: the event is converted with the
+ * service's own message converter and stored in outbox_events in the caller's transaction.
+ * {@link OutboxRelay} sends it once that transaction has committed.
+ */
+public class OutboxPublisher {
+
+    private final OutboxRepository repository;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectProvider<OutboxRelay> relay;
+    private final String source;
+
+    public OutboxPublisher(OutboxRepository repository, RabbitTemplate rabbitTemplate,
+                           ObjectProvider<OutboxRelay> relay, String source) {
+        this.repository = repository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.relay = relay;
+        this.source = source;
+    }
+
+    /**
+     * @param aggregateType with {@code aggregateId}, the key events are ordered by
+     */
+    @Transactional
+    public void publish(String aggregateType, Object aggregateId, String exchange, String routingKey, Object event) {
+        Message message = rabbitTemplate.getMessageConverter().toMessage(event, new MessageProperties());
+        MessageProperties properties = message.getMessageProperties();
+        repository.insert(source, aggregateType, String.valueOf(aggregateId), exchange, routingKey,
+                properties.getContentType(), properties.getContentEncoding(), properties.getHeaders(),
+                message.getBody(), Instant.now());
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.ifAvailable(OutboxRelay::wakeUp);
+            }
+        });
+    }
+}
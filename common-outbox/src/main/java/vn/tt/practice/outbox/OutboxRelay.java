@@ -0,0 +1,241 @@
+package vn.tt.practice.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes outbox rows to RabbitMQ. Each lane is a thread that claims the lane in outbox_lanes and reads its
+ * oldest rows, then, outside any transaction, sends them on one channel and waits for publisher confirms, and
+ * finally deletes them in a second short transaction. No connection or lock is held while the broker confirms.
+ * <p>
+ * Delivery is at-least-once: a crash between the confirm and the delete sends the batch again.
+ * Requires {@code spring.rabbitmq.publisher-confirm-type: simple}.
+ * <p>
+ * After a failed batch the lane sends its head row alone until a send succeeds, so a failure can be pinned on
+ * one row. A row that fails {@code outbox.max-attempts} times alone, with the broker reachable, is parked: it
+ * is skipped from then on, so the rest of its lane (including later events of the same aggregate) moves again.
+ * Parking logs an error and increments {@code outbox.parked}.
+ */
+@Slf4j
+public class OutboxRelay implements SmartLifecycle {
+
+    private final OutboxRepository repository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+    private final String source;
+    private final String owner = UUID.randomUUID().toString();
+    private final long leaseMs;
+
+    private final Timer lag;
+    private final Counter published;
+    private final Counter failures;
+    private final Counter parked;
+
+    private final Object signal = new Object();
+    private volatile boolean running;
+    private ExecutorService lanes;
+
+    public OutboxRelay(OutboxRepository repository, RabbitTemplate rabbitTemplate,
+                       PlatformTransactionManager transactionManager, OutboxProperties properties,
+                       String source, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.source = source;
+        this.leaseMs = Math.max(properties.getLaneLeaseMs(), 2 * properties.getConfirmTimeoutMs());
+
+        this.lag = Timer.builder("outbox.publish.lag")
+                .description("Time from writing an outbox event to its broker confirm")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.published = Counter.builder("outbox.published")
+                .description("Outbox events confirmed by the broker")
+                .tag("source", source)
+                .register(meterRegistry);
+        this.failures = Counter.builder("outbox.publish.failures")
+                .description("Outbox batches that failed and will be retried")
+                .tag("source", source)
+                .register(meterRegistry);
+        this.parked = Counter.builder("outbox.parked")
+                .description("Outbox events given up on after max-attempts failed sends; needs an operator")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lets idle lanes poll now instead of at the end of their interval.
+     */
+    public void wakeUp() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    @Override
+    public void start() {
+        int partitions = Math.max(1, properties.getPartitions());
+        AtomicInteger threadNumber = new AtomicInteger();
+        lanes = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int lane = 0; lane < partitions; lane++) {
+            int current = lane;
+            lanes.submit(() -> runLane(current, partitions));
+        }
+        log.info("Outbox relay started for source={} with {} lanes", source, partitions);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        wakeUp();
+        lanes.shutdown();
+        try {
+            if (!lanes.awaitTermination(properties.getConfirmTimeoutMs() + 1000, TimeUnit.MILLISECONDS)) {
+                lanes.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            lanes.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            repository.releaseLanes(source, owner);
+        } catch (RuntimeException e) {
+            log.warn("Could not release outbox lanes of source={}, they free up when the lease runs out", source, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runLane(int lane, int partitions) {
+        // set after a failure: send the head row alone until it goes through or is parked
+        boolean isolateHead = false;
+        // local time after which the lease is renewed; half of it is always left for the batch in flight
+        long renewAt = 0;
+        while (running) {
+            long pause;
+            try {
+                int limit = isolateHead ? 1 : properties.getBatchSize();
+                boolean renew = System.currentTimeMillis() >= renewAt;
+                long claimedAt = System.currentTimeMillis();
+                int sent = relayBatch(lane, partitions, limit, renew);
+                if (sent < 0) {
+                    // another replica is relaying this lane
+                    renewAt = 0;
+                    sent = 0;
+                } else if (renew) {
+                    renewAt = claimedAt + leaseMs / 2;
+                }
+                isolateHead = false;
+                if (sent == limit) {
+                    continue;
+                }
+                pause = properties.getPollIntervalMs();
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Outbox relay lane {} failed, retrying in {} ms", lane, properties.getRetryBackoffMs(), e);
+                isolateHead = true;
+                pause = properties.getRetryBackoffMs();
+            }
+            synchronized (signal) {
+                try {
+                    signal.wait(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return rows sent, or -1 if another replica holds the lane
+     */
+    private int relayBatch(int lane, int partitions, int limit, boolean renew) {
+        List<OutboxMessage> batch = transactionTemplate.execute(status -> {
+            if (renew && !repository.claimLane(source, lane, owner, leaseMs)) {
+                return null;
+            }
+            return repository.findPending(source, partitions, lane, limit);
+        });
+        if (batch == null) {
+            return -1;
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                batch.forEach(message -> operations.send(message.exchange(), message.routingKey(), toAmqp(message)));
+                operations.waitForConfirmsOrDie(properties.getConfirmTimeoutMs());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            recordFailure(lane, batch, e);
+            throw e;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                repository.delete(batch.stream().map(OutboxMessage::id).toList()));
+
+        Instant now = Instant.now();
+        batch.forEach(message -> lag.record(Duration.between(message.createdAt(), now)));
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    // the head of the lane blocks everything behind it; make that visible on the row, and only count an attempt
+    // against it when it was sent alone and the broker was reachable
+    private void recordFailure(int lane, List<OutboxMessage> pending, RuntimeException e) {
+        OutboxMessage head = pending.get(0);
+        boolean counted = pending.size() == 1 && !(e instanceof AmqpConnectException);
+        boolean nowParked = Boolean.TRUE.equals(transactionTemplate.execute(s -> repository.recordFailure(head.id(),
+                String.valueOf(e.getMessage()), counted, properties.getMaxAttempts())));
+        if (nowParked) {
+            parked.increment();
+            log.error("Parked outbox event {}:{} to {}/{} after {} failed attempts; lane {} continues without it",
+                    source, head.id(), head.exchange(), head.routingKey(), properties.getMaxAttempts(), lane);
+        }
+    }
+
+    private Message toAmqp(OutboxMessage message) {
+        MessageProperties amqpProperties = new MessageProperties();
+        amqpProperties.setContentType(message.contentType());
+        amqpProperties.setContentEncoding(message.contentEncoding());
+        message.headers().forEach(amqpProperties::setHeader);
+        amqpProperties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        // stable across redeliveries, so consumers can deduplicate
+        amqpProperties.setMessageId(source + ":" + message.id());
+        amqpProperties.setTimestamp(Date.from(message.createdAt()));
+        return new Message(message.payload(), amqpProperties);
+    }
+}
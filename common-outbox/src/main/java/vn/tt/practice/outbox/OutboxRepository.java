@@ -0,0 +1,142 @@
+package vn.tt.practice.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to outbox_events. Inserts join the caller's transaction through the shared DataSource.
+ */
+public class OutboxRepository {
+
+    private static final TypeReference<Map<String, Object>> HEADERS = new TypeReference<>() {};
+
+    private static final String INSERT = """
+            INSERT INTO outbox_events (source, aggregate_type, aggregate_id, exchange, routing_key,
+                                       content_type, content_encoding, headers, payload, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // lane = hash of the aggregate, so one aggregate's events are always read by the same lane, in id order
+    private static final String FIND_PENDING = """
+            SELECT id, exchange, routing_key, content_type, content_encoding, headers, payload, created_at
+            FROM outbox_events
+            WHERE source = ?
+              AND parked_at IS NULL
+              AND (hashtext(aggregate_type || ':' || aggregate_id)::bigint & 2147483647) % ? = ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    // takes a free or expired lane, or renews one this owner holds; no row comes back if another owner holds it
+    private static final String CLAIM_LANE = """
+            INSERT INTO outbox_lanes (source, lane, owner, lease_until)
+            VALUES (?, ?, ?, NOW() + ? * INTERVAL '1 millisecond')
+            ON CONFLICT (source, lane) DO UPDATE SET
+                owner = EXCLUDED.owner,
+                lease_until = EXCLUDED.lease_until
+            WHERE outbox_lanes.owner = EXCLUDED.owner OR outbox_lanes.lease_until < NOW()
+            RETURNING lane
+            """;
+
+    // SET expressions read the row as it was, RETURNING reads it as updated
+    private static final String RECORD_FAILURE = """
+            UPDATE outbox_events
+            SET attempts = attempts + ?,
+                last_error = ?,
+                parked_at = CASE WHEN ? = 1 AND attempts + 1 >= ? THEN ? ELSE parked_at END
+            WHERE id = ?
+            RETURNING parked_at IS NOT NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insert(String source, String aggregateType, String aggregateId, String exchange, String routingKey,
+                       String contentType, String contentEncoding, Map<String, Object> headers, byte[] payload,
+                       Instant createdAt) {
+        jdbcTemplate.update(INSERT, source, aggregateType, aggregateId, exchange, routingKey,
+                contentType, contentEncoding, writeHeaders(headers), payload, Timestamp.from(createdAt));
+    }
+
+    /**
+     * Makes {@code owner} the only reader of a lane for {@code leaseMs}, across every replica of the service.
+     * Commits on its own, so no lock or connection is held while the lane publishes.
+     *
+     * @return whether {@code owner} now holds the lane
+     */
+    public boolean claimLane(String source, int lane, String owner, long leaseMs) {
+        return !jdbcTemplate.queryForList(CLAIM_LANE, Integer.class, source, lane, owner, leaseMs).isEmpty();
+    }
+
+    /**
+     * Gives up every lane {@code owner} holds, so another replica can take them over without waiting for the lease.
+     */
+    public void releaseLanes(String source, String owner) {
+        jdbcTemplate.update("DELETE FROM outbox_lanes WHERE source = ? AND owner = ?", source, owner);
+    }
+
+    public List<OutboxMessage> findPending(String source, int lanes, int lane, int limit) {
+        return jdbcTemplate.query(FIND_PENDING, (rs, rowNum) -> new OutboxMessage(
+                rs.getLong("id"),
+                rs.getString("exchange"),
+                rs.getString("routing_key"),
+                rs.getString("content_type"),
+                rs.getString("content_encoding"),
+                readHeaders(rs.getString("headers")),
+                rs.getBytes("payload"),
+                rs.getTimestamp("created_at").toInstant()), source, lanes, lane, limit);
+    }
+
+    public void delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM outbox_events WHERE id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", ids.toArray());
+    }
+
+    /**
+     * Stores the error on the row. When {@code counted}, also adds an attempt and parks the row once it reaches
+     * {@code maxAttempts}.
+     *
+     * @return whether the row is now parked
+     */
+    public boolean recordFailure(long id, String error, boolean counted, int maxAttempts) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(RECORD_FAILURE, Boolean.class,
+                counted ? 1 : 0, error, counted ? 1 : 0, maxAttempts, Timestamp.from(Instant.now()), id));
+    }
+
+    private String writeHeaders(Map<String, Object> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox headers are not serializable", e);
+        }
+    }
+
+    private Map<String, Object> readHeaders(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, HEADERS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt outbox headers: " + json, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+-- Shared by every service in the database; rows are scoped by source (spring.application.name).
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    source VARCHAR(100) NOT NULL,
+    aggregate_type VARCHAR(100) NOT NULL,
+    aggregate_id VARCHAR(100) NOT NULL,
+    exchange VARCHAR(255) NOT NULL,
+    routing_key VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100),
+    content_encoding VARCHAR(50),
+    headers TEXT,
+    payload BYTEA NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    parked_at TIMESTAMP
+);
+
+-- tables created before rows could be parked
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS parked_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_source_id ON outbox_events (source, id);
+
+-- Which relay instance owns each lane; a lease that runs out lets another replica take the lane over.
+CREATE TABLE IF NOT EXISTS outbox_lanes (
+    source VARCHAR(100) NOT NULL,
+    lane INT NOT NULL,
+    owner VARCHAR(36) NOT NULL,
+    lease_until TIMESTAMP NOT NULL,
+    PRIMARY KEY (source, lane)
+);
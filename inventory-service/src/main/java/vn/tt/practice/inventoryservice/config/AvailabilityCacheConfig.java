@@ -0,0 +1,32 @@
+package vn.tt.practice.inventoryservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import vn.tt.practice.inventoryservice.service.StockAvailabilityCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+@Configuration
+@ConditionalOnProperty(name = "inventory.availability.redis-enabled", havingValue = "true")
+public class AvailabilityCacheConfig {
+
+    // other replicas' evictions, as comma-separated product ids
+    @Bean
+    public RedisMessageListenerContainer availabilityInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                          StockAvailabilityCache availabilityCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> availabilityCache.evictLocal(
+                        Arrays.stream(new String(message.getBody(), StandardCharsets.UTF_8).split(","))
+                                .filter(id -> !id.isBlank())
+                                .map(Long::valueOf)
+                                .toList()),
+                new ChannelTopic(StockAvailabilityCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,86 @@
+package vn.tt.practice.inventoryservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "inventory")
+@Getter
+@Setter
+public class InventoryProperties {
+
+    private HotSku hotSku = new HotSku();
+    private Reserve reserve = new Reserve();
+    private Expiry expiry = new Expiry();
+    private Ledger ledger = new Ledger();
+    private Availability availability = new Availability();
+
+    @Getter
+    @Setter
+    public static class HotSku {
+        // In-memory shards per SHARDED product; more shards means less CAS contention
+        private int shards = 8;
+        // Units moved from inventory.available_quantity into this node's ledger per lease
+        private int leaseChunk = 200;
+        // Append-only local journal, must live on a persistent volume
+        private String journalPath = "data/hot-sku.journal";
+        // Journal size after which it is rewritten with only the outstanding leases
+        private long journalCompactBytes = 64L * 1024 * 1024;
+        // Dedicated connections for leases and returns, which commit apart from the reservation needing them
+        private int leasePoolSize = 2;
+        // Max journal entries applied to the database per reconcile transaction
+        private int batchSize = 1000;
+        // Pause between reconcile passes; also the poll interval while settlement waits for another node's lines
+        private long reconcileIntervalMs = 50;
+        // How long order handling waits for its reservations to reach the database
+        private long awaitTimeoutMs = 2000;
+    }
+
+    @Getter
+    @Setter
+    public static class Reserve {
+        // Deliveries of one order.created that may fail with an unexpected error before the order is refused
+        private int maxAttempts = 5;
+        // Pause before a failed or not-yet-ready order.created is requeued
+        private long retryBackoffMs = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Expiry {
+        // Reservations expired per sweeper transaction
+        private int chunkSize = 500;
+        // Resolution of the expiry wheel
+        private long tickMs = 1000;
+        // Back-off before the wheel retries a batch that failed to expire
+        private long retryDelayMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Ledger {
+        // Monthly inventory_transactions partitions created ahead of the current month
+        private int monthsAhead = 2;
+        // Months kept row by row; older ones are compacted into daily per-product summaries
+        private int retentionMonths = 12;
+    }
+
+    @Getter
+    @Setter
+    public static class Availability {
+        // Products held in each node's local snapshot cache
+        private long localMaxSize = 100_000;
+        // Upper bound on how stale another replica's local copy can be when Redis is off
+        private long localTtlMs = 5000;
+        // Shared Redis tier plus pub/sub eviction of other replicas' local copies
+        private boolean redisEnabled = false;
+        private long redisTtlMs = 30_000;
+        // After an eviction, loads may not put a snapshot back into Redis for this long; covers a load that
+        // read the database before the change committed
+        private long evictGuardMs = 2000;
+        // Max product ids per bulk GET /inventory call
+        private int maxBulkSize = 500;
+    }
+}
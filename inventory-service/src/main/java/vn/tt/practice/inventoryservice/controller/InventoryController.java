@@ -4,18 +4,20 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.dto.BatchReserveRequest;
+import vn.tt.practice.inventoryservice.dto.BatchReserveResponse;
 import vn.tt.practice.inventoryservice.dto.Request;
 import vn.tt.practice.inventoryservice.dto.Response;
+import vn.tt.practice.inventoryservice.dto.StockAvailability;
+import vn.tt.practice.inventoryservice.dto.TransactionPage;
 import vn.tt.practice.inventoryservice.entity.Inventory;
-import vn.tt.practice.inventoryservice.entity.InventoryTransaction;
-import vn.tt.practice.inventoryservice.repository.InventoryRepository;
 import vn.tt.practice.inventoryservice.service.InventoryService;
 
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -30,7 +32,7 @@ public class InventoryController {
     private static final String ROLE_ADMIN = "ROLE_ADMIN";
     private static final String ROLE_SUPER_ADMIN = "ROLE_SUPER_ADMIN";
 
-    private final InventoryRepository inventoryRepository;
+    private final InventoryProperties inventoryProperties;
     private final InventoryService inventoryService;
 
     private static Set<String> parseRoles(String rolesHeader) {
@@ -44,9 +46,19 @@ public class InventoryController {
 
     @GetMapping("/{productId}")
     @Operation(summary = "Check stock availability")
-    public ResponseEntity<Inventory> getInventory(@PathVariable Long productId) {
-        return ResponseEntity.ok(inventoryRepository.findByProductId(productId)
-                .orElseThrow(() -> new RuntimeException("Inventory not found")));
+    public ResponseEntity<StockAvailability> getInventory(@PathVariable Long productId) {
+        return inventoryService.getAvailability(productId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(params = "productIds")
+    @Operation(summary = "Check stock availability of many products, e.g. ?productIds=1,2,3")
+    public ResponseEntity<List<StockAvailability>> getInventories(@RequestParam List<Long> productIds) {
+        if (productIds.size() > inventoryProperties.getAvailability().getMaxBulkSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(inventoryService.getAvailability(productIds));
     }
 
     @PostMapping("/reserve")
@@ -55,6 +67,12 @@ public class InventoryController {
         return ResponseEntity.ok(inventoryService.reserve(request));
     }
 
+    @PostMapping("/reserve/batch")
+    @Operation(summary = "Reserve stock for all items of an order (all-or-nothing)")
+    public ResponseEntity<BatchReserveResponse> reserveBatch(@RequestBody @Valid BatchReserveRequest request) {
+        return ResponseEntity.ok(inventoryService.reserveBatch(request));
+    }
+
     @PostMapping("/release")
     @Operation(summary = "Release reservation")
     public ResponseEntity<String> releaseReservation(@RequestParam Long orderId) {
@@ -82,14 +100,48 @@ public class InventoryController {
         return ResponseEntity.ok(inventoryService.restock(productId, quantity, createdBy));
     }
 
+    @PutMapping("/{productId}/reservation-mode")
+    @Operation(summary = "Switch between LOCKING and CONDITIONAL reservation (ADMIN)")
+    public ResponseEntity<Inventory> updateReservationMode(
+            @PathVariable Long productId,
+            @RequestParam Inventory.ReservationMode mode,
+            @RequestHeader(value = HEADER_USER_ROLES, required = false) String rolesHeader) {
+        if (!hasAdminOrSuperAdmin(parseRoles(rolesHeader))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(inventoryService.updateReservationMode(productId, mode));
+    }
+
     @GetMapping("/transactions")
-    @Operation(summary = "Get transaction history (ADMIN)")
-    public ResponseEntity<Page<InventoryTransaction>> getTransactions(
-            Pageable pageable,
+    @Operation(summary = "Get transaction history, newest first, keyset paginated (ADMIN)")
+    public ResponseEntity<TransactionPage> getTransactions(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader(value = HEADER_USER_ROLES, required = false) String rolesHeader) {
+        if (!hasAdminOrSuperAdmin(parseRoles(rolesHeader))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(inventoryService.getTransactions(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{productId}/transactions")
+    @Operation(summary = "Get transaction history of one product, keyset paginated (ADMIN)")
+    public ResponseEntity<TransactionPage> getProductTransactions(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
             @RequestHeader(value = HEADER_USER_ROLES, required = false) String rolesHeader) {
         if (!hasAdminOrSuperAdmin(parseRoles(rolesHeader))) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
-        return ResponseEntity.ok(inventoryService.getTransactions(pageable));
+        try {
+            return ResponseEntity.ok(inventoryService.getProductTransactions(productId, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 }
@@ -0,0 +1,17 @@
+package vn.tt.practice.inventoryservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchReserveResponse {
+    private Boolean reserved;
+    private Long orderId;
+    private List<Long> reservationIds;
+    private Instant expiresAt;
+    private String message;
+}
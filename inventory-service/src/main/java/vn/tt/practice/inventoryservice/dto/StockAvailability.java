@@ -0,0 +1,8 @@
+package vn.tt.practice.inventoryservice.dto;
+
+/**
+ * Read model behind the stock endpoints: just the counters a storefront needs, no JPA entity.
+ * For SHARDED products availableQuantity excludes units leased into nodes' in-memory ledgers.
+ */
+public record StockAvailability(Long productId, Integer availableQuantity, Integer reservedQuantity, Long version) {
+}
@@ -0,0 +1,14 @@
+package vn.tt.practice.inventoryservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class TransactionPage {
+    private List<TransactionResponse> items;
+    // pass as ?after= to get the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package vn.tt.practice.inventoryservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class TransactionResponse {
+    private Long id;
+    private Long productId;
+    private String transactionType;
+    private Integer quantity;
+    private Long referenceId;
+    private String referenceType;
+    private String notes;
+    private Instant createdAt;
+    private String createdBy;
+}
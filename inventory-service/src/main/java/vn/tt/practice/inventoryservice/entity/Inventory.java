@@ -29,6 +29,14 @@ public class Inventory {
     @Column(name = "reserved_quantity", nullable = false)
     private Integer reservedQuantity = 0;
 
+    /**
+     * How reserve() takes stock from this row. CONDITIONAL is meant for flash-sale SKUs.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reservation_mode", nullable = false, length = 20)
+    @Builder.Default
+    private ReservationMode reservationMode = ReservationMode.LOCKING;
+
     @Column(name = "warehouse_location", length = 100)
     private String warehouseLocation;
 
@@ -53,4 +61,13 @@ public class Inventory {
     protected void onUpdate() {
         updatedAt = Instant.now();
     }
+
+    public enum ReservationMode {
+        /** SELECT ... FOR UPDATE, held until commit. */
+        LOCKING,
+        /** Single guarded UPDATE issued last in the transaction; no read lock. */
+        CONDITIONAL,
+        /** Stock leased into the in-memory HotSkuLedger, written back asynchronously. */
+        SHARDED
+    }
 }
@@ -10,7 +10,8 @@ import java.time.Instant;
         indexes = {
                 @Index(name = "idx_reservation_order", columnList = "order_id"),
                 @Index(name = "idx_reservation_status", columnList = "status"),
-                @Index(name = "idx_reservation_expires", columnList = "expires_at")
+                @Index(name = "idx_reservation_expires", columnList = "expires_at"),
+                @Index(name = "idx_reservations_status_expires", columnList = "status, expires_at")
         })
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
@@ -6,8 +6,9 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
+// partitioned by month on created_at, see V5__partition_inventory_transactions.sql
 @Table(name = "inventory_transactions",
-        indexes = @Index(name = "idx_transactions_inventory", columnList = "inventory_id"))
+        indexes = @Index(name = "idx_transactions_inventory_created", columnList = "inventory_id, created_at DESC, id DESC"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,12 +1,24 @@
 package vn.tt.practice.inventoryservice.event;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
 import vn.tt.practice.inventoryservice.config.RabbitMQConfig;
+import vn.tt.practice.inventoryservice.dto.BatchReserveRequest;
+import vn.tt.practice.inventoryservice.dto.BatchReserveResponse;
+import vn.tt.practice.inventoryservice.service.HotSkuLinesPendingException;
+import vn.tt.practice.inventoryservice.service.HotSkuNotReadyException;
+import vn.tt.practice.inventoryservice.service.HotSkuReconciler;
 import vn.tt.practice.inventoryservice.service.InventoryService;
+import vn.tt.practice.messaging.IdempotentConsumer;
+
+import java.time.Duration;
 
 @Slf4j
 @Component
@@ -15,76 +27,111 @@ public class InventoryEventListener {
 
     private final InventoryService inventoryService;
     private final InventoryEventPublisher eventPublisher;
-
+    private final HotSkuReconciler hotSkuReconciler;
+    private final IdempotentConsumer idempotentConsumer;
+    private final InventoryProperties properties;
+
+    // failed deliveries per order on this node; a restart only grants a few extra attempts
+    private final Cache<Long, Integer> failedAttempts = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * The reservation, the inventory.reserved outbox event and the message id commit together, so a redelivered
+     * order.created is acked without reserving twice. A business failure rolls all three back; the id is then
+     * recorded together with the failure event instead.
+     * <p>
+     * Unexpected errors are requeued after {@code inventory.reserve.retry-backoff-ms} without telling the order
+     * service; only once {@code max-attempts} deliveries have failed is the order refused with
+     * inventory.reservation.failed and the message acked.
+     */
     @RabbitListener(queues = RabbitMQConfig.ORDER_CREATED_QUEUE)
-    @Transactional
-    public void handleOrderCreated(OrderCreatedEvent event) {
+    public void handleOrderCreated(OrderCreatedEvent event,
+                                   @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         Long orderId = event.getOrderId();
-        var items = event.getItems();
 
+        IdempotentConsumer.Outcome<BatchReserveResponse> outcome;
         try {
-            for (OrderItemEvent item : items) {
-                var res = inventoryService.reserve(
-                        vn.tt.practice.inventoryservice.dto.Request.builder()
-                                .productId(item.getProductId())
-                                .orderId(orderId)
-                                .quantity(item.getQuantity())
-                                .build()
-                );
-
-                if (res == null || !Boolean.TRUE.equals(res.getReserved())) {
-                    throw new IllegalStateException(
-                            "Reservation failed for productId=" + item.getProductId()
-                                    + ", qty=" + item.getQuantity()
-                                    + ". " + (res != null ? res.getMessage() : "")
-                    );
+            // all-or-nothing: a failed batch leaves no reservation behind, so no compensation is needed
+            outcome = idempotentConsumer.process(RabbitMQConfig.ORDER_CREATED_QUEUE, messageId, () -> {
+                BatchReserveResponse res = inventoryService.reserveBatch(BatchReserveRequest.builder()
+                        .orderId(orderId)
+                        .items(event.getItems() == null ? java.util.List.of() : event.getItems().stream()
+                                .map(item -> new BatchReserveRequest.Item(item.getProductId(), item.getQuantity()))
+                                .toList())
+                        .build());
+                if (Boolean.TRUE.equals(res.getReserved())) {
+                    eventPublisher.publishInventoryReserved(orderId);
                 }
-            }
-
-            eventPublisher.publishInventoryReserved(orderId);
-            log.info("Reserved inventory for entire order successfully. orderId={}", orderId);
-
+                return res;
+            });
+        } catch (HotSkuNotReadyException e) {
+            // not a reservation failure and not an attempt: requeue until the ledger has recovered its journal
+            log.warn("Hot SKU ledger not ready, requeueing order.created. orderId={}", orderId);
+            backOff();
+            throw e;
         } catch (Exception e) {
-            log.error("Reserve failed. Compensating by releasing reservations. orderId={}", orderId, e);
-
-            try {
-                inventoryService.releaseReservation(orderId);
-            } catch (Exception ex) {
-                log.error("Compensation release failed. orderId={}", orderId, ex);
+            int attempt = failedAttempts.asMap().merge(orderId, 1, Integer::sum);
+            int maxAttempts = properties.getReserve().getMaxAttempts();
+            if (attempt < maxAttempts) {
+                log.warn("Reserve failed, attempt {}/{}, requeueing. orderId={}", attempt, maxAttempts, orderId, e);
+                backOff();
+                throw e;
             }
-
-            eventPublisher.publishInventoryReservationFailed(
-                    orderId,
-                    "Failed to reserve inventory for orderId=" + orderId + ". reason=" + e.getMessage()
-            );
-
-            if (isBusinessReservationError(e)) {
-                log.warn("Business reservation error -> ACK message (no retry). orderId={}", orderId);
-                return;
-            }
-
-            throw e;
+            log.error("Reserve failed {} times -> refusing order. orderId={}", attempt, orderId, e);
+            publishReservationFailed(orderId, messageId, e.getMessage());
+            failedAttempts.invalidate(orderId);
+            return;
         }
-    }
+        failedAttempts.invalidate(orderId);
 
-    private boolean isBusinessReservationError(Exception e) {
-        String msg = e.getMessage();
-        if (msg == null) return false;
+        if (outcome.duplicate()) {
+            return;
+        }
+        BatchReserveResponse res = outcome.result();
+        if (!Boolean.TRUE.equals(res.getReserved())) {
+            log.warn("Business reservation error -> ACK message (no retry). orderId={}, reason={}",
+                    orderId, res.getMessage());
+            publishReservationFailed(orderId, messageId, res.getMessage());
+            return;
+        }
 
-        return msg.contains("Inventory not found")
-                || msg.contains("Out of stock")
-                || msg.contains("Reservation failed for productId=");
+        log.info("Reserved inventory for entire order successfully. orderId={}, lines={}",
+                orderId, res.getReservationIds().size());
     }
 
+    // recorded under the message id, so a redelivery after this commit does not refuse the order twice
+    private void publishReservationFailed(Long orderId, String messageId, String reason) {
+        idempotentConsumer.process(RabbitMQConfig.ORDER_CREATED_QUEUE, messageId, () ->
+                eventPublisher.publishInventoryReservationFailed(
+                        orderId,
+                        "Failed to reserve inventory for orderId=" + orderId + ". reason=" + reason
+                ));
+    }
 
+    // the broker redelivers a requeued message at once; without a pause the consumer spins on it
+    private void backOff() {
+        try {
+            Thread.sleep(properties.getReserve().getRetryBackoffMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
     @RabbitListener(queues = RabbitMQConfig.PAYMENT_COMPLETED_QUEUE)
-    @Transactional
-    public void handlePaymentCompleted(PaymentCompletedEvent event) {
+    public void handlePaymentCompleted(PaymentCompletedEvent event,
+                                       @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received PaymentCompletedEvent: orderId={}, transactionId={}", 
                 event.getOrderId(), event.getTransactionId());
+        // SHARDED lines reach inventory_reservations asynchronously; settle only once they are there
+        hotSkuReconciler.awaitApplied(event.getOrderId());
         try {
-            inventoryService.confirmReservation(event.getOrderId());
+            idempotentConsumer.process(RabbitMQConfig.PAYMENT_COMPLETED_QUEUE, messageId,
+                    () -> inventoryService.confirmReservation(event.getOrderId()));
+        } catch (HotSkuLinesPendingException e) {
+            log.warn("Hot SKU lines of orderId={} not applied yet, requeueing PaymentCompletedEvent", event.getOrderId());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing PaymentCompletedEvent", e);
             throw e;
@@ -92,11 +139,16 @@ public class InventoryEventListener {
     }
 
     @RabbitListener(queues = RabbitMQConfig.PAYMENT_FAILED_QUEUE)
-    @Transactional
-    public void handlePaymentFailed(PaymentFailedEvent event) {
+    public void handlePaymentFailed(PaymentFailedEvent event,
+                                    @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received PaymentFailedEvent: orderId={}, reason={}", event.getOrderId(), event.getReason());
+        hotSkuReconciler.awaitApplied(event.getOrderId());
         try {
-            inventoryService.releaseReservation(event.getOrderId());
+            idempotentConsumer.process(RabbitMQConfig.PAYMENT_FAILED_QUEUE, messageId,
+                    () -> inventoryService.releaseReservation(event.getOrderId()));
+        } catch (HotSkuLinesPendingException e) {
+            log.warn("Hot SKU lines of orderId={} not applied yet, requeueing PaymentFailedEvent", event.getOrderId());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing PaymentFailedEvent", e);
             throw e;
@@ -104,11 +156,16 @@ public class InventoryEventListener {
     }
 
     @RabbitListener(queues = RabbitMQConfig.ORDER_CANCELLED_QUEUE)
-    @Transactional
-    public void handleOrderCancelled(OrderCancelledEvent event) {
+    public void handleOrderCancelled(OrderCancelledEvent event,
+                                     @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received OrderCancelledEvent: orderId={}", event.getOrderId());
+        hotSkuReconciler.awaitApplied(event.getOrderId());
         try {
-            inventoryService.releaseReservation(event.getOrderId());
+            idempotentConsumer.process(RabbitMQConfig.ORDER_CANCELLED_QUEUE, messageId,
+                    () -> inventoryService.releaseReservation(event.getOrderId()));
+        } catch (HotSkuLinesPendingException e) {
+            log.warn("Hot SKU lines of orderId={} not applied yet, requeueing OrderCancelledEvent", event.getOrderId());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing OrderCancelledEvent", e);
             throw e;
@@ -2,48 +2,36 @@ package vn.tt.practice.inventoryservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 import vn.tt.practice.inventoryservice.config.RabbitMQConfig;
 import vn.tt.practice.inventoryservice.dto.InventoryReservationFailedEvent;
 import vn.tt.practice.inventoryservice.dto.InventoryReservedEvent;
+import vn.tt.practice.outbox.OutboxPublisher;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class InventoryEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishInventoryReserved(Long orderId) {
         InventoryReservedEvent event = new InventoryReservedEvent(orderId);
 
-        try {
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.INVENTORY_EXCHANGE,
-                    RabbitMQConfig.INVENTORY_RESERVED_ROUTING_KEY,
-                    event
-            );
-            log.info("Published InventoryReservedEvent: orderId={}", orderId);
-        } catch (Exception e) {
-            log.error("Failed to publish InventoryReservedEvent", e);
-            throw e;
-        }
+        outboxPublisher.publish("Order", orderId,
+                RabbitMQConfig.INVENTORY_EXCHANGE,
+                RabbitMQConfig.INVENTORY_RESERVED_ROUTING_KEY,
+                event);
+        log.info("Queued InventoryReservedEvent: orderId={}", orderId);
     }
 
     public void publishInventoryReservationFailed(Long orderId, String reason) {
         InventoryReservationFailedEvent event = new InventoryReservationFailedEvent(orderId, reason);
 
-        try {
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.INVENTORY_EXCHANGE,
-                    RabbitMQConfig.INVENTORY_RESERVATION_FAILED_ROUTING_KEY,
-                    event
-            );
-            log.info("Published InventoryReservationFailedEvent: orderId={}, reason={}", orderId, reason);
-        } catch (Exception e) {
-            log.error("Failed to publish InventoryReservationFailedEvent", e);
-            throw e;
-        }
+        outboxPublisher.publish("Order", orderId,
+                RabbitMQConfig.INVENTORY_EXCHANGE,
+                RabbitMQConfig.INVENTORY_RESERVATION_FAILED_ROUTING_KEY,
+                event);
+        log.info("Queued InventoryReservationFailedEvent: orderId={}, reason={}", orderId, reason);
     }
 }
@@ -0,0 +1,48 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+
+import java.util.function.Function;
+
+/**
+ * A few connections of their own for hot-SKU leases and returns. Those commit independently of the reservation
+ * that triggers them; taking a second connection from the main pool for them would let concurrent reservations
+ * each hold one connection while waiting for another, and drain the pool under a flash sale.
+ * <p>
+ * Deliberately not a DataSource bean, so the main pool's auto-configuration is left alone.
+ */
+@Component
+public class HotSkuLeasePool implements DisposableBean {
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public HotSkuLeasePool(DataSourceProperties dataSourceProperties, InventoryProperties properties) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("hot-sku-lease");
+        this.dataSource.setMaximumPoolSize(properties.getHotSku().getLeasePoolSize());
+        this.dataSource.setMinimumIdle(1);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Runs {@code work} in its own transaction on this pool; the caller's transaction, if any, is untouched.
+     */
+    public <T> T inTransaction(Function<JdbcTemplate, T> work) {
+        return transactionTemplate.execute(status -> work.apply(jdbcTemplate));
+    }
+
+    @Override
+    public void destroy() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,250 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.inventoryservice.service.HotSkuJournal;
+import vn.tt.practice.inventoryservice.service.StockAvailabilityCache;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Database side of the hot-SKU ledger: leasing stock out of inventory rows, returning it,
+ * and applying journaled reservations together with the journal checkpoint.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HotSkuRepository {
+
+    private static final String TX_TYPE_RESERVE = "RESERVE";
+
+    private static final String LEASE = """
+            WITH current AS (
+                SELECT id, available_quantity FROM inventory
+                WHERE product_id = ? AND reservation_mode = 'SHARDED' AND available_quantity > 0
+                FOR UPDATE
+            )
+            UPDATE inventory i
+            SET available_quantity = i.available_quantity - LEAST(current.available_quantity, ?),
+                version = i.version + 1,
+                updated_at = NOW()
+            FROM current
+            WHERE i.id = current.id
+            RETURNING i.id AS inventory_id, LEAST(current.available_quantity, ?) AS leased
+            """;
+
+    private static final String FIND_CHECKPOINT =
+            "SELECT last_seq, closed FROM hot_sku_checkpoints WHERE journal_id = ?";
+
+    private static final String SAVE_CHECKPOINT = """
+            INSERT INTO hot_sku_checkpoints (journal_id, last_seq, closed, updated_at)
+            VALUES (?, ?, ?, NOW())
+            ON CONFLICT (journal_id) DO UPDATE SET
+                last_seq   = GREATEST(hot_sku_checkpoints.last_seq, EXCLUDED.last_seq),
+                closed     = hot_sku_checkpoints.closed OR EXCLUDED.closed,
+                updated_at = NOW()
+            """;
+
+    // one marker per order and journal; the reserving transaction adds its lines
+    private static final String MARK_PENDING = """
+            INSERT INTO hot_sku_pending_orders (order_id, journal_id, remaining, expires_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (order_id, journal_id) DO UPDATE SET
+                remaining  = hot_sku_pending_orders.remaining + EXCLUDED.remaining,
+                expires_at = GREATEST(hot_sku_pending_orders.expires_at, EXCLUDED.expires_at)
+            """;
+
+    // lines are only applied after their transaction committed; the upsert tolerates a marker the cleanup
+    // already removed because the reservation expired
+    private static final String MARK_APPLIED = """
+            INSERT INTO hot_sku_pending_orders (order_id, journal_id, remaining, expires_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (order_id, journal_id) DO UPDATE SET
+                remaining = hot_sku_pending_orders.remaining + EXCLUDED.remaining
+            """;
+
+    private static final String DELETE_APPLIED =
+            "DELETE FROM hot_sku_pending_orders WHERE journal_id = ? AND order_id = ANY(?) AND remaining <= 0";
+
+    private static final String HAS_PENDING =
+            "SELECT EXISTS (SELECT 1 FROM hot_sku_pending_orders WHERE order_id = ? AND remaining > 0 AND expires_at > ?)";
+
+    private static final String FIND_PENDING_IN_JOURNAL =
+            "SELECT order_id, remaining FROM hot_sku_pending_orders WHERE journal_id = ? AND order_id = ANY(?) AND remaining > 0";
+
+    private static final String DELETE_EXPIRED_PENDING = "DELETE FROM hot_sku_pending_orders WHERE expires_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotSkuLeasePool leasePool;
+    private final InventoryBatchRepository batchRepository;
+    private final StockAvailabilityCache availabilityCache;
+
+    /**
+     * Moves up to {@code quantity} units out of available stock, committed on its own through {@link HotSkuLeasePool}.
+     */
+    public Optional<Lease> lease(long productId, int quantity) {
+        return leasePool.inTransaction(leaseJdbc -> {
+            Optional<Lease> lease = leaseJdbc.query(LEASE,
+                    (rs, rowNum) -> new Lease(rs.getLong("inventory_id"), rs.getInt("leased")),
+                    productId, quantity, quantity).stream().findFirst();
+            lease.ifPresent(granted -> availabilityCache.evictAfterCommit(List.of(productId)));
+            return lease;
+        });
+    }
+
+    /**
+     * Gives leased units back to available stock, committed on its own through {@link HotSkuLeasePool}.
+     */
+    public void returnLeases(Map<Long, Integer> quantitiesByInventoryId) {
+        leasePool.inTransaction(leaseJdbc -> {
+            addToColumn(leaseJdbc, "available_quantity", quantitiesByInventoryId);
+            return null;
+        });
+    }
+
+    /**
+     * Turns journaled RESERVE entries into reservation and ledger rows, adds them to reserved_quantity
+     * and advances the checkpoint, all in one transaction so a replay never applies an entry twice.
+     *
+     * @return generated reservation ids, in the order of {@code entries}
+     */
+    @Transactional
+    public List<Long> applyReservations(String journalId, List<HotSkuJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+
+        List<InventoryBatchRepository.ReservationRow> reservations = new ArrayList<>(entries.size());
+        List<InventoryBatchRepository.TransactionRow> transactions = new ArrayList<>(entries.size());
+        Map<Long, Integer> reservedByInventoryId = new TreeMap<>();
+        long lastSeq = 0;
+        for (HotSkuJournal.Entry entry : entries) {
+            reservations.add(new InventoryBatchRepository.ReservationRow(entry.inventoryId(), entry.orderId(),
+                    entry.quantity(), "PENDING", Instant.ofEpochMilli(entry.expiresAtMillis())));
+            transactions.add(new InventoryBatchRepository.TransactionRow(entry.inventoryId(), TX_TYPE_RESERVE,
+                    -entry.quantity(), entry.orderId(), "ORDER", "Reserve for order " + entry.orderId(), null));
+            reservedByInventoryId.merge(entry.inventoryId(), entry.quantity(), Integer::sum);
+            lastSeq = Math.max(lastSeq, entry.seq());
+        }
+
+        List<Long> reservationIds = batchRepository.insertReservations(reservations);
+        batchRepository.insertTransactions(transactions);
+        addToColumn(jdbcTemplate, "reserved_quantity", reservedByInventoryId);
+        markApplied(journalId, entries);
+        jdbcTemplate.update(SAVE_CHECKPOINT, journalId, lastSeq, false);
+        return reservationIds;
+    }
+
+    /**
+     * Returns whatever the journal still owes and marks it closed in the same transaction,
+     * so a crash after this commit cannot return the same units twice.
+     */
+    @Transactional
+    public void closeJournal(String journalId, Map<Long, HotSkuJournal.Outstanding> outstanding) {
+        Map<Long, Integer> byInventoryId = new TreeMap<>();
+        outstanding.values().forEach(owed -> {
+            if (owed.quantity() > 0) {
+                byInventoryId.merge(owed.inventoryId(), owed.quantity(), Integer::sum);
+            }
+        });
+        addToColumn(jdbcTemplate, "available_quantity", byInventoryId);
+        jdbcTemplate.update(SAVE_CHECKPOINT, journalId, 0L, true);
+    }
+
+    /**
+     * Records, in the reserving transaction, that {@code lines} lines of the order will be journaled in
+     * {@code journalId} and are on their way to inventory_reservations.
+     */
+    public void markPending(long orderId, String journalId, int lines, Instant expiresAt) {
+        jdbcTemplate.update(MARK_PENDING, orderId, journalId, lines, Timestamp.from(expiresAt));
+    }
+
+    /**
+     * True while some of the order's journaled lines have not reached inventory_reservations yet, on any node.
+     * Markers past the reservation's expiry are ignored: those lines can no longer be settled anyway.
+     */
+    public boolean hasPendingLines(long orderId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_PENDING, Boolean.class, orderId,
+                Timestamp.from(Instant.now())));
+    }
+
+    /**
+     * Committed but not yet applied lines per order, for the orders given, of one journal.
+     */
+    public Map<Long, Integer> findPendingLines(String journalId, Collection<Long> orderIds) {
+        Map<Long, Integer> lines = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            var statement = con.prepareStatement(FIND_PENDING_IN_JOURNAL);
+            statement.setString(1, journalId);
+            statement.setArray(2, con.createArrayOf("bigint", orderIds.toArray()));
+            return statement;
+        }, rs -> {
+            lines.put(rs.getLong("order_id"), rs.getInt("remaining"));
+        });
+        return lines;
+    }
+
+    public int deleteExpiredPending(Instant now) {
+        return jdbcTemplate.update(DELETE_EXPIRED_PENDING, Timestamp.from(now));
+    }
+
+    public Optional<Checkpoint> findCheckpoint(String journalId) {
+        return jdbcTemplate.query(FIND_CHECKPOINT,
+                (rs, rowNum) -> new Checkpoint(rs.getLong("last_seq"), rs.getBoolean("closed")),
+                journalId).stream().findFirst();
+    }
+
+    // counts the applied lines off each order's marker, in order-id order so concurrent appliers cannot deadlock
+    private void markApplied(String journalId, List<HotSkuJournal.Entry> entries) {
+        Map<Long, Integer> linesByOrderId = new TreeMap<>();
+        Map<Long, Long> expiresByOrderId = new TreeMap<>();
+        for (HotSkuJournal.Entry entry : entries) {
+            linesByOrderId.merge(entry.orderId(), 1, Integer::sum);
+            expiresByOrderId.merge(entry.orderId(), entry.expiresAtMillis(), Math::max);
+        }
+        jdbcTemplate.batchUpdate(MARK_APPLIED, linesByOrderId.entrySet().stream()
+                .map(line -> new Object[]{line.getKey(), journalId, -line.getValue(),
+                        Timestamp.from(Instant.ofEpochMilli(expiresByOrderId.get(line.getKey())))})
+                .toList());
+        jdbcTemplate.update(con -> {
+            var statement = con.prepareStatement(DELETE_APPLIED);
+            statement.setString(1, journalId);
+            statement.setArray(2, con.createArrayOf("bigint", linesByOrderId.keySet().toArray()));
+            return statement;
+        });
+    }
+
+    // column is always a literal from this class, never user input; evicts the touched products after commit
+    private void addToColumn(JdbcTemplate jdbc, String column, Map<Long, Integer> quantitiesByInventoryId) {
+        if (quantitiesByInventoryId.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE inventory i SET ")
+                .append(column).append(" = i.").append(column).append(" + v.quantity, ")
+                .append("version = i.version + 1, updated_at = NOW() FROM (VALUES ");
+        List<Object> args = new ArrayList<>(quantitiesByInventoryId.size() * 2);
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : quantitiesByInventoryId.entrySet()) {
+            sql.append(i++ == 0 ? "" : ", ").append("(CAST(? AS BIGINT), CAST(? AS INT))");
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        sql.append(") AS v(inventory_id, quantity) WHERE i.id = v.inventory_id RETURNING i.product_id");
+
+        availabilityCache.evictAfterCommit(jdbc.queryForList(sql.toString(), Long.class, args.toArray()));
+    }
+
+    public record Lease(long inventoryId, int quantity) {}
+
+    public record Checkpoint(long lastSeq, boolean closed) {}
+}
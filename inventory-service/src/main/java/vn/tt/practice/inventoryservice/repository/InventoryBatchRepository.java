@@ -0,0 +1,84 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-row inserts for reservations and ledger rows. Both tables use IDENTITY keys,
+ * which stops Hibernate from batching inserts, so bulk paths write them here.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryBatchRepository {
+
+    private static final String INSERT_RESERVATIONS = """
+            INSERT INTO inventory_reservations
+                (inventory_id, order_id, quantity, status, expires_at, created_at, updated_at)
+            VALUES
+            """;
+
+    private static final String INSERT_TRANSACTIONS = """
+            INSERT INTO inventory_transactions
+                (inventory_id, transaction_type, quantity, reference_id, reference_type, notes, created_at, created_by)
+            VALUES
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return generated reservation ids, in the order of {@code rows}
+     */
+    public List<Long> insertReservations(List<ReservationRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_RESERVATIONS);
+        List<Object> args = new ArrayList<>(rows.size() * 5);
+        for (int i = 0; i < rows.size(); i++) {
+            ReservationRow row = rows.get(i);
+            sql.append(i == 0 ? "" : ",\n").append("(?, ?, ?, ?, ?, NOW(), NOW())");
+            args.add(row.inventoryId());
+            args.add(row.orderId());
+            args.add(row.quantity());
+            args.add(row.status());
+            args.add(Timestamp.from(row.expiresAt()));
+        }
+        sql.append("\nRETURNING id");
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    public void insertTransactions(List<TransactionRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_TRANSACTIONS);
+        List<Object> args = new ArrayList<>(rows.size() * 7);
+        for (int i = 0; i < rows.size(); i++) {
+            TransactionRow row = rows.get(i);
+            sql.append(i == 0 ? "" : ",\n").append("(?, ?, ?, ?, ?, ?, NOW(), ?)");
+            args.add(row.inventoryId());
+            args.add(row.transactionType());
+            args.add(row.quantity());
+            args.add(row.referenceId());
+            args.add(row.referenceType());
+            args.add(row.notes());
+            args.add(row.createdBy());
+        }
+
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    public record ReservationRow(long inventoryId, long orderId, int quantity, String status, Instant expiresAt) {}
+
+    public record TransactionRow(long inventoryId, String transactionType, int quantity, Long referenceId,
+                                 String referenceType, String notes, String createdBy) {}
+}
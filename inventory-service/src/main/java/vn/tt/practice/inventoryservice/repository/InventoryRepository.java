@@ -3,10 +3,15 @@ package vn.tt.practice.inventoryservice.repository;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import vn.tt.practice.inventoryservice.dto.StockAvailability;
 import vn.tt.practice.inventoryservice.entity.Inventory;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface InventoryRepository extends JpaRepository<Inventory, Long> {
@@ -16,4 +21,33 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select i from Inventory i where i.productId = :productId")
     Optional<Inventory> lockByProductId(@Param("productId") Long productId);
+
+    // rows are locked in product_id order so concurrent multi-item orders cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Inventory i where i.productId in :productIds order by i.productId")
+    List<Inventory> lockAllByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("select new vn.tt.practice.inventoryservice.dto.StockAvailability(" +
+            "i.productId, i.availableQuantity, i.reservedQuantity, i.version) " +
+            "from Inventory i where i.productId in :productIds")
+    List<StockAvailability> findAvailabilityByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("select i.reservationMode from Inventory i where i.productId = :productId")
+    Optional<Inventory.ReservationMode> findReservationModeByProductId(@Param("productId") Long productId);
+
+    List<Inventory> findAllByProductIdInAndReservationModeIn(Collection<Long> productIds,
+                                                             Collection<Inventory.ReservationMode> reservationModes);
+
+    /**
+     * Takes stock only if enough is available. The row lock lasts from this statement to commit.
+     *
+     * @return 1 if reserved, 0 if stock was insufficient
+     */
+    @Modifying
+    @Query("update Inventory i set i.availableQuantity = i.availableQuantity - :quantity, " +
+            "i.reservedQuantity = i.reservedQuantity + :quantity, i.version = i.version + 1, i.updatedAt = :now " +
+            "where i.productId = :productId and i.availableQuantity >= :quantity")
+    int reserveIfAvailable(@Param("productId") Long productId,
+                           @Param("quantity") int quantity,
+                           @Param("now") Instant now);
 }
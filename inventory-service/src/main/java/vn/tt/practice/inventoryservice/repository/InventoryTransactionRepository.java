@@ -1,11 +1,49 @@
 package vn.tt.practice.inventoryservice.repository;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.tt.practice.inventoryservice.entity.InventoryTransaction;
 
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Keyset reads over the ledger, newest first. The cursor is the (createdAt, id) of the last row seen,
+ * so each page is an index range scan on the partitions it touches, with no OFFSET and no COUNT.
+ */
 public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
 
-    Page<InventoryTransaction> findAllByOrderByCreatedAtDesc(Pageable pageable);
+    @Query("""
+            SELECT t FROM InventoryTransaction t JOIN FETCH t.inventory
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<InventoryTransaction> findLatest(Limit limit);
+
+    @Query("""
+            SELECT t FROM InventoryTransaction t JOIN FETCH t.inventory
+            WHERE (t.createdAt, t.id) < (:createdAt, :id)
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<InventoryTransaction> findBefore(@Param("createdAt") Instant createdAt,
+                                          @Param("id") Long id,
+                                          Limit limit);
+
+    @Query("""
+            SELECT t FROM InventoryTransaction t JOIN FETCH t.inventory i
+            WHERE i.productId = :productId
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<InventoryTransaction> findLatestByProductId(@Param("productId") Long productId, Limit limit);
+
+    @Query("""
+            SELECT t FROM InventoryTransaction t JOIN FETCH t.inventory i
+            WHERE i.productId = :productId AND (t.createdAt, t.id) < (:createdAt, :id)
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<InventoryTransaction> findBeforeByProductId(@Param("productId") Long productId,
+                                                     @Param("createdAt") Instant createdAt,
+                                                     @Param("id") Long id,
+                                                     Limit limit);
 }
@@ -0,0 +1,104 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.inventoryservice.service.StockAvailabilityCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Confirms or releases every PENDING reservation of an order with a fixed number of statements:
+ * claim the reservations, lock their inventory rows, apply the summed quantities, insert the ledger rows.
+ * <p>
+ * Only PENDING rows are claimed, so repeating a call, or racing it with the expiry sweeper,
+ * settles each reservation at most once.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReservationSettlementRepository {
+
+    private static final String CLAIM = """
+            UPDATE inventory_reservations
+            SET status = ?, updated_at = NOW()
+            WHERE order_id = ? AND status = 'PENDING'
+            RETURNING inventory_id, quantity
+            """;
+
+    private static final String CONFIRM_SET = "reserved_quantity = i.reserved_quantity - v.quantity";
+
+    private static final String RELEASE_SET = """
+            available_quantity = i.available_quantity + v.quantity,
+                reserved_quantity = i.reserved_quantity - v.quantity""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryBatchRepository batchRepository;
+    private final StockAvailabilityCache availabilityCache;
+
+    /**
+     * Reserved stock leaves the warehouse: reserved_quantity goes down, available stays.
+     *
+     * @return number of reservations confirmed; 0 if none were PENDING
+     */
+    @Transactional
+    public int confirmOrder(long orderId) {
+        return settle(orderId, "CONFIRMED", CONFIRM_SET, "CONFIRM", -1, "Confirm reservation for order ");
+    }
+
+    /**
+     * Reserved stock goes back on sale.
+     *
+     * @return number of reservations released; 0 if none were PENDING
+     */
+    @Transactional
+    public int releaseOrder(long orderId) {
+        return settle(orderId, "RELEASED", RELEASE_SET, "RELEASE", 1, "Release reservation for order ");
+    }
+
+    private int settle(long orderId, String status, String setClause, String transactionType, int sign, String note) {
+        List<InventoryBatchRepository.TransactionRow> ledger = new ArrayList<>();
+        Map<Long, Integer> byInventoryId = new TreeMap<>();
+        jdbcTemplate.query(CLAIM, rs -> {
+            long inventoryId = rs.getLong("inventory_id");
+            int quantity = rs.getInt("quantity");
+            byInventoryId.merge(inventoryId, quantity, Integer::sum);
+            ledger.add(new InventoryBatchRepository.TransactionRow(inventoryId, transactionType, sign * quantity,
+                    orderId, "ORDER", note + orderId, null));
+        }, status, orderId);
+        if (byInventoryId.isEmpty()) {
+            return 0;
+        }
+
+        // same ascending-id lock order as the reservation sweeper
+        jdbcTemplate.queryForList("SELECT id FROM inventory WHERE id IN ("
+                        + String.join(", ", Collections.nCopies(byInventoryId.size(), "?")) + ") ORDER BY id FOR UPDATE",
+                Long.class, byInventoryId.keySet().toArray());
+
+        StringBuilder sql = new StringBuilder("UPDATE inventory i SET ").append(setClause)
+                .append(", version = i.version + 1, updated_at = NOW() FROM (VALUES ");
+        List<Object> args = new ArrayList<>(byInventoryId.size() * 2);
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : byInventoryId.entrySet()) {
+            sql.append(i++ == 0 ? "" : ", ").append("(CAST(? AS BIGINT), CAST(? AS INT))");
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        sql.append(") AS v(inventory_id, quantity) ")
+                .append("WHERE i.id = v.inventory_id AND i.reserved_quantity >= v.quantity RETURNING i.product_id");
+
+        List<Long> productIds = jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+        if (productIds.size() != byInventoryId.size()) {
+            // rolls the claim back too
+            throw new IllegalStateException("Reserved quantity inconsistent for order " + orderId);
+        }
+
+        batchRepository.insertTransactions(ledger);
+        availabilityCache.evictAfterCommit(productIds);
+        return ledger.size();
+    }
+}
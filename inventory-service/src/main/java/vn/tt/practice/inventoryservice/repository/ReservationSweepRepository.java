@@ -0,0 +1,178 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.inventoryservice.service.StockAvailabilityCache;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Expires PENDING reservations in bounded chunks. Rows are claimed with FOR UPDATE SKIP LOCKED,
+ * so several replicas can sweep at once without waiting on, or double-releasing, each other's rows.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ReservationSweepRepository {
+
+    // served by idx_reservations_status_expires
+    private static final String EXPIRE_CHUNK = """
+            WITH expired AS (
+                SELECT id FROM inventory_reservations
+                WHERE status = 'PENDING' AND expires_at < ?
+                ORDER BY expires_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE inventory_reservations r
+            SET status = 'EXPIRED', updated_at = NOW()
+            FROM expired
+            WHERE r.id = expired.id
+            RETURNING r.id, r.inventory_id, r.quantity, r.expires_at
+            """;
+
+    private static final String EXPIRE_DUE = """
+            WITH expired AS (
+                SELECT id FROM inventory_reservations
+                WHERE id IN (%s) AND status = 'PENDING' AND expires_at <= ?
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE inventory_reservations r
+            SET status = 'EXPIRED', updated_at = NOW()
+            FROM expired
+            WHERE r.id = expired.id
+            RETURNING r.id, r.inventory_id, r.quantity, r.expires_at
+            """;
+
+    private static final String FIND_PENDING = "SELECT id, expires_at FROM inventory_reservations WHERE status = 'PENDING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockAvailabilityCache availabilityCache;
+
+    /**
+     * Expires one chunk of the oldest overdue reservations.
+     *
+     * @return expiry times of the reservations expired; fewer than {@code limit} means the backlog is empty
+     */
+    @Transactional
+    public List<Instant> expireChunk(Instant now, int limit) {
+        return expire(EXPIRE_CHUNK, Timestamp.from(now), limit);
+    }
+
+    /**
+     * Expires the given reservations if they are still PENDING and overdue; others are ignored.
+     *
+     * @return expiry times of the reservations expired
+     */
+    @Transactional
+    public List<Instant> expireDue(Collection<Long> reservationIds, Instant now) {
+        if (reservationIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>(reservationIds);
+        args.add(Timestamp.from(now));
+        return expire(EXPIRE_DUE.formatted(placeholders(reservationIds.size())), args.toArray());
+    }
+
+    /**
+     * Streams (id, expiresAt) of every PENDING reservation through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public void forEachPending(BiConsumer<Long, Instant> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(FIND_PENDING);
+            statement.setFetchSize(1000);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("id"), rs.getTimestamp("expires_at").toInstant()));
+    }
+
+    // marks rows EXPIRED, then releases their quantities with one update per inventory row
+    private List<Instant> expire(String sql, Object... args) {
+        List<Expired> expired = new ArrayList<>();
+        List<Instant> expiresAt = new ArrayList<>();
+        jdbcTemplate.query(sql, rs -> {
+            expired.add(new Expired(rs.getLong("id"), rs.getLong("inventory_id"), rs.getInt("quantity")));
+            expiresAt.add(rs.getTimestamp("expires_at").toInstant());
+        }, args);
+
+        if (!expired.isEmpty()) {
+            Map<Long, Integer> reservedByInventoryId = lockInOrder(expired.stream()
+                    .map(Expired::inventoryId).distinct().sorted().toList());
+            release(releasable(expired, reservedByInventoryId));
+        }
+        return expiresAt;
+    }
+
+    // inventory rows are locked by ascending id, the same order every sweeper uses
+    private Map<Long, Integer> lockInOrder(List<Long> inventoryIds) {
+        Map<Long, Integer> reservedByInventoryId = new HashMap<>();
+        jdbcTemplate.query("SELECT id, reserved_quantity FROM inventory WHERE id IN (" + placeholders(inventoryIds.size())
+                        + ") ORDER BY id FOR UPDATE",
+                (RowCallbackHandler) rs -> reservedByInventoryId.put(rs.getLong("id"), rs.getInt("reserved_quantity")),
+                inventoryIds.toArray());
+        return reservedByInventoryId;
+    }
+
+    // same guard as the per-row cleanup had: a reservation larger than what is still reserved on its inventory row
+    // stays EXPIRED without releasing anything, so units held by other live reservations never become available
+    private static Map<Long, Integer> releasable(List<Expired> expired, Map<Long, Integer> reservedByInventoryId) {
+        Map<Long, Integer> releasedByInventoryId = new TreeMap<>();
+        for (Expired reservation : expired) {
+            int reserved = reservedByInventoryId.getOrDefault(reservation.inventoryId(), 0);
+            if (reserved < reservation.quantity()) {
+                log.warn("Skip release due to inconsistent reserved_quantity: reservationId={}, inventoryId={}, "
+                        + "reserved={}, qty={}", reservation.id(), reservation.inventoryId(), reserved,
+                        reservation.quantity());
+                continue;
+            }
+            reservedByInventoryId.put(reservation.inventoryId(), reserved - reservation.quantity());
+            releasedByInventoryId.merge(reservation.inventoryId(), reservation.quantity(), Integer::sum);
+        }
+        return releasedByInventoryId;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    // quantities were checked against the locked rows by releasable(), so reserved_quantity cannot go negative
+    private void release(Map<Long, Integer> releasedByInventoryId) {
+        if (releasedByInventoryId.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("""
+                UPDATE inventory i
+                SET available_quantity = i.available_quantity + v.quantity,
+                    reserved_quantity  = i.reserved_quantity - v.quantity,
+                    version            = i.version + 1,
+                    updated_at         = NOW()
+                FROM (VALUES\s""");
+        List<Object> args = new ArrayList<>(releasedByInventoryId.size() * 2);
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : releasedByInventoryId.entrySet()) {
+            sql.append(i++ == 0 ? "" : ", ").append("(CAST(? AS BIGINT), CAST(? AS INT))");
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        sql.append(") AS v(inventory_id, quantity) WHERE i.id = v.inventory_id RETURNING i.product_id");
+
+        availabilityCache.evictAfterCommit(jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray()));
+    }
+
+    private record Expired(long id, long inventoryId, int quantity) {}
+}
@@ -0,0 +1,87 @@
+package vn.tt.practice.inventoryservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Monthly partitions of inventory_transactions, named inventory_transactions_YYYYMM.
+ * Partition names are always built from a {@link YearMonth}, never from user input.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionPartitionRepository {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern MONTHLY = Pattern.compile("inventory_transactions_(\\d{6})");
+
+    private static final String FIND_PARTITIONS = """
+            SELECT child.relname
+            FROM pg_inherits i
+            JOIN pg_class parent ON parent.oid = i.inhparent
+            JOIN pg_class child ON child.oid = i.inhrelid
+            WHERE parent.relname = 'inventory_transactions'
+            """;
+
+    private static final String SUMMARIZE = """
+            INSERT INTO inventory_transaction_daily_summaries
+                (day, inventory_id, transaction_type, total_quantity, transaction_count)
+            SELECT CAST(created_at AS DATE), inventory_id, transaction_type, SUM(quantity), COUNT(*)
+            FROM %s
+            GROUP BY CAST(created_at AS DATE), inventory_id, transaction_type
+            ON CONFLICT (inventory_id, day, transaction_type) DO UPDATE SET
+                total_quantity    = inventory_transaction_daily_summaries.total_quantity + EXCLUDED.total_quantity,
+                transaction_count = inventory_transaction_daily_summaries.transaction_count + EXCLUDED.transaction_count
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month)
+                + " PARTITION OF inventory_transactions FOR VALUES FROM ('" + month.atDay(1)
+                + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Months that currently have their own partition; the DEFAULT partition is not listed.
+     */
+    public List<YearMonth> findPartitionMonths() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS, String.class).stream()
+                .map(name -> {
+                    Matcher matcher = MONTHLY.matcher(name);
+                    return matcher.matches() ? YearMonth.parse(matcher.group(1), SUFFIX) : null;
+                })
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Folds a month into daily per-product summaries, then detaches and drops its partition.
+     * The exclusive lock makes a second replica wait and then fail on the dropped table instead of
+     * counting the month twice.
+     *
+     * @return number of summary rows written
+     */
+    @Transactional
+    public int archive(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("LOCK TABLE " + partition + " IN ACCESS EXCLUSIVE MODE");
+        int summaries = jdbcTemplate.update(SUMMARIZE.formatted(partition));
+        jdbcTemplate.execute("ALTER TABLE inventory_transactions DETACH PARTITION " + partition);
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        return summaries;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "inventory_transactions_" + month.format(SUFFIX);
+    }
+}
@@ -0,0 +1,393 @@
+package vn.tt.practice.inventoryservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only local journal of hot-SKU ledger movements. Every append is forced to disk before it returns,
+ * so a reservation acknowledged to a caller survives a crash even if it never reached the database.
+ * Appends are written under the monitor but share their fsync: whoever finds no fsync running forces the file
+ * for everything written so far, the others wait for it (group commit).
+ * <p>
+ * Once the file passes {@code inventory.hot-sku.journal-compact-bytes} and every RESERVE in it is in the
+ * database, it is rewritten under the same id to one LEASE line per product still owed.
+ * <p>
+ * Line format: {@code seq,TYPE,productId,inventoryId,quantity,orderId,expiresAtMillis}; the first line holds
+ * the journal id. A torn trailing line from a crash is ignored on replay.
+ */
+@Slf4j
+@Component
+public class HotSkuJournal {
+
+    private static final String HEADER_PREFIX = "#journal ";
+
+    private final Path path;
+    private final long compactBytes;
+
+    private volatile FileChannel channel;
+    private String journalId;
+    private long lastSeq;
+    private long size;
+    // RESERVE entries in the current file not taken back by a CANCEL; compaction waits until the reconciler has
+    // applied as many
+    private long reserves;
+    // leased - reserved - returned per product, i.e. units this node still owes the database
+    private final Map<Long, Outstanding> outstanding = new HashMap<>();
+
+    // group commit: blocks are numbered as they are written, durable once an fsync that started after them ends
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private volatile long writtenBlocks;
+    private long durableBlocks; // guarded by syncLock
+    private boolean syncing; // guarded by syncLock
+
+    public HotSkuJournal(InventoryProperties properties) {
+        this.path = Path.of(properties.getHotSku().getJournalPath());
+        this.compactBytes = properties.getHotSku().getJournalCompactBytes();
+    }
+
+    /**
+     * Reads a journal left by a previous process, if any.
+     */
+    public synchronized Optional<Replay> readExisting() {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith(HEADER_PREFIX)) {
+                log.warn("Ignoring hot-SKU journal without header: {}", path);
+                return Optional.empty();
+            }
+            String id = lines.get(0).substring(HEADER_PREFIX.length()).trim();
+            List<Entry> entries = new ArrayList<>(lines.size() - 1);
+            for (int i = 1; i < lines.size(); i++) {
+                try {
+                    entries.add(Entry.parse(lines.get(i)));
+                } catch (RuntimeException e) {
+                    log.warn("Stopping hot-SKU journal replay at unreadable line {}: {}", i + 1, lines.get(i));
+                    break;
+                }
+            }
+            return Optional.of(new Replay(id, entries));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read hot-SKU journal " + path, e);
+        }
+    }
+
+    /**
+     * Replaces any previous file with an empty journal under a fresh id.
+     */
+    public synchronized void start() {
+        close();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            journalId = UUID.randomUUID().toString();
+            lastSeq = 0;
+            size = 0;
+            reserves = 0;
+            outstanding.clear();
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            write(HEADER_PREFIX + journalId + "\n");
+            channel.force(false);
+            log.info("Started hot-SKU journal {} at {}", journalId, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create hot-SKU journal " + path, e);
+        }
+    }
+
+    /**
+     * Assigns sequence numbers, writes the entries as one block and returns once the block is on disk.
+     *
+     * @return the entries with their sequence numbers
+     */
+    public List<Entry> append(List<Entry> entries) {
+        List<Entry> numbered = new ArrayList<>(entries.size());
+        long block;
+        synchronized (this) {
+            if (channel == null) {
+                throw new IllegalStateException("Hot-SKU journal is not open");
+            }
+            StringBuilder text = new StringBuilder();
+            long seq = lastSeq;
+            for (Entry entry : entries) {
+                Entry withSeq = entry.withSeq(++seq);
+                numbered.add(withSeq);
+                text.append(withSeq.format()).append('\n');
+            }
+            try {
+                write(text.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to hot-SKU journal " + path, e);
+            }
+            lastSeq = seq;
+            numbered.forEach(this::track);
+            block = ++writtenBlocks;
+        }
+        awaitDurable(block);
+        return numbered;
+    }
+
+    /**
+     * Rewrites an oversized journal to hold only what this node still owes, if every RESERVE appended so far
+     * has been applied or cancelled; otherwise does nothing. Appends wait while the new file is written.
+     * <p>
+     * The journal keeps its id and its sequence numbers carry on, so the checkpoint and the pending-order
+     * markers written against it stay valid. The new file is complete and fsynced before it atomically takes
+     * the old one's place, so a crash leaves either file on disk, never both or neither.
+     *
+     * @param appliedReserves RESERVE entries of the current journal already in the database
+     * @return whether the journal was compacted
+     */
+    public synchronized boolean compactIfApplied(long appliedReserves) {
+        if (channel == null || size < compactBytes || appliedReserves != reserves) {
+            return false;
+        }
+        StringBuilder text = new StringBuilder(HEADER_PREFIX).append(journalId).append('\n');
+        long seq = lastSeq;
+        int owedProducts = 0;
+        for (Map.Entry<Long, Outstanding> owed : outstanding.entrySet()) {
+            if (owed.getValue().quantity() > 0) {
+                text.append(Entry.lease(owed.getKey(), owed.getValue().inventoryId(), owed.getValue().quantity())
+                        .withSeq(++seq).format()).append('\n');
+                owedProducts++;
+            }
+        }
+
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        try {
+            // pending appends of the old file become durable here, their waiters are released below
+            channel.force(false);
+            markDurable(writtenBlocks);
+            try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, text.toString());
+                out.force(true);
+            }
+            Files.move(next, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileChannel reopened = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            close();
+            channel = reopened;
+            size = reopened.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact hot-SKU journal " + path, e);
+        }
+        lastSeq = seq;
+        reserves = 0;
+        log.info("Compacted hot-SKU journal {} to {} outstanding products", journalId, owedProducts);
+        return true;
+    }
+
+    public synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    public synchronized String journalId() {
+        return journalId;
+    }
+
+    /**
+     * Units still owed to the database per product, with the inventory row they belong to.
+     */
+    public synchronized Map<Long, Outstanding> outstanding() {
+        return Map.copyOf(outstanding);
+    }
+
+    public synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete hot-SKU journal {}", path, e);
+        }
+    }
+
+    /**
+     * Same arithmetic as {@link #outstanding()}, for a journal read back from disk.
+     */
+    public static Map<Long, Outstanding> outstandingOf(List<Entry> entries) {
+        Map<Long, Outstanding> result = new HashMap<>();
+        for (Entry entry : entries) {
+            result.merge(entry.productId(), new Outstanding(entry.inventoryId(), entry.signedQuantity()),
+                    Outstanding::plus);
+        }
+        return result;
+    }
+
+    private void track(Entry entry) {
+        outstanding.merge(entry.productId(), new Outstanding(entry.inventoryId(), entry.signedQuantity()),
+                Outstanding::plus);
+        if (entry.type() == Type.RESERVE) {
+            reserves++;
+        } else if (entry.type() == Type.CANCEL) {
+            reserves--;
+        }
+    }
+
+    // caller holds the monitor
+    private void write(String text) throws IOException {
+        size += writeFully(channel, text);
+    }
+
+    private static int writeFully(FileChannel target, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return buffer.limit();
+    }
+
+    // one fsync at a time, covering every block written before it started
+    private void awaitDurable(long block) {
+        syncLock.lock();
+        try {
+            while (durableBlocks < block) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                // the block count before the channel: a block counted here is in this channel or already forced
+                long target = writtenBlocks;
+                FileChannel current = channel;
+                syncLock.unlock();
+                IOException failure = null;
+                try {
+                    if (current == null) {
+                        throw new IOException("journal closed");
+                    }
+                    current.force(false);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                }
+                if (failure == null) {
+                    durableBlocks = Math.max(durableBlocks, target);
+                }
+                synced.signalAll();
+                // a compaction may have forced the block before closing the channel under us
+                if (failure != null && durableBlocks < block) {
+                    throw new UncheckedIOException("Cannot fsync hot-SKU journal " + path, failure);
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void markDurable(long block) {
+        syncLock.lock();
+        try {
+            durableBlocks = Math.max(durableBlocks, block);
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close hot-SKU journal {}", path, e);
+        }
+        channel = null;
+    }
+
+    public enum Type {
+        /** Units taken from inventory.available_quantity into the ledger. */
+        LEASE,
+        /** Units handed to an order; becomes a reservation row when reconciled. */
+        RESERVE,
+        /** Units given back to inventory.available_quantity. */
+        RETURN,
+        /** Units of a RESERVE whose transaction rolled back, back in the ledger; that RESERVE is never applied. */
+        CANCEL
+    }
+
+    public record Entry(long seq, Type type, long productId, long inventoryId, int quantity,
+                        long orderId, long expiresAtMillis) {
+
+        public static Entry lease(long productId, long inventoryId, int quantity) {
+            return new Entry(0, Type.LEASE, productId, inventoryId, quantity, 0, 0);
+        }
+
+        public static Entry reserve(long productId, long inventoryId, int quantity, long orderId, long expiresAtMillis) {
+            return new Entry(0, Type.RESERVE, productId, inventoryId, quantity, orderId, expiresAtMillis);
+        }
+
+        public static Entry returned(long productId, long inventoryId, int quantity) {
+            return new Entry(0, Type.RETURN, productId, inventoryId, quantity, 0, 0);
+        }
+
+        public static Entry cancel(Entry reserve) {
+            return new Entry(0, Type.CANCEL, reserve.productId(), reserve.inventoryId(), reserve.quantity(),
+                    reserve.orderId(), reserve.expiresAtMillis());
+        }
+
+        int signedQuantity() {
+            return type == Type.LEASE || type == Type.CANCEL ? quantity : -quantity;
+        }
+
+        // the RESERVE this CANCEL takes back
+        boolean cancels(Entry reserve) {
+            return type == Type.CANCEL && reserve.type() == Type.RESERVE && reserve.seq() < seq
+                    && reserve.orderId() == orderId && reserve.productId() == productId
+                    && reserve.quantity() == quantity && reserve.expiresAtMillis() == expiresAtMillis;
+        }
+
+        Entry withSeq(long seq) {
+            return new Entry(seq, type, productId, inventoryId, quantity, orderId, expiresAtMillis);
+        }
+
+        String format() {
+            return seq + "," + type + "," + productId + "," + inventoryId + "," + quantity + ","
+                    + orderId + "," + expiresAtMillis;
+        }
+
+        static Entry parse(String line) {
+            String[] parts = line.split(",");
+            if (parts.length != 7) {
+                throw new IllegalArgumentException("Malformed journal line");
+            }
+            return new Entry(Long.parseLong(parts[0]), Type.valueOf(parts[1]), Long.parseLong(parts[2]),
+                    Long.parseLong(parts[3]), Integer.parseInt(parts[4]), Long.parseLong(parts[5]),
+                    Long.parseLong(parts[6]));
+        }
+    }
+
+    public record Outstanding(long inventoryId, int quantity) {
+        Outstanding plus(Outstanding other) {
+            return new Outstanding(inventoryId, quantity + other.quantity);
+        }
+    }
+
+    public record Replay(String journalId, List<Entry> entries) {}
+}
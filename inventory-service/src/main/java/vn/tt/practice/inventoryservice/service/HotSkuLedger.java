@@ -0,0 +1,280 @@
+package vn.tt.practice.inventoryservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.HotSkuRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-memory stock for SHARDED products. Each node leases chunks of available stock from its inventory row
+ * and hands them out from N shards with a CAS, so buyers of one SKU never queue on the row lock.
+ * <p>
+ * Leases are committed in the database before they are journaled and returns are journaled before they hit
+ * the database, so a crash can only strand units (given back on the next start), never duplicate them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotSkuLedger {
+
+    private final HotSkuRepository hotSkuRepository;
+    private final HotSkuJournal journal;
+    private final InventoryProperties properties;
+
+    private final Map<Long, Shards> products = new ConcurrentHashMap<>();
+    private final Map<Long, Object> leaseLocks = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Takes every line (product id -> quantity) or nothing.
+     *
+     * @throws HotSkuNotReadyException while the previous journal has not been recovered, since no lease
+     *                                 can be journaled yet and an empty ledger is not the same as no stock
+     */
+    public Optional<List<Taken>> tryTake(Map<Long, Integer> lines) {
+        if (closed) {
+            return Optional.empty();
+        }
+        if (!journal.isOpen()) {
+            throw new HotSkuNotReadyException();
+        }
+        List<Taken> taken = new ArrayList<>(lines.size());
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            Shards shards = take(line.getKey(), line.getValue());
+            if (shards == null) {
+                giveBack(taken);
+                return Optional.empty();
+            }
+            taken.add(new Taken(line.getKey(), shards.inventoryId, line.getValue()));
+        }
+        return Optional.of(taken);
+    }
+
+    /**
+     * Puts units back into the shards: taken but never journaled, or journaled and then cancelled.
+     */
+    public void giveBack(List<Taken> taken) {
+        for (Taken t : taken) {
+            Shards shards = products.get(t.productId());
+            if (shards == null || !shards.addIfActive(t.quantity())) {
+                // product left SHARDED mode meanwhile
+                returnToDatabase(t.productId(), t.inventoryId(), t.quantity());
+            }
+        }
+    }
+
+    /**
+     * Stops serving a product and gives its unused lease back, e.g. after it leaves SHARDED mode.
+     */
+    public void retire(Long productId) {
+        synchronized (leaseLock(productId)) {
+            Shards shards = products.remove(productId);
+            if (shards == null) {
+                return;
+            }
+            int drained = shards.retire();
+            if (drained > 0) {
+                returnToDatabase(productId, shards.inventoryId, drained);
+            }
+            log.info("Retired hot SKU productId={}, returned={}", productId, drained);
+        }
+    }
+
+    /**
+     * Tops up products whose shards were drawn below half a lease since the last call.
+     */
+    public void refill() {
+        if (closed) {
+            return;
+        }
+        int chunk = properties.getHotSku().getLeaseChunk();
+        products.forEach((productId, shards) -> {
+            if (!shards.demand) {
+                return;
+            }
+            shards.demand = false;
+            int available = shards.available();
+            if (available < chunk / 2) {
+                synchronized (leaseLock(productId)) {
+                    if (products.get(productId) == shards) {
+                        lease(productId, chunk - available);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Rejects further takes; used on shutdown once the journal has been closed out.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    private Shards take(Long productId, int quantity) {
+        Shards shards = products.get(productId);
+        if (shards != null && shards.tryTakeFast(quantity)) {
+            return shards;
+        }
+
+        synchronized (leaseLock(productId)) {
+            shards = products.get(productId);
+            int collected = shards == null ? 0 : shards.takeUpTo(quantity);
+            if (collected == quantity) {
+                return shards;
+            }
+
+            Shards leased = lease(productId, Math.max(quantity - collected, properties.getHotSku().getLeaseChunk()));
+            if (leased != null) {
+                int rest = leased.takeUpTo(quantity - collected);
+                collected += rest;
+                shards = leased;
+            }
+            if (collected == quantity) {
+                return shards;
+            }
+            if (collected > 0 && shards != null) {
+                shards.addIfActive(collected);
+            }
+            return null;
+        }
+    }
+
+    // caller holds the product's lease lock
+    private Shards lease(Long productId, int quantity) {
+        if (!journal.isOpen()) {
+            // not recovered yet: a lease now could not be journaled
+            return products.get(productId);
+        }
+        Optional<HotSkuRepository.Lease> lease;
+        try {
+            lease = hotSkuRepository.lease(productId, quantity);
+        } catch (RuntimeException e) {
+            log.error("Hot SKU lease failed: productId={}", productId, e);
+            return null;
+        }
+        if (lease.isEmpty()) {
+            return products.get(productId);
+        }
+
+        HotSkuRepository.Lease granted = lease.get();
+        try {
+            journal.append(List.of(HotSkuJournal.Entry.lease(productId, granted.inventoryId(), granted.quantity())));
+        } catch (RuntimeException e) {
+            // units are already out of the inventory row; stranding them is safer than serving them unjournaled
+            log.error("Hot SKU lease could not be journaled, {} units of productId={} are stranded",
+                    granted.quantity(), productId, e);
+            return products.get(productId);
+        }
+
+        Shards shards = products.computeIfAbsent(productId,
+                id -> new Shards(granted.inventoryId(), properties.getHotSku().getShards()));
+        shards.addIfActive(granted.quantity());
+        return shards;
+    }
+
+    private void returnToDatabase(Long productId, long inventoryId, int quantity) {
+        try {
+            journal.append(List.of(HotSkuJournal.Entry.returned(productId, inventoryId, quantity)));
+            hotSkuRepository.returnLeases(Map.of(inventoryId, quantity));
+        } catch (RuntimeException e) {
+            log.error("Hot SKU return failed, {} units of productId={} are stranded", quantity, productId, e);
+        }
+    }
+
+    private Object leaseLock(Long productId) {
+        return leaseLocks.computeIfAbsent(productId, id -> new Object());
+    }
+
+    public record Taken(long productId, long inventoryId, int quantity) {}
+
+    private static final class Shards {
+        private final long inventoryId;
+        private final AtomicIntegerArray slots;
+        private boolean retired; // guarded by this
+        private volatile boolean demand;
+
+        private Shards(long inventoryId, int shards) {
+            this.inventoryId = inventoryId;
+            this.slots = new AtomicIntegerArray(Math.max(1, shards));
+        }
+
+        // lock-free path: one slot that covers the whole quantity
+        boolean tryTakeFast(int quantity) {
+            int n = slots.length();
+            int start = ThreadLocalRandom.current().nextInt(n);
+            for (int i = 0; i < n; i++) {
+                int slot = (start + i) % n;
+                int current = slots.get(slot);
+                while (current >= quantity) {
+                    if (slots.compareAndSet(slot, current, current - quantity)) {
+                        demand = true;
+                        return true;
+                    }
+                    current = slots.get(slot);
+                }
+            }
+            return false;
+        }
+
+        // gathers a quantity spread over several slots; may return less than asked
+        synchronized int takeUpTo(int quantity) {
+            int collected = 0;
+            for (int slot = 0; slot < slots.length() && collected < quantity; slot++) {
+                while (true) {
+                    int current = slots.get(slot);
+                    int part = Math.min(current, quantity - collected);
+                    if (part == 0) {
+                        break;
+                    }
+                    if (slots.compareAndSet(slot, current, current - part)) {
+                        collected += part;
+                        break;
+                    }
+                }
+            }
+            demand = true;
+            return collected;
+        }
+
+        synchronized boolean addIfActive(int quantity) {
+            if (retired) {
+                return false;
+            }
+            int n = slots.length();
+            for (int slot = 0; slot < n; slot++) {
+                int part = quantity / n + (slot < quantity % n ? 1 : 0);
+                if (part > 0) {
+                    slots.addAndGet(slot, part);
+                }
+            }
+            return true;
+        }
+
+        synchronized int retire() {
+            retired = true;
+            int drained = 0;
+            for (int slot = 0; slot < slots.length(); slot++) {
+                drained += slots.getAndSet(slot, 0);
+            }
+            return drained;
+        }
+
+        int available() {
+            int sum = 0;
+            for (int slot = 0; slot < slots.length(); slot++) {
+                sum += slots.get(slot);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package vn.tt.practice.inventoryservice.service;
+
+/**
+ * Thrown when an order is settled while some of its hot-SKU lines are journaled but not yet in
+ * inventory_reservations. Retryable: the lines land within a reconcile interval.
+ */
+public class HotSkuLinesPendingException extends RuntimeException {
+
+    public HotSkuLinesPendingException(Long orderId) {
+        super("Hot-SKU lines of order " + orderId + " are not applied yet");
+    }
+}
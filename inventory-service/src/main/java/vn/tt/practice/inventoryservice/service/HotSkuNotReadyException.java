@@ -0,0 +1,12 @@
+package vn.tt.practice.inventoryservice.service;
+
+/**
+ * Thrown when a SHARDED product is reserved before the hot-SKU journal has been recovered.
+ * Retryable: recovery runs at startup and again on every reconcile tick until it succeeds.
+ */
+public class HotSkuNotReadyException extends RuntimeException {
+
+    public HotSkuNotReadyException() {
+        super("Hot-SKU ledger is still recovering its journal");
+    }
+}
@@ -0,0 +1,398 @@
+package vn.tt.practice.inventoryservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.HotSkuRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Writes journaled hot-SKU reservations to inventory_reservations, inventory_transactions and
+ * inventory.reserved_quantity in batches, and replays whatever a crashed process left in the journal.
+ * <p>
+ * Entries are journaled before the reserving transaction commits but applied only after it did, in journal
+ * order, so the checkpoint's last applied seq always covers a prefix of the journal. A rollback journals a
+ * CANCEL and puts the units back into the ledger. On replay, entries of orders whose hot_sku_pending_orders
+ * marker never committed are dropped and their units returned to stock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotSkuReconciler implements SmartLifecycle {
+
+    private final HotSkuJournal journal;
+    private final HotSkuLedger hotSkuLedger;
+    private final HotSkuRepository hotSkuRepository;
+    private final ReservationExpiryWheel expiryWheel;
+    private final InventoryProperties properties;
+
+    // journaled RESERVE entries by seq, until applied or cancelled
+    private final ConcurrentSkipListMap<Long, Slot> pending = new ConcurrentSkipListMap<>();
+    private final Map<Long, PendingOrder> pendingOrders = new ConcurrentHashMap<>();
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private volatile boolean ready;
+    private volatile boolean started;
+    private long appliedReserves; // of the current journal, guarded by reconcileLock
+
+    /**
+     * Id the reserving transaction records its hot_sku_pending_orders marker under.
+     */
+    public String journalId() {
+        return journal.journalId();
+    }
+
+    /**
+     * Journals an order's ledger lines, to be called right before the reserving transaction commits. Once this
+     * returns the reservation survives a crash; the lines are held back until {@link #completed} reports the
+     * transaction's outcome.
+     *
+     * @return the journaled entries, to hand to {@link #completed}
+     */
+    public List<HotSkuJournal.Entry> submit(long orderId, List<HotSkuLedger.Taken> taken, Instant expiresAt) {
+        List<HotSkuJournal.Entry> entries = journal.append(taken.stream()
+                .map(t -> HotSkuJournal.Entry.reserve(t.productId(), t.inventoryId(), t.quantity(),
+                        orderId, expiresAt.toEpochMilli()))
+                .toList());
+        entries.forEach(entry -> pending.put(entry.seq(), new Slot(entry)));
+        return entries;
+    }
+
+    /**
+     * Releases submitted lines to the database if their transaction committed, or takes them back if it rolled
+     * back. An unknown outcome is settled later from the order's hot_sku_pending_orders marker.
+     *
+     * @param status a {@link TransactionSynchronization} completion status
+     */
+    public void completed(long orderId, List<HotSkuJournal.Entry> entries, int status) {
+        switch (status) {
+            case TransactionSynchronization.STATUS_COMMITTED -> {
+                // register before releasing so the reconciler cannot finish the order first
+                pendingOrders.compute(orderId, (id, order) -> {
+                    PendingOrder target = order == null ? new PendingOrder() : order;
+                    target.remaining.addAndGet(entries.size());
+                    return target;
+                });
+                entries.forEach(entry -> pending.get(entry.seq()).state = State.COMMITTED);
+            }
+            case TransactionSynchronization.STATUS_ROLLED_BACK -> cancel(entries);
+            default -> entries.forEach(entry -> pending.get(entry.seq()).state = State.UNKNOWN);
+        }
+    }
+
+    /**
+     * Blocks until the order's ledger lines exist as reservation rows, so confirm/release can find them.
+     * Lines journaled here are awaited in memory; lines journaled by another node are awaited through
+     * hot_sku_pending_orders. Gives up after {@code await-timeout-ms}; settlement then refuses the order
+     * with {@link HotSkuLinesPendingException} and the message is redelivered.
+     */
+    public void awaitApplied(long orderId) {
+        long deadline = System.currentTimeMillis() + properties.getHotSku().getAwaitTimeoutMs();
+        PendingOrder order = pendingOrders.get(orderId);
+        try {
+            if (order != null) {
+                order.done.get(properties.getHotSku().getAwaitTimeoutMs(), TimeUnit.MILLISECONDS);
+            }
+            while (hotSkuRepository.hasPendingLines(orderId) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(properties.getHotSku().getReconcileIntervalMs());
+            }
+        } catch (TimeoutException e) {
+            log.warn("Hot SKU reservations for orderId={} not yet in the database", orderId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Waiting for hot SKU reservations failed: orderId={}", orderId, e);
+        }
+    }
+
+    /**
+     * Replays the previous journal before the listener containers and the web server start, so the first
+     * reservations find the ledger ready. If the database is not reachable yet, the reconcile tick retries.
+     */
+    @Override
+    public void start() {
+        started = true;
+        reconcileLock.lock();
+        try {
+            recover();
+        } catch (RuntimeException e) {
+            log.error("Hot SKU journal recovery failed, retrying on the next reconcile tick", e);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        // the journal is closed out in shutdown(), after the listeners and the web server have stopped
+        started = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return started;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048; // before WebServerStartStopLifecycle and the Rabbit listeners
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.hot-sku.reconcile-interval-ms:50}")
+    public void reconcile() {
+        if (!reconcileLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!ready) {
+                recover();
+            }
+            hotSkuLedger.refill();
+            flushPending();
+            compactJournal();
+        } catch (RuntimeException e) {
+            log.error("Hot SKU reconcile failed, {} entries kept for retry", pending.size(), e);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the queue and returns this node's remaining lease so the journal can be discarded.
+     * If anything fails the file stays and is replayed on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        reconcileLock.lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            hotSkuLedger.close();
+            flushPending();
+            if (!pending.isEmpty()) {
+                log.warn("{} hot SKU reservations still undecided, the journal will be replayed on the next start",
+                        pending.size());
+                return;
+            }
+            hotSkuRepository.closeJournal(journal.journalId(), journal.outstanding());
+            journal.delete();
+            ready = false;
+        } catch (RuntimeException e) {
+            log.error("Hot SKU journal not closed cleanly, it will be replayed on the next start", e);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    // caller holds reconcileLock
+    private void recover() {
+        journal.readExisting().ifPresent(replay -> {
+            HotSkuRepository.Checkpoint checkpoint = hotSkuRepository.findCheckpoint(replay.journalId())
+                    .orElse(new HotSkuRepository.Checkpoint(0, false));
+            if (!checkpoint.closed()) {
+                List<HotSkuJournal.Entry> candidates = uncancelledReserves(replay.entries(), checkpoint.lastSeq());
+                List<HotSkuJournal.Entry> unapplied = committedReserves(replay.journalId(), candidates);
+                int batchSize = properties.getHotSku().getBatchSize();
+                for (int from = 0; from < unapplied.size(); from += batchSize) {
+                    List<HotSkuJournal.Entry> batch = unapplied.subList(from, Math.min(from + batchSize, unapplied.size()));
+                    scheduleExpiry(batch, hotSkuRepository.applyReservations(replay.journalId(), batch));
+                }
+                hotSkuRepository.closeJournal(replay.journalId(),
+                        outstandingAfterReplay(replay.entries(), candidates, unapplied));
+                log.info("Replayed hot SKU journal {}: {} reservations applied", replay.journalId(), unapplied.size());
+            }
+        });
+        journal.start();
+        appliedReserves = 0;
+        ready = true;
+    }
+
+    // RESERVE entries past the checkpoint without a matching CANCEL
+    private static List<HotSkuJournal.Entry> uncancelledReserves(List<HotSkuJournal.Entry> entries, long lastSeq) {
+        List<HotSkuJournal.Entry> reserves = new ArrayList<>();
+        for (HotSkuJournal.Entry entry : entries) {
+            if (entry.type() == HotSkuJournal.Type.RESERVE) {
+                reserves.add(entry);
+            } else if (entry.type() == HotSkuJournal.Type.CANCEL) {
+                for (int i = reserves.size() - 1; i >= 0; i--) {
+                    if (entry.cancels(reserves.get(i))) {
+                        reserves.remove(i);
+                        break;
+                    }
+                }
+            }
+        }
+        reserves.removeIf(entry -> entry.seq() <= lastSeq);
+        return reserves;
+    }
+
+    /**
+     * The reserves whose transaction committed. An order's marker in this journal counts its committed lines not
+     * yet applied; if the order has more entries than that (a CANCEL lost in a crash, then a retry), the latest
+     * ones are taken.
+     */
+    private List<HotSkuJournal.Entry> committedReserves(String journalId, List<HotSkuJournal.Entry> reserves) {
+        if (reserves.isEmpty()) {
+            return reserves;
+        }
+
+        Map<Long, Integer> committedLines = new HashMap<>(hotSkuRepository.findPendingLines(journalId,
+                reserves.stream().map(HotSkuJournal.Entry::orderId).collect(Collectors.toSet())));
+        List<HotSkuJournal.Entry> committed = new ArrayList<>();
+        for (int i = reserves.size() - 1; i >= 0; i--) {
+            HotSkuJournal.Entry entry = reserves.get(i);
+            if (committedLines.merge(entry.orderId(), -1, Integer::sum) >= 0) {
+                committed.add(entry);
+            } else {
+                log.warn("Dropping hot SKU reservation of orderId={} productId={}: its transaction never committed",
+                        entry.orderId(), entry.productId());
+            }
+        }
+        Collections.reverse(committed);
+        return committed;
+    }
+
+    // what the journal owes, plus the units of the reserves dropped because they never committed
+    private static Map<Long, HotSkuJournal.Outstanding> outstandingAfterReplay(List<HotSkuJournal.Entry> entries,
+                                                                              List<HotSkuJournal.Entry> candidates,
+                                                                              List<HotSkuJournal.Entry> applied) {
+        Map<Long, HotSkuJournal.Outstanding> outstanding = new HashMap<>(HotSkuJournal.outstandingOf(entries));
+        Map<Long, Integer> dropped = new HashMap<>();
+        candidates.forEach(entry -> dropped.merge(entry.productId(), entry.quantity(), Integer::sum));
+        applied.forEach(entry -> dropped.merge(entry.productId(), -entry.quantity(), Integer::sum));
+        dropped.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                outstanding.computeIfPresent(productId,
+                        (id, owed) -> new HotSkuJournal.Outstanding(owed.inventoryId(), owed.quantity() + quantity));
+            }
+        });
+        return outstanding;
+    }
+
+    // caller holds reconcileLock; the journal keeps its id, so its checkpoint and markers stay valid
+    private void compactJournal() {
+        if (journal.compactIfApplied(appliedReserves)) {
+            appliedReserves = 0;
+        }
+    }
+
+    // caller holds reconcileLock; applies committed entries in seq order, stopping at the first undecided one
+    private void flushPending() {
+        int batchSize = properties.getHotSku().getBatchSize();
+        while (true) {
+            List<HotSkuJournal.Entry> batch = new ArrayList<>(batchSize);
+            for (Slot slot : pending.values()) {
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+                if (slot.state == State.UNKNOWN) {
+                    settleUnknown(slot.entry.orderId());
+                    if (!pending.containsKey(slot.entry.seq())) {
+                        continue; // rolled back and cancelled
+                    }
+                }
+                if (slot.state != State.COMMITTED) {
+                    break;
+                }
+                batch.add(slot.entry);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // a failed batch stays queued and is retried on the next tick
+            List<Long> reservationIds = hotSkuRepository.applyReservations(journal.journalId(), batch);
+            batch.forEach(applied -> pending.remove(applied.seq()));
+            appliedReserves += batch.size();
+            scheduleExpiry(batch, reservationIds);
+            batch.forEach(applied -> markApplied(applied.orderId()));
+        }
+    }
+
+    // commit outcome was not reported: the marker written in the reserving transaction tells, once the lines
+    // of the order's other committed transactions are accounted for
+    private void settleUnknown(long orderId) {
+        List<HotSkuJournal.Entry> entries = pending.values().stream()
+                .filter(slot -> slot.state == State.UNKNOWN && slot.entry.orderId() == orderId)
+                .map(slot -> slot.entry)
+                .toList();
+        long otherCommitted = pending.values().stream()
+                .filter(slot -> slot.state == State.COMMITTED && slot.entry.orderId() == orderId)
+                .count();
+        int marked = hotSkuRepository.findPendingLines(journal.journalId(), List.of(orderId))
+                .getOrDefault(orderId, 0);
+        boolean committed = marked - otherCommitted >= entries.size();
+        log.warn("Hot SKU reservation of orderId={} had an unknown commit outcome, settled as {}", orderId,
+                committed ? "committed" : "rolled back");
+        completed(orderId, entries, committed
+                ? TransactionSynchronization.STATUS_COMMITTED
+                : TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    // journals the CANCEL first: units back in the ledger must be owed by the journal again
+    private void cancel(List<HotSkuJournal.Entry> entries) {
+        entries.forEach(entry -> pending.remove(entry.seq()));
+        try {
+            journal.append(entries.stream().map(HotSkuJournal.Entry::cancel).toList());
+        } catch (RuntimeException e) {
+            log.error("Hot SKU cancel could not be journaled, {} lines are stranded until the next start",
+                    entries.size(), e);
+            return;
+        }
+        hotSkuLedger.giveBack(entries.stream()
+                .map(entry -> new HotSkuLedger.Taken(entry.productId(), entry.inventoryId(), entry.quantity()))
+                .toList());
+    }
+
+    private void scheduleExpiry(List<HotSkuJournal.Entry> entries, List<Long> reservationIds) {
+        for (int i = 0; i < reservationIds.size(); i++) {
+            expiryWheel.schedule(reservationIds.get(i), Instant.ofEpochMilli(entries.get(i).expiresAtMillis()));
+        }
+    }
+
+    private void markApplied(long orderId) {
+        pendingOrders.computeIfPresent(orderId, (id, order) -> {
+            if (order.remaining.decrementAndGet() > 0) {
+                return order;
+            }
+            order.done.complete(null);
+            return null;
+        });
+    }
+
+    private enum State { IN_DOUBT, COMMITTED, UNKNOWN }
+
+    private static final class Slot {
+        private final HotSkuJournal.Entry entry;
+        private volatile State state = State.IN_DOUBT;
+
+        private Slot(HotSkuJournal.Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class PendingOrder {
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+}
@@ -1,90 +1,70 @@
 package vn.tt.practice.inventoryservice.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import vn.tt.practice.inventoryservice.entity.Inventory;
-import vn.tt.practice.inventoryservice.entity.InventoryReservation;
-import vn.tt.practice.inventoryservice.repository.InventoryRepository;
-import vn.tt.practice.inventoryservice.repository.InventoryReservationRepository;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.HotSkuRepository;
+import vn.tt.practice.inventoryservice.repository.ReservationSweepRepository;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class InventoryCleanupService {
 
-    private final InventoryReservationRepository reservationRepository;
-    private final InventoryRepository inventoryRepository;
+    private final ReservationSweepRepository sweepRepository;
+    private final HotSkuRepository hotSkuRepository;
+    private final InventoryProperties properties;
+    private final Timer lag;
+
+    public InventoryCleanupService(ReservationSweepRepository sweepRepository,
+                                   HotSkuRepository hotSkuRepository,
+                                   InventoryProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.sweepRepository = sweepRepository;
+        this.hotSkuRepository = hotSkuRepository;
+        this.properties = properties;
+        this.lag = ReservationExpiryWheel.expiryLagTimer(meterRegistry, "sweeper");
+    }
 
     /**
-     * Cleanup expired reservations every 5 minutes
-     * Releases reserved quantity back to available quantity
+     * Safety net behind ReservationExpiryWheel (every 5 minutes by default):
+     * releases whatever the wheel missed, e.g. after a failed rebuild, one short transaction per chunk
      */
-    @Scheduled(fixedRate = 300_000) // 5 minutes
-    @Transactional
+    @Scheduled(fixedRateString = "${inventory.expiry.sweep-interval-ms:300000}")
     public void cleanupExpiredReservations() {
-        log.info("Starting cleanup of expired reservations");
-
         Instant now = Instant.now();
+        int chunkSize = properties.getExpiry().getChunkSize();
+        int total = 0;
 
-        List<InventoryReservation> expiredReservations =
-                reservationRepository.findAllByStatusAndExpiresAtBefore(
-                        InventoryReservation.ReservationStatus.PENDING,
-                        now
-                );
-
-        if (expiredReservations.isEmpty()) {
-            log.debug("No expired reservations found");
-            return;
-        }
-
-        log.info("Found {} expired reservations to cleanup", expiredReservations.size());
-
-        for (InventoryReservation reservation : expiredReservations) {
+        List<Instant> expired;
+        do {
             try {
-                Inventory inventory = reservation.getInventory();
-                Long productId = inventory.getProductId();
-                int qty = reservation.getQuantity();
-
-                // (khuyến nghị) lock lại inventory để tránh race khi có event confirm/release song song
-                inventory = inventoryRepository.lockByProductId(productId)
-                        .orElseThrow(() -> new IllegalStateException("Inventory not found productId=" + productId));
-
-                // guard chống âm reserved
-                if (inventory.getReservedQuantity() < qty) {
-                    log.warn("Skip cleanup due to inconsistent reservedQuantity: reservationId={}, productId={}, reserved={}, qty={}",
-                            reservation.getId(), productId, inventory.getReservedQuantity(), qty);
-                    // đánh dấu EXPIRED để không loop mãi (tuỳ chiến lược)
-                    reservation.setStatus(InventoryReservation.ReservationStatus.EXPIRED);
-                    reservationRepository.save(reservation);
-                    continue;
-                }
-
-                // Release reserved -> available
-                inventory.setAvailableQuantity(inventory.getAvailableQuantity() + qty);
-                inventory.setReservedQuantity(inventory.getReservedQuantity() - qty);
-                inventory.setUpdatedAt(Instant.now());
-                inventoryRepository.save(inventory);
-
-                // Mark reservation expired (đúng nghĩa hơn RELEASED)
-                reservation.setStatus(InventoryReservation.ReservationStatus.EXPIRED);
-                reservationRepository.save(reservation);
-
-                log.info("Expired reservation released: reservationId={}, productId={}, quantity={}",
-                        reservation.getId(), productId, qty);
-
+                expired = sweepRepository.expireChunk(now, chunkSize);
             } catch (Exception e) {
-                log.error("Error cleaning up expired reservation: reservationId={}",
-                        reservation.getId(), e);
+                log.error("Error cleaning up expired reservations, {} released before the failure", total, e);
+                return;
             }
+            expired.forEach(expiresAt -> lag.record(Duration.between(expiresAt, now).abs()));
+            total += expired.size();
+        } while (expired.size() == chunkSize);
+
+        if (total > 0) {
+            log.info("Expired reservations released: count={}", total);
+        } else {
+            log.debug("No expired reservations found");
         }
 
-        log.info("Completed cleanup of expired reservations");
+        // pending-line markers left at 0 by a reconcile that beat its reserving commit, or never applied
+        try {
+            hotSkuRepository.deleteExpiredPending(now);
+        } catch (Exception e) {
+            log.error("Error deleting expired hot SKU pending-line markers", e);
+        }
     }
 }
-
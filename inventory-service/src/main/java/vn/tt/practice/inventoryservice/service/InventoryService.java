@@ -2,22 +2,47 @@ package vn.tt.practice.inventoryservice.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import vn.tt.practice.inventoryservice.dto.BatchReserveRequest;
+import vn.tt.practice.inventoryservice.dto.BatchReserveResponse;
 import vn.tt.practice.inventoryservice.dto.Request;
 import vn.tt.practice.inventoryservice.dto.Response;
+import vn.tt.practice.inventoryservice.dto.StockAvailability;
+import vn.tt.practice.inventoryservice.dto.TransactionPage;
+import vn.tt.practice.inventoryservice.dto.TransactionResponse;
 import vn.tt.practice.inventoryservice.event.InventoryEventPublisher;
 import vn.tt.practice.inventoryservice.entity.Inventory;
 import vn.tt.practice.inventoryservice.entity.InventoryReservation;
 import vn.tt.practice.inventoryservice.entity.InventoryTransaction;
+import vn.tt.practice.inventoryservice.repository.HotSkuRepository;
+import vn.tt.practice.inventoryservice.repository.InventoryBatchRepository;
 import vn.tt.practice.inventoryservice.repository.InventoryRepository;
 import vn.tt.practice.inventoryservice.repository.InventoryReservationRepository;
 import vn.tt.practice.inventoryservice.repository.InventoryTransactionRepository;
+import vn.tt.practice.inventoryservice.repository.ReservationSettlementRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,16 +50,35 @@ public class InventoryService {
 
     private static final String TX_TYPE_IMPORT = "IMPORT";
     private static final String TX_TYPE_RESERVE = "RESERVE";
-    private static final String TX_TYPE_RELEASE = "RELEASE";
-    private static final String TX_TYPE_CONFIRM = "CONFIRM";
+
+    private static final Duration RESERVATION_TTL = Duration.ofMinutes(15);
+    private static final int MAX_TRANSACTION_PAGE_SIZE = 200;
 
     private final InventoryRepository inventoryRepository;
     private final InventoryReservationRepository inventoryReservationRepository;
     private final InventoryTransactionRepository transactionRepository;
+    private final InventoryBatchRepository batchRepository;
+    private final ReservationSettlementRepository settlementRepository;
+    private final HotSkuRepository hotSkuRepository;
     private final InventoryEventPublisher eventPublisher;
+    private final HotSkuLedger hotSkuLedger;
+    private final HotSkuReconciler hotSkuReconciler;
+    private final ReservationExpiryWheel expiryWheel;
+    private final StockAvailabilityCache availabilityCache;
 
     @Transactional
     public Response reserve(Request request) {
+        Inventory.ReservationMode mode = inventoryRepository.findReservationModeByProductId(request.getProductId())
+                .orElseThrow(() -> new RuntimeException("Inventory not found for product: " + request.getProductId()));
+
+        return switch (mode) {
+            case CONDITIONAL -> reserveConditionally(request);
+            case SHARDED -> reserveFromLedger(request);
+            case LOCKING -> reserveWithLock(request);
+        };
+    }
+
+    private Response reserveWithLock(Request request) {
         Inventory inventory = inventoryRepository.lockByProductId(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Inventory not found for product: " + request.getProductId()));
 
@@ -49,17 +93,106 @@ public class InventoryService {
         inventory.setAvailableQuantity(inventory.getAvailableQuantity() - request.getQuantity());
         inventory.setReservedQuantity(inventory.getReservedQuantity() + request.getQuantity());
         inventoryRepository.save(inventory);
+        availabilityCache.evictAfterCommit(List.of(inventory.getProductId()));
+
+        InventoryReservation savedReservation = saveReservation(inventory, request);
+
+        return Response.builder()
+                .reserved(true)
+                .reservationId(savedReservation.getId())
+                .expiresAt(savedReservation.getExpiresAt())
+                .message("Stock reserved successfully")
+                .build();
+    }
+
+    /**
+     * Hot-SKU path: reservation and ledger rows are inserted first and the guarded decrement runs last,
+     * so the inventory row is only locked between that UPDATE and commit.
+     */
+    private Response reserveConditionally(Request request) {
+        Inventory inventory = inventoryRepository.findByProductId(request.getProductId())
+                .orElseThrow(() -> new RuntimeException("Inventory not found for product: " + request.getProductId()));
+
+        InventoryReservation savedReservation = saveReservation(inventory, request);
+
+        if (inventoryRepository.reserveIfAvailable(request.getProductId(), request.getQuantity(), Instant.now()) == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return Response.builder()
+                    .reserved(false)
+                    .message("Insufficient stock. Requested: " + request.getQuantity())
+                    .build();
+        }
+        availabilityCache.evictAfterCommit(List.of(request.getProductId()));
+
+        return Response.builder()
+                .reserved(true)
+                .reservationId(savedReservation.getId())
+                .expiresAt(savedReservation.getExpiresAt())
+                .message("Stock reserved successfully")
+                .build();
+    }
 
-        // Create reservation
+    /**
+     * SHARDED path: stock comes from this node's in-memory ledger. The reservation row is written
+     * by HotSkuReconciler shortly after commit, so no reservation id is returned.
+     */
+    private Response reserveFromLedger(Request request) {
+        Optional<List<HotSkuLedger.Taken>> taken =
+                hotSkuLedger.tryTake(Map.of(request.getProductId(), request.getQuantity()));
+        if (taken.isEmpty()) {
+            return Response.builder()
+                    .reserved(false)
+                    .message("Insufficient stock. Requested: " + request.getQuantity())
+                    .build();
+        }
+
+        Instant expiresAt = Instant.now().plus(RESERVATION_TTL);
+        journalOnCommit(request.getOrderId(), taken.get(), expiresAt);
+        return Response.builder()
+                .reserved(true)
+                .expiresAt(expiresAt)
+                .message("Stock reserved successfully")
+                .build();
+    }
+
+    /**
+     * Ledger units are journaled right before the surrounding transaction commits and applied only once it did;
+     * a rollback, even after journaling, hands them back to the ledger.
+     */
+    private void journalOnCommit(Long orderId, List<HotSkuLedger.Taken> taken, Instant expiresAt) {
+        // committed with the reservation, so confirm/release on any node knows these lines are still coming,
+        // and a replay of this node's journal knows the transaction committed
+        hotSkuRepository.markPending(orderId, hotSkuReconciler.journalId(), taken.size(), expiresAt);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<HotSkuJournal.Entry> journaled;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                journaled = hotSkuReconciler.submit(orderId, taken, expiresAt);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (journaled == null) {
+                    hotSkuLedger.giveBack(taken);
+                } else {
+                    hotSkuReconciler.completed(orderId, journaled, status);
+                }
+            }
+        });
+    }
+
+    private InventoryReservation saveReservation(Inventory inventory, Request request) {
         InventoryReservation reservation = InventoryReservation.builder()
                 .inventory(inventory)
                 .orderId(request.getOrderId())
                 .quantity(request.getQuantity())
                 .status(InventoryReservation.ReservationStatus.PENDING)
-                .expiresAt(Instant.now().plus(15, ChronoUnit.MINUTES))
+                .expiresAt(Instant.now().plus(RESERVATION_TTL))
                 .build();
 
         InventoryReservation savedReservation = inventoryReservationRepository.save(reservation);
+        expiryWheel.schedule(savedReservation.getId(), savedReservation.getExpiresAt());
 
         transactionRepository.save(InventoryTransaction.builder()
                 .inventory(inventory)
@@ -69,77 +202,160 @@ public class InventoryService {
                 .referenceType("ORDER")
                 .notes("Reserve for order " + request.getOrderId())
                 .build());
-
-        return Response.builder()
-                .reserved(true)
-                .reservationId(savedReservation.getId())
-                .expiresAt(savedReservation.getExpiresAt())
-                .message("Stock reserved successfully")
-                .build();
+        return savedReservation;
     }
 
+    /**
+     * All-or-nothing reservation of every line of an order. Inventory rows are locked with one
+     * ordered SELECT ... FOR UPDATE, and reservations and ledger rows are written as multi-row inserts.
+     * Nothing is changed when any line cannot be reserved.
+     */
     @Transactional
-    public void confirmReservation(Long orderId) {
-        List<InventoryReservation> reservations = inventoryReservationRepository.findAllByOrderId(orderId);
-        for (InventoryReservation reservation : reservations) {
-            if (reservation.getStatus() != InventoryReservation.ReservationStatus.PENDING) continue;
+    public BatchReserveResponse reserveBatch(BatchReserveRequest request) {
+        Long orderId = request.getOrderId();
 
-            Inventory inventory = reservation.getInventory();
-            Long productId = inventory.getProductId();
-            int qty = reservation.getQuantity();
+        // merge duplicate lines; TreeMap keeps the product-id order used for locking
+        Map<Long, Integer> quantities = new TreeMap<>();
+        if (request.getItems() != null) {
+            for (BatchReserveRequest.Item item : request.getItems()) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        if (quantities.isEmpty()) {
+            return BatchReserveResponse.builder()
+                    .reserved(false)
+                    .orderId(orderId)
+                    .message("Order has no items to reserve")
+                    .build();
+        }
 
-            if (inventory.getReservedQuantity() < qty) {
-                throw new IllegalStateException("Reserved inconsistent productId=" + productId);
+        // CONDITIONAL and SHARDED rows are never locked here
+        List<Inventory> unlocked = inventoryRepository.findAllByProductIdInAndReservationModeIn(
+                quantities.keySet(), EnumSet.of(Inventory.ReservationMode.CONDITIONAL, Inventory.ReservationMode.SHARDED));
+        Set<Long> lockedIds = new TreeSet<>(quantities.keySet());
+        Map<Long, Integer> ledgerLines = new TreeMap<>();
+        for (Inventory inventory : unlocked) {
+            lockedIds.remove(inventory.getProductId());
+            if (inventory.getReservationMode() == Inventory.ReservationMode.SHARDED) {
+                ledgerLines.put(inventory.getProductId(), quantities.get(inventory.getProductId()));
             }
+        }
 
-            inventory.setReservedQuantity(inventory.getReservedQuantity() - qty);
-            inventory.setUpdatedAt(Instant.now());
-            inventoryRepository.save(inventory);
-
-            reservation.setStatus(InventoryReservation.ReservationStatus.CONFIRMED);
-            inventoryReservationRepository.save(reservation);
-
-            transactionRepository.save(InventoryTransaction.builder()
-                    .inventory(inventory)
-                    .transactionType(TX_TYPE_CONFIRM)
-                    .quantity(-qty)
-                    .referenceId(orderId)
-                    .referenceType("ORDER")
-                    .notes("Confirm reservation for order " + orderId)
-                    .build());
+        // ledger lines first, before any row lock is held: taking them may lease stock in its own transaction
+        Instant expiresAt = Instant.now().plus(RESERVATION_TTL);
+        if (!ledgerLines.isEmpty()) {
+            Optional<List<HotSkuLedger.Taken>> taken = hotSkuLedger.tryTake(ledgerLines);
+            if (taken.isEmpty()) {
+                return BatchReserveResponse.builder()
+                        .reserved(false)
+                        .orderId(orderId)
+                        .message("Insufficient stock for products " + ledgerLines.keySet())
+                        .build();
+            }
+            journalOnCommit(orderId, taken.get(), expiresAt);
         }
-    }
 
-    @Transactional
-    public void releaseReservation(Long orderId) {
-        List<InventoryReservation> reservations = inventoryReservationRepository.findAllByOrderId(orderId);
-        for (InventoryReservation reservation : reservations) {
-            if (reservation.getStatus() != InventoryReservation.ReservationStatus.PENDING) continue;
+        List<Inventory> locked = lockedIds.isEmpty() ? List.of() : inventoryRepository.lockAllByProductIdIn(lockedIds);
+        Map<Long, Inventory> byProductId = Stream.concat(locked.stream(), unlocked.stream())
+                .collect(Collectors.toMap(Inventory::getProductId, Function.identity()));
 
-            Inventory inventory = reservation.getInventory();
-            Long productId = inventory.getProductId();
-            int qty = reservation.getQuantity();
+        List<String> failures = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> {
+            Inventory inventory = byProductId.get(productId);
+            if (inventory == null) {
+                failures.add("Inventory not found for product: " + productId);
+            } else if (lockedIds.contains(productId) && inventory.getAvailableQuantity() < quantity) {
+                failures.add("Insufficient stock for product " + productId + ". Available: "
+                        + inventory.getAvailableQuantity() + ", Requested: " + quantity);
+            }
+        });
+        if (!failures.isEmpty()) {
+            // hands any ledger lines back instead of journaling them
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return BatchReserveResponse.builder()
+                    .reserved(false)
+                    .orderId(orderId)
+                    .message(String.join("; ", failures))
+                    .build();
+        }
 
-            if (inventory.getReservedQuantity() < qty) {
-                throw new IllegalStateException("Reserved inconsistent productId=" + productId);
+        List<InventoryBatchRepository.ReservationRow> reservations = new ArrayList<>(quantities.size());
+        List<InventoryBatchRepository.TransactionRow> transactions = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> {
+            if (ledgerLines.containsKey(productId)) return;
+            Inventory inventory = byProductId.get(productId);
+            if (lockedIds.contains(productId)) {
+                inventory.setAvailableQuantity(inventory.getAvailableQuantity() - quantity);
+                inventory.setReservedQuantity(inventory.getReservedQuantity() + quantity);
             }
 
-            inventory.setAvailableQuantity(inventory.getAvailableQuantity() + qty);
-            inventory.setReservedQuantity(inventory.getReservedQuantity() - qty);
-            inventory.setUpdatedAt(Instant.now());
-            inventoryRepository.save(inventory);
-
-            reservation.setStatus(InventoryReservation.ReservationStatus.RELEASED);
-            inventoryReservationRepository.save(reservation);
-
-            transactionRepository.save(InventoryTransaction.builder()
-                    .inventory(inventory)
-                    .transactionType(TX_TYPE_RELEASE)
-                    .quantity(qty)
-                    .referenceId(orderId)
-                    .referenceType("ORDER")
-                    .notes("Release reservation for order " + orderId)
-                    .build());
+            reservations.add(new InventoryBatchRepository.ReservationRow(inventory.getId(), orderId, quantity,
+                    InventoryReservation.ReservationStatus.PENDING.name(), expiresAt));
+            transactions.add(new InventoryBatchRepository.TransactionRow(inventory.getId(), TX_TYPE_RESERVE,
+                    -quantity, orderId, "ORDER", "Reserve for order " + orderId, null));
+        });
+
+        // inventory updates are flushed as one JDBC batch (hibernate.jdbc.batch_size)
+        inventoryRepository.saveAll(locked);
+        List<Long> reservationIds = batchRepository.insertReservations(reservations);
+        reservationIds.forEach(id -> expiryWheel.schedule(id, expiresAt));
+        batchRepository.insertTransactions(transactions);
+
+        // guarded updates also follow product-id order, after every FOR UPDATE lock is held
+        Instant now = Instant.now();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Long productId = line.getKey();
+            int quantity = line.getValue();
+            if (lockedIds.contains(productId) || ledgerLines.containsKey(productId)) continue;
+            if (inventoryRepository.reserveIfAvailable(productId, quantity, now) == 0) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return BatchReserveResponse.builder()
+                        .reserved(false)
+                        .orderId(orderId)
+                        .message("Insufficient stock for product " + productId + ". Requested: " + quantity)
+                        .build();
+            }
+        }
+        // ledger lines reach the inventory row through HotSkuRepository, which evicts on its own
+        availabilityCache.evictAfterCommit(quantities.keySet().stream()
+                .filter(productId -> !ledgerLines.containsKey(productId))
+                .toList());
+
+        return BatchReserveResponse.builder()
+                .reserved(true)
+                .orderId(orderId)
+                .reservationIds(reservationIds)
+                .expiresAt(expiresAt)
+                .message("Stock reserved successfully")
+                .build();
+    }
+
+    /**
+     * Idempotent: only reservations still PENDING are confirmed.
+     *
+     * @throws HotSkuLinesPendingException if some of the order's hot-SKU lines have not been applied yet
+     */
+    @Transactional
+    public void confirmReservation(Long orderId) {
+        requireNoPendingLines(orderId);
+        settlementRepository.confirmOrder(orderId);
+    }
+
+    /**
+     * Idempotent: only reservations still PENDING are released.
+     *
+     * @throws HotSkuLinesPendingException if some of the order's hot-SKU lines have not been applied yet
+     */
+    @Transactional
+    public void releaseReservation(Long orderId) {
+        requireNoPendingLines(orderId);
+        settlementRepository.releaseOrder(orderId);
+    }
+
+    // settling now would claim only part of the order and the rest would stay reserved until it expires
+    private void requireNoPendingLines(Long orderId) {
+        if (hotSkuRepository.hasPendingLines(orderId)) {
+            throw new HotSkuLinesPendingException(orderId);
         }
     }
 
@@ -154,6 +370,7 @@ public class InventoryService {
         inventory.setAvailableQuantity(inventory.getAvailableQuantity() + quantity);
         inventory.setUpdatedAt(Instant.now());
         inventory = inventoryRepository.save(inventory);
+        availabilityCache.evictAfterCommit(List.of(productId));
 
         transactionRepository.save(InventoryTransaction.builder()
                 .inventory(inventory)
@@ -166,8 +383,110 @@ public class InventoryService {
         return inventory;
     }
 
+    @Transactional
+    public Inventory updateReservationMode(Long productId, Inventory.ReservationMode mode) {
+        Inventory inventory = inventoryRepository.findByProductId(productId)
+                .orElseThrow(() -> new RuntimeException("Inventory not found for product: " + productId));
+        Inventory.ReservationMode previous = inventory.getReservationMode();
+        inventory.setReservationMode(mode);
+        inventory = inventoryRepository.save(inventory);
+
+        if (previous == Inventory.ReservationMode.SHARDED && mode != Inventory.ReservationMode.SHARDED) {
+            // the lease goes back in its own transaction, which must not race this row update
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hotSkuLedger.retire(productId);
+                }
+            });
+        }
+        return inventory;
+    }
+
+    public Optional<StockAvailability> getAvailability(Long productId) {
+        return availabilityCache.get(productId);
+    }
+
+    /**
+     * Availability of many products at once, served from memory where possible; unknown ids are omitted.
+     */
+    public List<StockAvailability> getAvailability(Collection<Long> productIds) {
+        Map<Long, StockAvailability> found = availabilityCache.getAll(new TreeSet<>(productIds));
+        return productIds.stream().distinct().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Ledger page, newest first. {@code after} is the nextCursor of the previous page, null for the first one.
+     */
+    @Transactional(readOnly = true)
+    public TransactionPage getTransactions(String after, int limit) {
+        int size = clampPageSize(limit);
+        Limit fetch = Limit.of(size + 1);
+        List<InventoryTransaction> rows = after == null || after.isBlank()
+                ? transactionRepository.findLatest(fetch)
+                : decodeCursor(after, (createdAt, id) -> transactionRepository.findBefore(createdAt, id, fetch));
+        return toPage(rows, size);
+    }
+
     @Transactional(readOnly = true)
-    public Page<InventoryTransaction> getTransactions(Pageable pageable) {
-        return transactionRepository.findAllByOrderByCreatedAtDesc(pageable);
+    public TransactionPage getProductTransactions(Long productId, String after, int limit) {
+        int size = clampPageSize(limit);
+        Limit fetch = Limit.of(size + 1);
+        List<InventoryTransaction> rows = after == null || after.isBlank()
+                ? transactionRepository.findLatestByProductId(productId, fetch)
+                : decodeCursor(after, (createdAt, id) ->
+                        transactionRepository.findBeforeByProductId(productId, createdAt, id, fetch));
+        return toPage(rows, size);
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_TRANSACTION_PAGE_SIZE));
+    }
+
+    // one extra row tells whether there is a next page without a COUNT
+    private static TransactionPage toPage(List<InventoryTransaction> rows, int size) {
+        List<InventoryTransaction> page = rows.size() > size ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (rows.size() > size) {
+            InventoryTransaction last = page.get(page.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return TransactionPage.builder()
+                .items(page.stream().map(InventoryService::toTransactionResponse).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static TransactionResponse toTransactionResponse(InventoryTransaction transaction) {
+        return TransactionResponse.builder()
+                .id(transaction.getId())
+                .productId(transaction.getInventory().getProductId())
+                .transactionType(transaction.getTransactionType())
+                .quantity(transaction.getQuantity())
+                .referenceId(transaction.getReferenceId())
+                .referenceType(transaction.getReferenceType())
+                .notes(transaction.getNotes())
+                .createdAt(transaction.getCreatedAt())
+                .createdBy(transaction.getCreatedBy())
+                .build();
+    }
+
+    // opaque to clients: base64url of "<createdAt>|<id>"
+    private static String encodeCursor(Instant createdAt, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static <T> T decodeCursor(String cursor, BiFunction<Instant, Long, T> query) {
+        Instant createdAt;
+        long id;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            createdAt = Instant.parse(parts[0]);
+            id = Long.parseLong(parts[1]);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return query.apply(createdAt, id);
     }
 }
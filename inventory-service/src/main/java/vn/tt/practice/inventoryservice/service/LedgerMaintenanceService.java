@@ -0,0 +1,60 @@
+package vn.tt.practice.inventoryservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.TransactionPartitionRepository;
+
+import java.time.YearMonth;
+
+/**
+ * Keeps monthly inventory_transactions partitions created ahead of time, and compacts months older
+ * than the retention window into inventory_transaction_daily_summaries before dropping them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerMaintenanceService {
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final InventoryProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${inventory.ledger.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        createUpcomingPartitions(current);
+        archiveOldPartitions(current);
+    }
+
+    private void createUpcomingPartitions(YearMonth current) {
+        for (int i = 0; i <= properties.getLedger().getMonthsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                partitionRepository.createPartition(month);
+            } catch (Exception e) {
+                // e.g. rows for that month already landed in the DEFAULT partition
+                log.error("Cannot create inventory_transactions partition for {}", month, e);
+            }
+        }
+    }
+
+    private void archiveOldPartitions(YearMonth current) {
+        YearMonth cutoff = current.minusMonths(properties.getLedger().getRetentionMonths());
+        for (YearMonth month : partitionRepository.findPartitionMonths()) {
+            if (!month.isBefore(cutoff)) {
+                break;
+            }
+            try {
+                int summaries = partitionRepository.archive(month);
+                log.info("Archived inventory_transactions for {} into {} daily summary rows", month, summaries);
+            } catch (Exception e) {
+                log.error("Archiving inventory_transactions for {} failed, retrying on the next run", month, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package vn.tt.practice.inventoryservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.ReservationSweepRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hierarchical timing wheel that expires each reservation within about one tick of its expiresAt.
+ * Four levels of 64 slots cover 64^4 ticks; entries move down a level as their slot comes round.
+ * <p>
+ * Only the ticker thread touches the wheel; other threads hand entries over through a queue.
+ * Expiry itself goes through {@link ReservationSweepRepository#expireDue}, which ignores reservations
+ * that were confirmed or released meanwhile, so nothing needs to be cancelled.
+ * The wheel is rebuilt from inventory_reservations on startup; InventoryCleanupService stays as a safety net.
+ */
+@Slf4j
+@Component
+public class ReservationExpiryWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final ReservationSweepRepository sweepRepository;
+    private final long tickMs;
+    private final long retryTicks;
+    private final int batchSize;
+    private final Timer lag;
+    private final AtomicInteger scheduled = new AtomicInteger();
+
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("unchecked")
+    private final List<Entry>[][] wheel = new List[LEVELS][SLOTS];
+    private long currentTick;
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reservation-expiry-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReservationExpiryWheel(ReservationSweepRepository sweepRepository,
+                                  InventoryProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.sweepRepository = sweepRepository;
+        this.tickMs = properties.getExpiry().getTickMs();
+        this.retryTicks = Math.max(1, properties.getExpiry().getRetryDelayMs() / tickMs);
+        this.batchSize = properties.getExpiry().getChunkSize();
+        this.lag = expiryLagTimer(meterRegistry, "wheel");
+        Gauge.builder("inventory.reservation.expiry.scheduled", scheduled, AtomicInteger::get)
+                .description("Reservations waiting in the expiry wheel")
+                .register(meterRegistry);
+
+        for (List<Entry>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new ArrayList<>();
+            }
+        }
+        this.currentTick = System.currentTimeMillis() / tickMs;
+    }
+
+    /**
+     * Shared by the wheel and the polling sweeper: time from expiresAt until the stock is released.
+     */
+    static Timer expiryLagTimer(MeterRegistry meterRegistry, String source) {
+        return Timer.builder("inventory.reservation.expiry.lag")
+                .description("Delay between a reservation's expiresAt and its release")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    public void schedule(long reservationId, Instant expiresAt) {
+        long expiresAtMillis = expiresAt.toEpochMilli();
+        incoming.add(new Entry(reservationId, expiresAtMillis, ceilDiv(expiresAtMillis, tickMs)));
+        scheduled.incrementAndGet();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            int[] count = {0};
+            sweepRepository.forEachPending((id, expiresAt) -> {
+                schedule(id, expiresAt);
+                count[0]++;
+            });
+            log.info("Expiry wheel rebuilt with {} pending reservations", count[0]);
+        } catch (Exception e) {
+            log.error("Expiry wheel rebuild failed, the polling sweeper will release what it misses", e);
+        }
+        ticker.scheduleWithFixedDelay(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void advance() {
+        advanceTo(System.currentTimeMillis() / tickMs);
+    }
+
+    /**
+     * One run of the ticker: places handed-over entries, then processes every tick up to {@code nowTick}.
+     */
+    void advanceTo(long nowTick) {
+        try {
+            Entry entry;
+            while ((entry = incoming.poll()) != null) {
+                place(entry);
+            }
+
+            List<Entry> due = new ArrayList<>();
+            while (currentTick < nowTick) {
+                currentTick++;
+                cascade();
+                List<Entry> slot = wheel[0][(int) (currentTick & MASK)];
+                for (Entry candidate : slot) {
+                    if (candidate.dueTick() <= currentTick) {
+                        due.add(candidate);
+                    } else {
+                        // clamped beyond the wheel's span
+                        place(candidate);
+                    }
+                }
+                slot.clear();
+            }
+
+            for (int from = 0; from < due.size(); from += batchSize) {
+                expire(due.subList(from, Math.min(from + batchSize, due.size())));
+            }
+        } catch (Exception e) {
+            log.error("Expiry wheel tick failed", e);
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    // on every 64th tick of a level, its next slot is re-placed into the levels below
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            long shifted = currentTick >> (SLOT_BITS * level);
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            List<Entry> slot = wheel[level][(int) (shifted & MASK)];
+            List<Entry> moving = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry entry : moving) {
+                if (entry.dueTick() <= currentTick) {
+                    // due on this boundary tick, whose slot is processed right after the cascade
+                    wheel[0][(int) (currentTick & MASK)].add(entry);
+                } else {
+                    place(entry);
+                }
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        long delta = entry.dueTick() - currentTick;
+        if (delta <= 0) {
+            // already due: lands in the slot processed on the next tick
+            wheel[0][(int) ((currentTick + 1) & MASK)].add(entry);
+            return;
+        }
+        long target = delta < SPAN ? entry.dueTick() : currentTick + SPAN - 1;
+        long distance = target - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && distance >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        wheel[level][(int) ((target >> (SLOT_BITS * level)) & MASK)].add(entry);
+    }
+
+    private void expire(List<Entry> batch) {
+        Instant now = Instant.now();
+        try {
+            List<Instant> expired = sweepRepository.expireDue(batch.stream().map(Entry::reservationId).toList(), now);
+            expired.forEach(expiresAt -> lag.record(Duration.between(expiresAt, now).abs()));
+            scheduled.addAndGet(-batch.size());
+            if (!expired.isEmpty()) {
+                log.debug("Expiry wheel released {} of {} due reservations", expired.size(), batch.size());
+            }
+        } catch (Exception e) {
+            log.error("Expiry wheel could not release {} reservations, retrying in {} ms",
+                    batch.size(), retryTicks * tickMs, e);
+            batch.forEach(entry -> place(new Entry(entry.reservationId(), entry.expiresAtMillis(),
+                    currentTick + retryTicks)));
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private record Entry(long reservationId, long expiresAtMillis, long dueTick) {}
+}
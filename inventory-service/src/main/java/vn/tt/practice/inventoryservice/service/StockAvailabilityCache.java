@@ -0,0 +1,221 @@
+package vn.tt.practice.inventoryservice.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.dto.StockAvailability;
+import vn.tt.practice.inventoryservice.repository.InventoryRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of {@link StockAvailability} per product: Caffeine in front, optionally Redis behind it,
+ * Postgres last. Misses of a bulk lookup are loaded with one IN query.
+ * <p>
+ * Every code path that changes inventory counters evicts the affected products after its commit. With Redis
+ * enabled the eviction also deletes the shared entries and is broadcast so other replicas drop their local copy;
+ * without it, other replicas catch up within the local TTL.
+ * <p>
+ * Loaded snapshots go to Redis through a script that keeps the higher version and refuses to write for
+ * {@code evict-guard-ms} after an eviction, so a load that raced a change cannot put the old counters back.
+ */
+@Slf4j
+@Component
+public class StockAvailabilityCache {
+
+    public static final String INVALIDATION_CHANNEL = "inventory:availability:invalidate";
+    private static final String REDIS_KEY_PREFIX = "inventory:availability:";
+    private static final String EVICTED_KEY_PREFIX = "inventory:availability:evicted:";
+    private static final RedisScript<Long> SET_IF_NEWER =
+            RedisScript.of(new ClassPathResource("scripts/availability_set_if_newer.lua"), Long.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final InventoryProperties.Availability settings;
+    private final LoadingCache<Long, StockAvailability> local;
+
+    public StockAvailabilityCache(InventoryRepository inventoryRepository,
+                                  ObjectProvider<StringRedisTemplate> redisTemplate,
+                                  InventoryProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.inventoryRepository = inventoryRepository;
+        this.settings = properties.getAvailability();
+        // only needed, and only required to exist, with the Redis tier on
+        this.redisTemplate = settings.isRedisEnabled() ? redisTemplate.getObject() : null;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(settings.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofMillis(settings.getLocalTtlMs()))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public StockAvailability load(Long productId) {
+                        return loadAll(Set.of(productId)).get(productId);
+                    }
+
+                    @Override
+                    public Map<Long, StockAvailability> loadAll(Set<? extends Long> productIds) {
+                        return StockAvailabilityCache.this.loadAll(productIds);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "stockAvailability");
+    }
+
+    public Optional<StockAvailability> get(Long productId) {
+        return Optional.ofNullable(local.get(productId));
+    }
+
+    /**
+     * Snapshots for the given products; unknown products are left out of the result.
+     */
+    public Map<Long, StockAvailability> getAll(Collection<Long> productIds) {
+        return local.getAll(productIds);
+    }
+
+    /**
+     * Evicts once the current transaction commits, or right away when there is none.
+     */
+    public void evictAfterCommit(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(productIds);
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(ids);
+            }
+        });
+    }
+
+    /**
+     * Drops this node's copies only; called for invalidations broadcast by other replicas.
+     */
+    public void evictLocal(Collection<Long> productIds) {
+        local.invalidateAll(productIds);
+    }
+
+    private void evict(Collection<Long> productIds) {
+        local.invalidateAll(productIds);
+        if (!settings.isRedisEnabled()) {
+            return;
+        }
+        String guardMs = Long.toString(settings.getEvictGuardMs());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                productIds.forEach(productId -> {
+                    redis.del(redisKey(productId));
+                    redis.execute("SET", evictedKey(productId), "1", "PX", guardMs);
+                });
+                return null;
+            });
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL,
+                    productIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (RuntimeException e) {
+            log.warn("Cannot invalidate stock availability in Redis for {} products", productIds.size(), e);
+        }
+    }
+
+    private Map<Long, StockAvailability> loadAll(Collection<? extends Long> productIds) {
+        Map<Long, StockAvailability> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>(productIds);
+        if (settings.isRedisEnabled()) {
+            missing = readRedis(missing, found);
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        List<StockAvailability> loaded = inventoryRepository.findAvailabilityByProductIdIn(missing);
+        loaded.forEach(availability -> found.put(availability.productId(), availability));
+        if (settings.isRedisEnabled() && !loaded.isEmpty()) {
+            writeRedis(loaded);
+        }
+        return found;
+    }
+
+    // returns the ids Redis did not have
+    private List<Long> readRedis(List<Long> productIds, Map<Long, StockAvailability> found) {
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                    .multiGet(productIds.stream().map(StockAvailabilityCache::redisKey).toList());
+            if (values == null) {
+                return productIds;
+            }
+            List<Long> missing = new ArrayList<>();
+            for (int i = 0; i < productIds.size(); i++) {
+                String value = values.get(i);
+                if (value == null) {
+                    missing.add(productIds.get(i));
+                } else {
+                    found.put(productIds.get(i), decode(productIds.get(i), value));
+                }
+            }
+            return missing;
+        } catch (RuntimeException e) {
+            log.warn("Stock availability Redis read failed, falling back to the database", e);
+            return productIds;
+        }
+    }
+
+    private void writeRedis(List<StockAvailability> loaded) {
+        List<String> keys = new ArrayList<>(loaded.size() * 2);
+        List<String> args = new ArrayList<>(loaded.size() * 2 + 1);
+        args.add(Long.toString(Math.max(1, settings.getRedisTtlMs() / 1000)));
+        for (StockAvailability availability : loaded) {
+            keys.add(redisKey(availability.productId()));
+            keys.add(evictedKey(availability.productId()));
+            args.add(encode(availability));
+            args.add(Long.toString(availability.version() != null ? availability.version() : -1));
+        }
+        try {
+            redisTemplate.execute(SET_IF_NEWER, keys, args.toArray());
+        } catch (RuntimeException e) {
+            log.warn("Stock availability Redis write failed for {} products", loaded.size(), e);
+        }
+    }
+
+    private static String redisKey(Long productId) {
+        return REDIS_KEY_PREFIX + productId;
+    }
+
+    private static String evictedKey(Long productId) {
+        return EVICTED_KEY_PREFIX + productId;
+    }
+
+    // "available,reserved,version"
+    private static String encode(StockAvailability availability) {
+        return availability.availableQuantity() + "," + availability.reservedQuantity() + "," + availability.version();
+    }
+
+    private static StockAvailability decode(Long productId, String value) {
+        String[] parts = value.split(",");
+        return new StockAvailability(productId, Integer.valueOf(parts[0]), Integer.valueOf(parts[1]),
+                "null".equals(parts[2]) ? null : Long.valueOf(parts[2]));
+    }
+}
@@ -0,0 +1,2 @@
+ALTER TABLE inventory
+    ADD COLUMN IF NOT EXISTS reservation_mode VARCHAR(20) NOT NULL DEFAULT 'LOCKING';
@@ -0,0 +1,7 @@
+-- Last hot-SKU journal entry applied to the database, one row per journal file
+CREATE TABLE IF NOT EXISTS hot_sku_checkpoints (
+    journal_id VARCHAR(36) PRIMARY KEY,
+    last_seq BIGINT NOT NULL DEFAULT 0,
+    closed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
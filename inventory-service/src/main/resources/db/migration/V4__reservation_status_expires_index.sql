@@ -0,0 +1,2 @@
+-- Expiry sweeper: WHERE status = 'PENDING' AND expires_at < ? ORDER BY expires_at
+CREATE INDEX IF NOT EXISTS idx_reservations_status_expires ON inventory_reservations (status, expires_at);
@@ -0,0 +1,59 @@
+-- inventory_transactions becomes an append-only ledger range-partitioned by month on created_at.
+-- The primary key has to include the partition key; (created_at, id) also serves keyset paging.
+
+ALTER TABLE inventory_transactions RENAME TO inventory_transactions_legacy;
+ALTER SEQUENCE inventory_transactions_id_seq OWNED BY NONE;
+
+CREATE TABLE inventory_transactions (
+    id BIGINT NOT NULL DEFAULT nextval('inventory_transactions_id_seq'),
+    inventory_id BIGINT NOT NULL REFERENCES inventory(id),
+    transaction_type VARCHAR(50) NOT NULL,
+    quantity INT NOT NULL,
+    reference_id BIGINT,
+    reference_type VARCHAR(50),
+    notes TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_by VARCHAR(255),
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+-- one partition per month from the oldest row up to two months ahead; LedgerMaintenanceService keeps extending it
+DO $$
+DECLARE
+    month_start DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(created_at), NOW()))::date INTO month_start
+    FROM inventory_transactions_legacy;
+
+    WHILE month_start <= (date_trunc('month', NOW()) + INTERVAL '2 months')::date LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF inventory_transactions FOR VALUES FROM (%L) TO (%L)',
+                       'inventory_transactions_' || to_char(month_start, 'YYYYMM'),
+                       month_start, (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+CREATE TABLE IF NOT EXISTS inventory_transactions_default PARTITION OF inventory_transactions DEFAULT;
+
+INSERT INTO inventory_transactions
+    (id, inventory_id, transaction_type, quantity, reference_id, reference_type, notes, created_at, created_by)
+SELECT id, inventory_id, transaction_type, quantity, reference_id, reference_type, notes,
+       COALESCE(created_at, NOW()), created_by
+FROM inventory_transactions_legacy;
+
+DROP TABLE inventory_transactions_legacy;
+ALTER SEQUENCE inventory_transactions_id_seq OWNED BY inventory_transactions.id;
+
+-- per-product history, newest first
+CREATE INDEX IF NOT EXISTS idx_transactions_inventory_created
+    ON inventory_transactions (inventory_id, created_at DESC, id DESC);
+
+-- what the archival job keeps once a month's partition is dropped
+CREATE TABLE IF NOT EXISTS inventory_transaction_daily_summaries (
+    day DATE NOT NULL,
+    inventory_id BIGINT NOT NULL REFERENCES inventory(id),
+    transaction_type VARCHAR(50) NOT NULL,
+    total_quantity BIGINT NOT NULL,
+    transaction_count BIGINT NOT NULL,
+    PRIMARY KEY (inventory_id, day, transaction_type)
+);
@@ -0,0 +1,10 @@
+-- Orders whose SHARDED lines are journaled but not yet written to inventory_reservations.
+-- Committed with the reservation and counted down as the journal is applied, so any replica
+-- can tell "not reconciled yet" apart from "nothing to settle".
+CREATE TABLE IF NOT EXISTS hot_sku_pending_orders (
+    order_id BIGINT PRIMARY KEY,
+    remaining INT NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_hot_sku_pending_orders_expires_at ON hot_sku_pending_orders (expires_at);
@@ -0,0 +1,5 @@
+-- Markers per journal: a replay only applies lines of orders whose reserving transaction committed against
+-- that journal, never a retry of the same order that committed on another node after this one failed.
+ALTER TABLE hot_sku_pending_orders ADD COLUMN IF NOT EXISTS journal_id VARCHAR(36) NOT NULL DEFAULT '';
+ALTER TABLE hot_sku_pending_orders DROP CONSTRAINT IF EXISTS hot_sku_pending_orders_pkey;
+ALTER TABLE hot_sku_pending_orders ADD PRIMARY KEY (order_id, journal_id);
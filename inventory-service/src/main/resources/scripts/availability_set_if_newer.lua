@@ -0,0 +1,27 @@
+-- Stores loaded stock availability snapshots unless a newer one or a recent eviction is already there.
+-- KEYS     per product: snapshot key, then its eviction marker key
+-- ARGV[1]  snapshot TTL in seconds
+-- ARGV     then per product: encoded snapshot "available,reserved,version", version (-1 when unknown)
+-- Returns the number of snapshots written.
+-- A load that read the database before a change committed finds the change's eviction marker and is dropped;
+-- of two racing loads, the higher inventory version wins.
+
+local ttl = tonumber(ARGV[1])
+local written = 0
+for i = 1, #KEYS, 2 do
+    local n = (i + 1) / 2
+    local value = ARGV[2 * n]
+    local version = tonumber(ARGV[2 * n + 1])
+    if redis.call('EXISTS', KEYS[i + 1]) == 0 then
+        local current = redis.call('GET', KEYS[i])
+        local currentVersion = -1
+        if current then
+            currentVersion = tonumber(string.match(current, '([^,]+)$')) or -1
+        end
+        if not current or version > currentVersion then
+            redis.call('SET', KEYS[i], value, 'EX', ttl)
+            written = written + 1
+        end
+    end
+end
+return written
@@ -0,0 +1,163 @@
+package vn.tt.practice.inventoryservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HotSkuJournalTests {
+
+    @TempDir
+    Path dir;
+
+    private Path path;
+    private InventoryProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        path = dir.resolve("hot-sku.journal");
+        properties = new InventoryProperties();
+        properties.getHotSku().setJournalPath(path.toString());
+    }
+
+    @Test
+    void entryFormatRoundTrips() {
+        HotSkuJournal.Entry entry = HotSkuJournal.Entry.reserve(7, 70, 3, 1001, 1_700_000_000_000L).withSeq(42);
+
+        assertThat(HotSkuJournal.Entry.parse(entry.format())).isEqualTo(entry);
+    }
+
+    @Test
+    void parseRejectsMalformedLines() {
+        assertThatThrownBy(() -> HotSkuJournal.Entry.parse("1,LEASE,7,70,5"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HotSkuJournal.Entry.parse("1,BORROW,7,70,5,0,0"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void appendNumbersEntriesAndTracksOutstanding() {
+        HotSkuJournal journal = new HotSkuJournal(properties);
+        journal.start();
+
+        List<HotSkuJournal.Entry> first = journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 10),
+                HotSkuJournal.Entry.lease(8, 80, 4)));
+        List<HotSkuJournal.Entry> second = journal.append(List.of(HotSkuJournal.Entry.reserve(7, 70, 3, 1001, 0),
+                HotSkuJournal.Entry.returned(8, 80, 4)));
+
+        assertThat(first).extracting(HotSkuJournal.Entry::seq).containsExactly(1L, 2L);
+        assertThat(second).extracting(HotSkuJournal.Entry::seq).containsExactly(3L, 4L);
+        assertThat(journal.outstanding()).isEqualTo(Map.of(
+                7L, new HotSkuJournal.Outstanding(70, 7),
+                8L, new HotSkuJournal.Outstanding(80, 0)));
+    }
+
+    @Test
+    void replayReadsWhatWasAppendedAndMatchesLiveOutstanding() {
+        HotSkuJournal journal = new HotSkuJournal(properties);
+        journal.start();
+        journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 10)));
+        journal.append(List.of(HotSkuJournal.Entry.reserve(7, 70, 2, 1001, 5000),
+                HotSkuJournal.Entry.reserve(7, 70, 1, 1002, 6000)));
+        journal.append(List.of(HotSkuJournal.Entry.returned(7, 70, 3)));
+        String id = journal.journalId();
+        Map<Long, HotSkuJournal.Outstanding> live = journal.outstanding();
+
+        HotSkuJournal.Replay replay = new HotSkuJournal(properties).readExisting().orElseThrow();
+
+        assertThat(replay.journalId()).isEqualTo(id);
+        assertThat(replay.entries()).extracting(HotSkuJournal.Entry::type).containsExactly(
+                HotSkuJournal.Type.LEASE, HotSkuJournal.Type.RESERVE, HotSkuJournal.Type.RESERVE,
+                HotSkuJournal.Type.RETURN);
+        assertThat(replay.entries().get(1).orderId()).isEqualTo(1001);
+        assertThat(replay.entries().get(1).expiresAtMillis()).isEqualTo(5000);
+        assertThat(HotSkuJournal.outstandingOf(replay.entries()))
+                .isEqualTo(live)
+                .isEqualTo(Map.of(7L, new HotSkuJournal.Outstanding(70, 4)));
+    }
+
+    @Test
+    void replayStopsAtTornTrailingLine() throws Exception {
+        HotSkuJournal journal = new HotSkuJournal(properties);
+        journal.start();
+        journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 10)));
+        Files.writeString(path, "2,RESERVE,7,70", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        HotSkuJournal.Replay replay = new HotSkuJournal(properties).readExisting().orElseThrow();
+
+        assertThat(replay.entries()).hasSize(1);
+        assertThat(HotSkuJournal.outstandingOf(replay.entries()))
+                .isEqualTo(Map.of(7L, new HotSkuJournal.Outstanding(70, 10)));
+    }
+
+    @Test
+    void fileWithoutHeaderIsIgnored() throws Exception {
+        Files.writeString(path, "1,LEASE,7,70,10,0,0\n", StandardCharsets.UTF_8);
+
+        assertThat(new HotSkuJournal(properties).readExisting()).isEmpty();
+    }
+
+    @Test
+    void missingFileHasNothingToReplay() {
+        assertThat(new HotSkuJournal(properties).readExisting()).isEmpty();
+    }
+
+    @Test
+    void compactionKeepsOnlyOutstandingLeasesOnceReservesAreApplied() {
+        properties.getHotSku().setJournalCompactBytes(1);
+        HotSkuJournal journal = new HotSkuJournal(properties);
+        journal.start();
+        journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 10), HotSkuJournal.Entry.lease(8, 80, 2)));
+        journal.append(List.of(HotSkuJournal.Entry.reserve(7, 70, 4, 1001, 0),
+                HotSkuJournal.Entry.returned(8, 80, 2)));
+        String id = journal.journalId();
+
+        assertThat(journal.compactIfApplied(0)).isFalse();
+        assertThat(journal.compactIfApplied(1)).isTrue();
+
+        // same id and seqs carry on, so the checkpoint and the pending-order markers still apply
+        HotSkuJournal.Replay replay = new HotSkuJournal(properties).readExisting().orElseThrow();
+        assertThat(replay.journalId()).isEqualTo(id);
+        assertThat(replay.entries()).containsExactly(HotSkuJournal.Entry.lease(7, 70, 6).withSeq(5));
+
+        // appends continue in the compacted file
+        journal.append(List.of(HotSkuJournal.Entry.reserve(7, 70, 1, 1002, 0)));
+        replay = new HotSkuJournal(properties).readExisting().orElseThrow();
+        assertThat(replay.entries()).extracting(HotSkuJournal.Entry::seq).containsExactly(5L, 6L);
+        assertThat(HotSkuJournal.outstandingOf(replay.entries()))
+                .isEqualTo(Map.of(7L, new HotSkuJournal.Outstanding(70, 5)));
+    }
+
+    @Test
+    void cancelPutsReservedUnitsBackAndCountsAsSettledForCompaction() {
+        properties.getHotSku().setJournalCompactBytes(1);
+        HotSkuJournal journal = new HotSkuJournal(properties);
+        journal.start();
+        journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 10)));
+        HotSkuJournal.Entry reserve = journal.append(List.of(HotSkuJournal.Entry.reserve(7, 70, 4, 1001, 5000))).get(0);
+        HotSkuJournal.Entry cancel = journal.append(List.of(HotSkuJournal.Entry.cancel(reserve))).get(0);
+
+        assertThat(cancel.cancels(reserve)).isTrue();
+        assertThat(reserve.cancels(cancel)).isFalse();
+        assertThat(journal.outstanding()).isEqualTo(Map.of(7L, new HotSkuJournal.Outstanding(70, 10)));
+        assertThat(journal.compactIfApplied(0)).isTrue();
+    }
+
+    @Test
+    void appendRequiresAnOpenJournal() {
+        HotSkuJournal journal = new HotSkuJournal(properties);
+
+        assertThatThrownBy(() -> journal.append(List.of(HotSkuJournal.Entry.lease(7, 70, 1))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
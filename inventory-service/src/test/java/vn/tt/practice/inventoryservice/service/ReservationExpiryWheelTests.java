@@ -0,0 +1,168 @@
+package vn.tt.practice.inventoryservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vn.tt.practice.inventoryservice.config.InventoryProperties;
+import vn.tt.practice.inventoryservice.repository.ReservationSweepRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReservationExpiryWheelTests {
+
+    private static final long TICK_MS = 1000;
+    // four levels of 64 slots
+    private static final long SPAN = 1L << 24;
+
+    private ReservationSweepRepository sweepRepository;
+    private InventoryProperties properties;
+    private final List<Long> expired = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        sweepRepository = mock(ReservationSweepRepository.class);
+        when(sweepRepository.expireDue(anyList(), any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            expired.addAll(ids);
+            batchSizes.add(ids.size());
+            return List.of();
+        });
+        properties = new InventoryProperties();
+        properties.getExpiry().setTickMs(TICK_MS);
+        properties.getExpiry().setRetryDelayMs(3 * TICK_MS);
+    }
+
+    private ReservationExpiryWheel wheel() {
+        return new ReservationExpiryWheel(sweepRepository, properties, new SimpleMeterRegistry());
+    }
+
+    private static Instant atTick(long tick) {
+        return Instant.ofEpochMilli(tick * TICK_MS);
+    }
+
+    @Test
+    void expiresEachEntryOnItsTickAcrossLevels() {
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        // slot edges of every level, so entries have to cascade down one or more times
+        long[] offsets = {1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 262_143, 262_144, 262_145, SPAN - 1};
+        for (int i = 0; i < offsets.length; i++) {
+            wheel.schedule(i, atTick(base + offsets[i]));
+        }
+
+        for (int i = 0; i < offsets.length; i++) {
+            wheel.advanceTo(base + offsets[i] - 1);
+            assertThat(expired).as("before offset %d", offsets[i]).doesNotContain((long) i);
+            wheel.advanceTo(base + offsets[i]);
+            assertThat(expired).as("at offset %d", offsets[i]).contains((long) i);
+        }
+        assertThat(expired).hasSize(offsets.length);
+    }
+
+    @Test
+    void entryDueOnALevelBoundaryExpiresOnThatTick() {
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        // reach these ticks only through a cascade, which runs on the boundary tick itself
+        long[] dues = {((base >> 6) + 2) << 6, ((base >> 12) + 2) << 12, ((base >> 18) + 2) << 18};
+        for (int i = 0; i < dues.length; i++) {
+            wheel.schedule(i, atTick(dues[i]));
+        }
+
+        for (int i = 0; i < dues.length; i++) {
+            wheel.advanceTo(dues[i] - 1);
+            assertThat(expired).as("before tick %d", dues[i]).doesNotContain((long) i);
+            wheel.advanceTo(dues[i]);
+            assertThat(expired).as("at tick %d", dues[i]).contains((long) i);
+        }
+    }
+
+    @Test
+    void entryBeyondTheSpanIsHeldUntilItsTick() {
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        long due = base + SPAN + 100;
+        wheel.schedule(1, atTick(due));
+
+        wheel.advanceTo(due - 1);
+        assertThat(expired).isEmpty();
+        wheel.advanceTo(due);
+        assertThat(expired).containsExactly(1L);
+    }
+
+    @Test
+    void expiresAtMillisIsRoundedUpToTheNextTick() {
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        wheel.schedule(1, Instant.ofEpochMilli((base + 5) * TICK_MS + 1));
+
+        wheel.advanceTo(base + 5);
+        assertThat(expired).isEmpty();
+        wheel.advanceTo(base + 6);
+        assertThat(expired).containsExactly(1L);
+    }
+
+    @Test
+    void alreadyDueEntryExpiresOnTheNextTick() {
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        wheel.schedule(1, atTick(base - 10));
+
+        wheel.advanceTo(base);
+        assertThat(expired).isEmpty();
+        wheel.advanceTo(base + 1);
+        assertThat(expired).containsExactly(1L);
+    }
+
+    @Test
+    void dueEntriesAreExpiredInChunks() {
+        properties.getExpiry().setChunkSize(2);
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        for (long id = 0; id < 5; id++) {
+            wheel.schedule(id, atTick(base + 3));
+        }
+
+        wheel.advanceTo(base + 3);
+
+        assertThat(expired).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L);
+        assertThat(batchSizes).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    void failedBatchIsRetriedAfterTheRetryDelay() {
+        List<Long> attempts = new ArrayList<>();
+        when(sweepRepository.expireDue(anyList(), any()))
+                .thenAnswer(invocation -> {
+                    attempts.addAll(invocation.<List<Long>>getArgument(0));
+                    throw new IllegalStateException("database down");
+                })
+                .thenAnswer(invocation -> {
+                    attempts.addAll(invocation.<List<Long>>getArgument(0));
+                    expired.addAll(invocation.<List<Long>>getArgument(0));
+                    return List.of();
+                });
+        ReservationExpiryWheel wheel = wheel();
+        long base = wheel.currentTick();
+        wheel.schedule(1, atTick(base + 2));
+
+        wheel.advanceTo(base + 2);
+        assertThat(attempts).containsExactly(1L);
+        assertThat(expired).isEmpty();
+
+        wheel.advanceTo(base + 4);
+        assertThat(attempts).containsExactly(1L);
+        wheel.advanceTo(base + 5);
+        assertThat(attempts).containsExactly(1L, 1L);
+        assertThat(expired).containsExactly(1L);
+    }
+}
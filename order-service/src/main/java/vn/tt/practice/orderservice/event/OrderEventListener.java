@@ -3,7 +3,10 @@ package vn.tt.practice.orderservice.event;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.messaging.IdempotentConsumer;
 import vn.tt.practice.orderservice.config.RabbitMQConfig;
 import vn.tt.practice.orderservice.service.OrderSagaOrchestrator;
 
@@ -13,29 +16,39 @@ import vn.tt.practice.orderservice.service.OrderSagaOrchestrator;
 public class OrderEventListener {
 
     private final OrderSagaOrchestrator sagaOrchestrator;
+    // message ids are recorded in the orchestrator's transaction; its status checks stay as a second guard
+    private final IdempotentConsumer idempotentConsumer;
 
     @RabbitListener(queues = RabbitMQConfig.INVENTORY_RESERVED_QUEUE)
-    public void handleInventoryReserved(InventoryReservedEvent event) {
+    public void handleInventoryReserved(InventoryReservedEvent event,
+                                        @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received InventoryReservedEvent for orderId: {}", event.getOrderId());
-        sagaOrchestrator.handleInventoryReserved(event.getOrderId());
+        idempotentConsumer.process(RabbitMQConfig.INVENTORY_RESERVED_QUEUE, messageId,
+                () -> sagaOrchestrator.handleInventoryReserved(event.getOrderId()));
     }
 
     @RabbitListener(queues = RabbitMQConfig.INVENTORY_RESERVATION_FAILED_QUEUE)
-    public void handleInventoryReservationFailed(InventoryReservationFailedEvent event) {
+    public void handleInventoryReservationFailed(InventoryReservationFailedEvent event,
+                                                 @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received InventoryReservationFailedEvent for orderId: {}", event.getOrderId());
-        sagaOrchestrator.handleInventoryReservationFailed(event.getOrderId(), event.getReason());
+        idempotentConsumer.process(RabbitMQConfig.INVENTORY_RESERVATION_FAILED_QUEUE, messageId,
+                () -> sagaOrchestrator.handleInventoryReservationFailed(event.getOrderId(), event.getReason()));
     }
 
     @RabbitListener(queues = RabbitMQConfig.PAYMENT_COMPLETED_QUEUE)
-    public void handlePaymentCompleted(PaymentCompletedEvent event) {
+    public void handlePaymentCompleted(PaymentCompletedEvent event,
+                                       @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received PaymentCompletedEvent for orderId: {}", event.getOrderId());
-        sagaOrchestrator.handlePaymentCompleted(event.getOrderId());
+        idempotentConsumer.process(RabbitMQConfig.PAYMENT_COMPLETED_QUEUE, messageId,
+                () -> sagaOrchestrator.handlePaymentCompleted(event.getOrderId()));
     }
 
     @RabbitListener(queues = RabbitMQConfig.PAYMENT_FAILED_QUEUE)
-    public void handlePaymentFailed(PaymentFailedEvent event) {
+    public void handlePaymentFailed(PaymentFailedEvent event,
+                                    @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         log.info("Received PaymentFailedEvent for orderId: {}", event.getOrderId());
-        sagaOrchestrator.handlePaymentFailed(event.getOrderId(), event.getReason());
+        idempotentConsumer.process(RabbitMQConfig.PAYMENT_FAILED_QUEUE, messageId,
+                () -> sagaOrchestrator.handlePaymentFailed(event.getOrderId(), event.getReason()));
     }
 
     // Event DTOs
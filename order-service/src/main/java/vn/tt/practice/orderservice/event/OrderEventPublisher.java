@@ -2,10 +2,10 @@ package vn.tt.practice.orderservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 import vn.tt.practice.orderservice.config.RabbitMQConfig;
 import vn.tt.practice.orderservice.entity.Order;
+import vn.tt.practice.outbox.OutboxPublisher;
 
 import java.util.stream.Collectors;
 
@@ -14,7 +14,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishOrderCreated(Order order) {
         publishEvent("CREATED", order);
@@ -59,11 +59,8 @@ public class OrderEventPublisher {
                 .build();
 
         String routingKey = "order." + eventType.toLowerCase();
-        try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.ORDER_EXCHANGE, routingKey, event);
-            log.info("Published order event: {} with routing key: {}", eventType, routingKey);
-        } catch (Exception e) {
-            log.error("Failed to publish order event: {}", eventType, e);
-        }
+        // stored in the caller's transaction, sent by the outbox relay after commit
+        outboxPublisher.publish("Order", order.getId(), RabbitMQConfig.ORDER_EXCHANGE, routingKey, event);
+        log.info("Queued order event: {} with routing key: {}", eventType, routingKey);
     }
 }
@@ -0,0 +1,76 @@
+package vn.tt.practice.paymentservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment")
+@Getter
+@Setter
+public class PaymentProperties {
+
+    private Gateway gateway = new Gateway();
+
+    @Getter
+    @Setter
+    public static class Gateway {
+        // mock (fixed 500 ms, 80% success) or simulator
+        private String provider = "mock";
+        // Gateway calls in flight at once; further payments wait for a slot
+        private int maxConcurrency = 64;
+        // A call not answered within this time fails the payment
+        private long timeoutMs = 3000;
+        // PROCESSING payments older than this are failed by the sweeper, e.g. after a crash mid-call
+        private long staleAfterMs = 60000;
+        // Same for payments the gateway accepted and will settle by callback; a PSP may retry its webhook for hours
+        private long callbackStaleAfterMs = 86400000;
+        private long sweepIntervalMs = 30000;
+        private Breaker breaker = new Breaker();
+        private Simulator simulator = new Simulator();
+    }
+
+    @Getter
+    @Setter
+    public static class Breaker {
+        // Percentage of errors and timeouts in the window that opens the breaker; declines do not count
+        private float failureRateThreshold = 50;
+        // Calls slower than this count as slow; the same percentage of slow calls also opens it
+        private long slowCallMs = 2000;
+        private int slidingWindowSize = 50;
+        private int minimumCalls = 20;
+        // How long the breaker stays open before letting trial calls through
+        private long openMs = 10000;
+        private int halfOpenCalls = 5;
+    }
+
+    @Getter
+    @Setter
+    public static class Simulator {
+        // Same seed and same order ids give the same outcomes, latencies and transaction ids
+        private long seed = 42;
+        private Distribution latency = Distribution.FIXED;
+        // Fixed value, mean of NORMAL, median of LONG_TAIL
+        private long latencyMs = 200;
+        // Standard deviation of NORMAL
+        private long latencyStddevMs = 50;
+        // Log-normal sigma of LONG_TAIL; 1.0 puts p99 at about 10x the median
+        private double tailSigma = 1.0;
+        // Shares of calls that are declined, fail with a gateway error, or never answer within hangMs
+        private double declineRate = 0.1;
+        private double errorRate = 0.0;
+        private double hangRate = 0.0;
+        private long hangMs = 30000;
+        // Share of successful calls answered PROCESSING and settled by a callback after callbackDelayMs
+        private double asyncRate = 0.0;
+        private long callbackDelayMs = 1000;
+        private double callbackSuccessRate = 0.9;
+    }
+
+    public enum Distribution {
+        FIXED,
+        NORMAL,
+        LONG_TAIL
+    }
+}
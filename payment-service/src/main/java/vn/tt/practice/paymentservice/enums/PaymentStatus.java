@@ -5,5 +5,7 @@ public enum PaymentStatus {
     PROCESSING,
     COMPLETED,
     FAILED,
-    REFUNDED
+    REFUNDED,
+    // charged by the gateway after the payment had already been failed on timeout; to be refunded
+    NEEDS_RECONCILIATION
 }
@@ -18,6 +18,10 @@ public class PaymentEventListener {
 
     private final PaymentService paymentService;
 
+    /**
+     * Returns once the payment is stored as PROCESSING; the gateway call and settlement run asynchronously,
+     * so this listener thread and its connection are free again after a few milliseconds.
+     */
     @RabbitListener(queues = "order.reserved")
     public void handleOrderReserved(OrderReservedEvent event) {
         log.info("Received OrderReservedEvent for orderId: {}, amount: {}", event.getOrderId(), event.getTotalAmount());
@@ -27,7 +31,14 @@ public class PaymentEventListener {
                 .paymentMethod(event.getPaymentMethod() != null ? event.getPaymentMethod() : PaymentMethod.BANK_TRANSFER)
                 .build();
         try {
-            paymentService.processPayment(request);
+            paymentService.processPaymentAsync(request).whenComplete((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    log.warn("Payment failed for order {}: {}", event.getOrderId(), cause.getMessage());
+                } else {
+                    log.info("Payment {} for order {}", response.getStatus(), event.getOrderId());
+                }
+            });
         } catch (PaymentFailedException e) {
             log.warn("Payment failed for order {}: {}", event.getOrderId(), e.getMessage());
         }
@@ -2,8 +2,8 @@ package vn.tt.practice.paymentservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.outbox.OutboxPublisher;
 import vn.tt.practice.paymentservice.config.RabbitMQConfig;
 import vn.tt.practice.paymentservice.entity.Payment;
 
@@ -12,7 +12,7 @@ import vn.tt.practice.paymentservice.entity.Payment;
 @RequiredArgsConstructor
 public class PaymentEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishPaymentCompleted(Payment payment) {
         publishEvent("COMPLETED", payment, null);
@@ -37,11 +37,8 @@ public class PaymentEventPublisher {
                 .build();
 
         String routingKey = "payment." + eventType.toLowerCase();
-        try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.PAYMENT_EXCHANGE, routingKey, event);
-            log.info("Published payment event: {} for orderId: {}", eventType, payment.getOrderId());
-        } catch (Exception e) {
-            log.error("Failed to publish payment event: {}", eventType, e);
-        }
+        // keyed by order so COMPLETED/FAILED/REFUNDED of one order keep their order
+        outboxPublisher.publish("Order", payment.getOrderId(), RabbitMQConfig.PAYMENT_EXCHANGE, routingKey, event);
+        log.info("Queued payment event: {} for orderId: {}", eventType, payment.getOrderId());
     }
 }
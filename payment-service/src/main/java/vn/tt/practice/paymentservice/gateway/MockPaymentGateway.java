@@ -1,7 +1,8 @@
-package vn.tt.practice.paymentservice.service;
+package vn.tt.practice.paymentservice.gateway;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Service;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
 import vn.tt.practice.paymentservice.dto.PaymentRequest;
 import vn.tt.practice.paymentservice.dto.PaymentResponse;
 import vn.tt.practice.paymentservice.enums.PaymentStatus;
@@ -10,14 +11,16 @@ import vn.tt.practice.paymentservice.exception.PaymentFailedException;
 import java.util.UUID;
 
 @Slf4j
-@Service
-public class PaymentGatewayService {
+@Component
+@ConditionalOnProperty(prefix = "payment.gateway", name = "provider", havingValue = "mock", matchIfMissing = true)
+public class MockPaymentGateway implements PaymentGateway {
 
     /**
      * Mock payment processing
      * Simulates 80% success rate for testing purposes
      */
-    public PaymentResponse processPayment(PaymentRequest request) {
+    @Override
+    public PaymentResponse charge(PaymentRequest request) {
         log.info("Processing payment for orderId: {}, amount: {}, method: {}", 
                 request.getOrderId(), request.getAmount(), request.getPaymentMethod());
 
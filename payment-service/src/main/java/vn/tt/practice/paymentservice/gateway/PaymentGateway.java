@@ -0,0 +1,20 @@
+package vn.tt.practice.paymentservice.gateway;
+
+import vn.tt.practice.paymentservice.dto.PaymentRequest;
+import vn.tt.practice.paymentservice.dto.PaymentResponse;
+
+/**
+ * A payment service provider. Exactly one implementation is active, chosen by {@code payment.gateway.provider}.
+ * Calls block; {@link vn.tt.practice.paymentservice.service.PaymentGatewayClient} runs them on virtual threads
+ * and enforces concurrency, timeout and the circuit breaker.
+ */
+public interface PaymentGateway {
+
+    /**
+     * @return {@code COMPLETED} when the charge succeeded, or {@code PROCESSING} with a transaction id when the
+     * outcome arrives later through {@code POST /payments/callback}
+     * @throws vn.tt.practice.paymentservice.exception.PaymentFailedException when the payment is declined;
+     * any other exception counts as a gateway error
+     */
+    PaymentResponse charge(PaymentRequest request);
+}
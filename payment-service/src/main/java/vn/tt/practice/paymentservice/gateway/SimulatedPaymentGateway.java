@@ -0,0 +1,142 @@
+package vn.tt.practice.paymentservice.gateway;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.paymentservice.config.PaymentProperties;
+import vn.tt.practice.paymentservice.dto.PaymentCallbackDTO;
+import vn.tt.practice.paymentservice.dto.PaymentRequest;
+import vn.tt.practice.paymentservice.dto.PaymentResponse;
+import vn.tt.practice.paymentservice.enums.PaymentStatus;
+import vn.tt.practice.paymentservice.exception.PaymentFailedException;
+import vn.tt.practice.paymentservice.exception.PaymentNotFoundException;
+import vn.tt.practice.paymentservice.service.PaymentService;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a PSP, for repeatable saga throughput and tail-latency runs.
+ * <p>
+ * Every draw for a payment comes from a generator seeded with {@code seed} and the order id, in a fixed order,
+ * so a run is reproducible however calls interleave across threads. Asynchronous outcomes are delivered to
+ * {@link PaymentService#handleCallback} after {@code callbackDelayMs}, like a PSP webhook.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "payment.gateway", name = "provider", havingValue = "simulator")
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private static final int CALLBACK_ATTEMPTS = 5;
+    private static final long CALLBACK_RETRY_MS = 200;
+
+    private final PaymentProperties.Simulator cfg;
+    // lazy: PaymentService depends on the gateway through PaymentGatewayClient
+    private final ObjectProvider<PaymentService> paymentService;
+    private final ScheduledExecutorService callbacks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "payment-simulator-callbacks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SimulatedPaymentGateway(PaymentProperties properties, ObjectProvider<PaymentService> paymentService) {
+        this.cfg = properties.getGateway().getSimulator();
+        this.paymentService = paymentService;
+        log.info("Payment gateway simulator: seed={}, latency={} {}ms, decline={}, error={}, hang={}, async={}",
+                cfg.getSeed(), cfg.getLatency(), cfg.getLatencyMs(), cfg.getDeclineRate(), cfg.getErrorRate(),
+                cfg.getHangRate(), cfg.getAsyncRate());
+    }
+
+    @Override
+    public PaymentResponse charge(PaymentRequest request) {
+        SplittableRandom random = new SplittableRandom(cfg.getSeed() * 0x9E3779B97F4A7C15L + request.getOrderId());
+        // draw everything up front so one outcome never shifts the draws of another
+        long latencyMs = sampleLatency(random);
+        double outcome = random.nextDouble();
+        boolean async = random.nextDouble() < cfg.getAsyncRate();
+        boolean callbackSuccess = random.nextDouble() < cfg.getCallbackSuccessRate();
+        String transactionId = new UUID(random.nextLong(), random.nextLong()).toString();
+
+        if (outcome < cfg.getHangRate()) {
+            sleep(cfg.getHangMs());
+            throw new IllegalStateException("Simulated gateway did not answer within " + cfg.getHangMs() + " ms");
+        }
+        sleep(latencyMs);
+        outcome -= cfg.getHangRate();
+        if (outcome < cfg.getErrorRate()) {
+            throw new IllegalStateException("Simulated gateway error");
+        }
+        outcome -= cfg.getErrorRate();
+        if (outcome < cfg.getDeclineRate()) {
+            throw new PaymentFailedException("Simulated decline: insufficient funds");
+        }
+
+        if (async) {
+            scheduleCallback(transactionId, callbackSuccess, cfg.getCallbackDelayMs(), 1);
+            return PaymentResponse.builder()
+                    .transactionId(transactionId)
+                    .status(PaymentStatus.PROCESSING)
+                    .message("Simulated payment pending gateway callback")
+                    .build();
+        }
+        return PaymentResponse.builder()
+                .transactionId(transactionId)
+                .status(PaymentStatus.COMPLETED)
+                .message("Simulated payment successful")
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbacks.shutdownNow();
+    }
+
+    private long sampleLatency(SplittableRandom random) {
+        double gaussian = random.nextGaussian();
+        double millis = switch (cfg.getLatency()) {
+            case FIXED -> cfg.getLatencyMs();
+            case NORMAL -> cfg.getLatencyMs() + cfg.getLatencyStddevMs() * gaussian;
+            case LONG_TAIL -> cfg.getLatencyMs() * Math.exp(cfg.getTailSigma() * gaussian);
+        };
+        return Math.max(0, Math.round(millis));
+    }
+
+    // the callback can beat the transaction that stores the transaction id, so a miss is retried briefly
+    private void scheduleCallback(String transactionId, boolean success, long delayMs, int attempt) {
+        callbacks.schedule(() -> Thread.ofVirtual().start(() -> {
+            PaymentCallbackDTO callback = PaymentCallbackDTO.builder()
+                    .transactionId(transactionId)
+                    .status(success ? "SUCCESS" : "FAILED")
+                    .message(success ? "Simulated callback: payment captured" : "Simulated callback: payment rejected")
+                    .signature("simulator")
+                    .build();
+            try {
+                paymentService.getObject().handleCallback(callback);
+            } catch (PaymentNotFoundException e) {
+                if (attempt < CALLBACK_ATTEMPTS) {
+                    scheduleCallback(transactionId, success, CALLBACK_RETRY_MS, attempt + 1);
+                } else {
+                    log.warn("Simulated callback dropped, no payment with transactionId {}", transactionId);
+                }
+            } catch (Exception e) {
+                log.error("Simulated callback failed for transactionId {}", transactionId, e);
+            }
+        }), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
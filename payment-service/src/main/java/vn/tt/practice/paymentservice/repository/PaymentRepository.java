@@ -1,11 +1,28 @@
 package vn.tt.practice.paymentservice.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.tt.practice.paymentservice.entity.Payment;
+import vn.tt.practice.paymentservice.enums.PaymentStatus;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByOrderId(Long orderId);
     Optional<Payment> findByTransactionId(String transactionId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> lockById(@Param("id") Long id);
+
+    List<Payment> findTop100ByStatusAndTransactionIdIsNullAndCreatedAtBeforeOrderByIdAsc(PaymentStatus status,
+                                                                                         Instant createdBefore);
+
+    List<Payment> findTop100ByStatusAndTransactionIdIsNotNullAndCreatedAtBeforeOrderByIdAsc(PaymentStatus status,
+                                                                                            Instant createdBefore);
 }
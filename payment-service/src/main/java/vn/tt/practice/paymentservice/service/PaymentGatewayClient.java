@@ -0,0 +1,159 @@
+package vn.tt.practice.paymentservice.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.paymentservice.config.PaymentProperties;
+import vn.tt.practice.paymentservice.dto.PaymentRequest;
+import vn.tt.practice.paymentservice.dto.PaymentResponse;
+import vn.tt.practice.paymentservice.exception.PaymentFailedException;
+import vn.tt.practice.paymentservice.gateway.PaymentGateway;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Calls the payment gateway off the caller's thread: at most maxConcurrency calls in flight, each on its own
+ * virtual thread, bounded by timeoutMs and guarded by a circuit breaker. Declines ({@link PaymentFailedException}
+ * from the gateway) do not count against the breaker; errors and timeouts do.
+ * <p>
+ * A caller that finds every slot taken waits for one, so listeners slow down instead of piling up calls.
+ */
+@Slf4j
+@Component
+public class PaymentGatewayClient {
+
+    private final PaymentGateway gateway;
+    private final long timeoutMs;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry meterRegistry;
+
+    public PaymentGatewayClient(PaymentGateway gateway, PaymentProperties properties,
+                                MeterRegistry meterRegistry) {
+        PaymentProperties.Gateway cfg = properties.getGateway();
+        PaymentProperties.Breaker breaker = cfg.getBreaker();
+        this.gateway = gateway;
+        this.timeoutMs = cfg.getTimeoutMs();
+        this.maxConcurrency = Math.max(1, cfg.getMaxConcurrency());
+        this.permits = new Semaphore(maxConcurrency);
+        this.circuitBreaker = CircuitBreaker.of("payment-gateway", CircuitBreakerConfig.custom()
+                .failureRateThreshold(breaker.getFailureRateThreshold())
+                .slowCallRateThreshold(breaker.getFailureRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(breaker.getSlowCallMs()))
+                .slidingWindowSize(breaker.getSlidingWindowSize())
+                .minimumNumberOfCalls(breaker.getMinimumCalls())
+                .waitDurationInOpenState(Duration.ofMillis(breaker.getOpenMs()))
+                .permittedNumberOfCallsInHalfOpenState(breaker.getHalfOpenCalls())
+                .ignoreExceptions(PaymentFailedException.class)
+                .build());
+        this.circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Payment gateway circuit breaker: {}", event.getStateTransition()));
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("payment.gateway.in_flight", permits, p -> maxConcurrency - p.availablePermits())
+                .description("Gateway calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, cb -> cb.getState().getOrder())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param lateSuccess called on a virtual thread if the gateway answers successfully after the call timed out
+     * @return completes on a virtual thread with the gateway's response, or exceptionally with
+     * {@link PaymentFailedException} for declines, errors, timeouts and an open breaker
+     */
+    public CompletableFuture<PaymentResponse> charge(PaymentRequest request, Consumer<PaymentResponse> lateSuccess) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            record("rejected", 0);
+            return CompletableFuture.failedFuture(
+                    new PaymentFailedException("Payment gateway unavailable: circuit breaker is open"));
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(new PaymentFailedException("Interrupted waiting for the payment gateway"));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<PaymentResponse> call;
+        try {
+            // the slot is held until the call really returns, even when the caller already timed out
+            call = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return gateway.charge(request);
+                } finally {
+                    permits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(new PaymentFailedException("Payment gateway client is shut down"));
+        }
+
+        // async: orTimeout completes on the JDK's single delayer thread, which must not run the callers' stages
+        return call.copy().orTimeout(timeoutMs, TimeUnit.MILLISECONDS).handleAsync((response, error) -> {
+            long elapsed = System.nanoTime() - start;
+            if (error == null) {
+                circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                record("success", elapsed);
+                return response;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, cause);
+            if (cause instanceof PaymentFailedException declined) {
+                record("declined", elapsed);
+                throw declined;
+            }
+            if (cause instanceof TimeoutException) {
+                record("timeout", elapsed);
+                // the call keeps running; a success after this point has charged the customer all the same
+                call.thenAcceptAsync(late -> {
+                    record("late_success", System.nanoTime() - start);
+                    log.warn("Payment gateway answered orderId: {} after the {} ms timeout", request.getOrderId(), timeoutMs);
+                    lateSuccess.accept(late);
+                }, executor).exceptionally(e -> {
+                    log.error("Late gateway success for orderId: {} could not be recorded", request.getOrderId(), e);
+                    return null;
+                });
+                throw new PaymentFailedException("Payment gateway timeout after " + timeoutMs + " ms");
+            }
+            record("error", elapsed);
+            log.error("Payment gateway call failed for orderId: {}", request.getOrderId(), cause);
+            throw new PaymentFailedException("Payment gateway error: " + cause.getMessage());
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void record(String outcome, long elapsedNanos) {
+        Timer.builder("payment.gateway.latency")
+                .description("Payment gateway call duration by outcome")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
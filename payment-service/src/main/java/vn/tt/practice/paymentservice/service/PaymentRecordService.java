@@ -0,0 +1,133 @@
+package vn.tt.practice.paymentservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.paymentservice.dto.PaymentRequest;
+import vn.tt.practice.paymentservice.dto.PaymentResponse;
+import vn.tt.practice.paymentservice.entity.Payment;
+import vn.tt.practice.paymentservice.enums.PaymentStatus;
+import vn.tt.practice.paymentservice.event.PaymentEventPublisher;
+import vn.tt.practice.paymentservice.exception.PaymentFailedException;
+import vn.tt.practice.paymentservice.repository.PaymentRepository;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The two short transactions around a gateway call: the payment row is written as PROCESSING before the call
+ * and settled after it, so no database connection is held while the gateway works.
+ * Settling only touches payments still PROCESSING; whichever of gateway result, callback or sweeper
+ * comes first wins.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentRecordService {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentEventPublisher eventPublisher;
+
+    @Transactional
+    public Payment begin(PaymentRequest request) {
+        paymentRepository.findByOrderId(request.getOrderId())
+                .ifPresent(payment -> {
+                    throw new PaymentFailedException("Payment already exists for order: " + request.getOrderId());
+                });
+
+        Payment payment = Payment.builder()
+                .orderId(request.getOrderId())
+                .amount(request.getAmount())
+                .paymentMethod(request.getPaymentMethod())
+                .status(PaymentStatus.PROCESSING)
+                .build();
+        return paymentRepository.save(Objects.requireNonNull(payment));
+    }
+
+    /**
+     * Stores the gateway's answer: COMPLETED settles the payment, PROCESSING only records the transaction id.
+     */
+    @Transactional
+    public PaymentResponse complete(Long paymentId, PaymentResponse gatewayResponse) {
+        Payment payment = lock(paymentId);
+        if (payment.getStatus() != PaymentStatus.PROCESSING) {
+            log.warn("Ignoring gateway success for payment {} already {}", paymentId, payment.getStatus());
+            return toResponse(payment, "Payment already " + payment.getStatus());
+        }
+
+        payment.setTransactionId(gatewayResponse.getTransactionId());
+        if (gatewayResponse.getStatus() == PaymentStatus.PROCESSING) {
+            // accepted but not settled: the gateway's callback completes or fails it
+            payment.setGatewayResponse(gatewayResponse.getMessage());
+            payment = paymentRepository.save(payment);
+            return toResponse(payment, "Payment pending gateway callback");
+        }
+
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setPaidAt(Instant.now());
+        payment.setGatewayResponse(gatewayResponse.getMessage() != null
+                ? gatewayResponse.getMessage() : "Payment processed successfully");
+        payment = paymentRepository.save(payment);
+        eventPublisher.publishPaymentCompleted(payment);
+        return toResponse(payment, "Payment completed successfully");
+    }
+
+    @Transactional
+    public PaymentResponse fail(Long paymentId, String reason) {
+        Payment payment = lock(paymentId);
+        if (payment.getStatus() != PaymentStatus.PROCESSING) {
+            log.warn("Ignoring gateway failure for payment {} already {}", paymentId, payment.getStatus());
+            return toResponse(payment, "Payment already " + payment.getStatus());
+        }
+
+        payment.setStatus(PaymentStatus.FAILED);
+        payment.setErrorMessage(reason);
+        payment = paymentRepository.save(payment);
+        eventPublisher.publishPaymentFailed(payment, reason);
+        return toResponse(payment, reason);
+    }
+
+    /**
+     * Stores a gateway success that may arrive after the payment was settled: a late answer to a timed-out call,
+     * or a callback. A payment still PROCESSING completes as usual; one the timeout or the sweeper already failed
+     * was charged anyway, so it keeps the gateway's transaction id and is flagged NEEDS_RECONCILIATION for a
+     * refund instead of being dropped.
+     */
+    @Transactional
+    public PaymentResponse lateSuccess(Long paymentId, PaymentResponse gatewayResponse) {
+        Payment payment = lock(paymentId);
+        if (payment.getStatus() == PaymentStatus.PROCESSING) {
+            return complete(paymentId, gatewayResponse);
+        }
+        if (payment.getStatus() != PaymentStatus.FAILED) {
+            log.warn("Ignoring late gateway success for payment {} already {}", paymentId, payment.getStatus());
+            return toResponse(payment, "Payment already " + payment.getStatus());
+        }
+
+        log.error("Payment {} of orderId {} was already failed but charged by the gateway (transactionId {}), "
+                + "flagged for reconciliation", paymentId, payment.getOrderId(), gatewayResponse.getTransactionId());
+        payment.setStatus(PaymentStatus.NEEDS_RECONCILIATION);
+        payment.setTransactionId(gatewayResponse.getTransactionId());
+        payment.setPaidAt(Instant.now());
+        payment.setGatewayResponse(gatewayResponse.getMessage() != null
+                ? gatewayResponse.getMessage() : "Charged after the payment was failed");
+        payment = paymentRepository.save(payment);
+        return toResponse(payment, "Payment charged after it was failed, needs reconciliation");
+    }
+
+    private Payment lock(Long paymentId) {
+        return paymentRepository.lockById(paymentId)
+                .orElseThrow(() -> new IllegalStateException("Payment disappeared while processing: " + paymentId));
+    }
+
+    private PaymentResponse toResponse(Payment payment, String message) {
+        return PaymentResponse.builder()
+                .id(payment.getId())
+                .orderId(payment.getOrderId())
+                .transactionId(payment.getTransactionId())
+                .status(payment.getStatus())
+                .message(message)
+                .build();
+    }
+}
@@ -7,8 +7,11 @@ import vn.tt.practice.paymentservice.dto.PaymentDTO;
 import vn.tt.practice.paymentservice.dto.PaymentRequest;
 import vn.tt.practice.paymentservice.dto.PaymentResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface PaymentService {
     PaymentResponse processPayment(PaymentRequest request);
+    CompletableFuture<PaymentResponse> processPaymentAsync(PaymentRequest request);
     PaymentDTO getPaymentById(Long id);
     PaymentDTO getPaymentByOrderId(Long orderId);
     PaymentResponse handleCallback(PaymentCallbackDTO callback);
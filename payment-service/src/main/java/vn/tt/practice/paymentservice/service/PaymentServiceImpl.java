@@ -14,8 +14,9 @@ import vn.tt.practice.paymentservice.exception.PaymentFailedException;
 import vn.tt.practice.paymentservice.exception.PaymentNotFoundException;
 import vn.tt.practice.paymentservice.repository.PaymentRepository;
 
-import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -23,62 +24,44 @@ import java.util.Objects;
 public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository paymentRepository;
-    private final PaymentGatewayService gatewayService;
+    private final PaymentRecordService recordService;
+    private final PaymentGatewayClient gatewayClient;
     private final PaymentEventPublisher eventPublisher;
 
+    /**
+     * Blocking variant for the REST endpoint; the request thread waits, but no database connection does.
+     */
     @Override
-    @Transactional
     public PaymentResponse processPayment(PaymentRequest request) {
-        // Check if payment already exists for this order
-        paymentRepository.findByOrderId(request.getOrderId())
-                .ifPresent(payment -> {
-                    throw new PaymentFailedException("Payment already exists for order: " + request.getOrderId());
-                });
-
-        // Create payment record
-        Payment payment = Payment.builder()
-                .orderId(request.getOrderId())
-                .amount(request.getAmount())
-                .paymentMethod(request.getPaymentMethod())
-                .status(PaymentStatus.PROCESSING)
-                .build();
-        payment = paymentRepository.save(Objects.requireNonNull(payment));
-
         try {
-            // Process payment through gateway
-            PaymentResponse gatewayResponse = gatewayService.processPayment(request);
-
-            // Update payment with transaction details
-            payment.setTransactionId(gatewayResponse.getTransactionId());
-            payment.setStatus(PaymentStatus.COMPLETED);
-            payment.setPaidAt(Instant.now());
-            payment.setGatewayResponse("Payment processed successfully");
-            payment = paymentRepository.save(payment);
-
-            // Publish PaymentCompletedEvent
-            eventPublisher.publishPaymentCompleted(payment);
-
-            return PaymentResponse.builder()
-                    .id(payment.getId())
-                    .orderId(payment.getOrderId())
-                    .transactionId(payment.getTransactionId())
-                    .status(payment.getStatus())
-                    .message("Payment completed successfully")
-                    .build();
-
-        } catch (PaymentFailedException e) {
-            // Update payment with failure details
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setErrorMessage(e.getMessage());
-            payment = paymentRepository.save(payment);
-
-            // Publish PaymentFailedEvent
-            eventPublisher.publishPaymentFailed(payment, e.getMessage());
-
+            return processPaymentAsync(request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
             throw e;
         }
     }
 
+    /**
+     * Writes the payment as PROCESSING, calls the gateway without a transaction and settles the payment in a
+     * second transaction. Completes exceptionally with {@link PaymentFailedException} once the failure is stored.
+     */
+    @Override
+    public CompletableFuture<PaymentResponse> processPaymentAsync(PaymentRequest request) {
+        Payment payment = recordService.begin(request);
+
+        return gatewayClient.charge(request, late -> recordService.lateSuccess(payment.getId(), late))
+                .handle((gatewayResponse, error) -> {
+                    if (error == null) {
+                        return recordService.complete(payment.getId(), gatewayResponse);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    recordService.fail(payment.getId(), cause.getMessage());
+                    throw cause instanceof PaymentFailedException failed ? failed : new PaymentFailedException(cause.getMessage());
+                });
+    }
+
     @Override
     @Transactional(readOnly = true)
     public PaymentDTO getPaymentById(Long id) {
@@ -95,6 +78,9 @@ public class PaymentServiceImpl implements PaymentService {
         return toDTO(payment);
     }
 
+    /**
+     * Settles a payment the gateway left PROCESSING; callbacks for settled payments are answered but change nothing.
+     */
     @Override
     @Transactional
     public PaymentResponse handleCallback(PaymentCallbackDTO callback) {
@@ -102,25 +88,14 @@ public class PaymentServiceImpl implements PaymentService {
                 .orElseThrow(() -> new PaymentNotFoundException("Payment not found with transactionId: " + callback.getTransactionId()));
 
         if ("SUCCESS".equalsIgnoreCase(callback.getStatus())) {
-            payment.setStatus(PaymentStatus.COMPLETED);
-            payment.setPaidAt(Instant.now());
-            payment.setGatewayResponse(callback.getMessage());
-            payment = paymentRepository.save(payment);
-            eventPublisher.publishPaymentCompleted(payment);
-        } else {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setErrorMessage(callback.getMessage());
-            payment = paymentRepository.save(payment);
-            eventPublisher.publishPaymentFailed(payment, callback.getMessage());
+            // the sweeper may have failed the payment while the callback was on its way
+            return recordService.lateSuccess(payment.getId(), PaymentResponse.builder()
+                    .transactionId(callback.getTransactionId())
+                    .status(PaymentStatus.COMPLETED)
+                    .message(callback.getMessage())
+                    .build());
         }
-
-        return PaymentResponse.builder()
-                .id(payment.getId())
-                .orderId(payment.getOrderId())
-                .transactionId(payment.getTransactionId())
-                .status(payment.getStatus())
-                .message(callback.getMessage())
-                .build();
+        return recordService.fail(payment.getId(), callback.getMessage());
     }
 
     @Override
@@ -129,8 +104,8 @@ public class PaymentServiceImpl implements PaymentService {
         Payment payment = paymentRepository.findById(Objects.requireNonNull(paymentId, "paymentId must not be null"))
                 .orElseThrow(() -> new PaymentNotFoundException("Payment not found with id: " + paymentId));
 
-        if (payment.getStatus() != PaymentStatus.COMPLETED) {
-            throw new PaymentFailedException("Only completed payments can be refunded");
+        if (payment.getStatus() != PaymentStatus.COMPLETED && payment.getStatus() != PaymentStatus.NEEDS_RECONCILIATION) {
+            throw new PaymentFailedException("Only completed or reconciliation payments can be refunded");
         }
 
         payment.setStatus(PaymentStatus.REFUNDED);
@@ -0,0 +1,49 @@
+package vn.tt.practice.paymentservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.paymentservice.config.PaymentProperties;
+import vn.tt.practice.paymentservice.entity.Payment;
+import vn.tt.practice.paymentservice.enums.PaymentStatus;
+import vn.tt.practice.paymentservice.repository.PaymentRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Fails payments left PROCESSING by a process that died during the gateway call, so the saga can release stock.
+ * Payments the gateway accepted and settles by callback (they have a transaction id) get a much longer cutoff;
+ * a SUCCESS callback arriving after that still flags them NEEDS_RECONCILIATION.
+ * A gateway with a status API would be asked for the real outcome here instead.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StalePaymentSweeper {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentRecordService recordService;
+    private final PaymentProperties properties;
+
+    @Scheduled(fixedDelayString = "${payment.gateway.sweep-interval-ms:30000}")
+    public void sweep() {
+        Instant now = Instant.now();
+        failAll(paymentRepository.findTop100ByStatusAndTransactionIdIsNullAndCreatedAtBeforeOrderByIdAsc(
+                PaymentStatus.PROCESSING, now.minusMillis(properties.getGateway().getStaleAfterMs())));
+        failAll(paymentRepository.findTop100ByStatusAndTransactionIdIsNotNullAndCreatedAtBeforeOrderByIdAsc(
+                PaymentStatus.PROCESSING, now.minusMillis(properties.getGateway().getCallbackStaleAfterMs())));
+    }
+
+    private void failAll(List<Payment> stale) {
+        for (Payment payment : stale) {
+            try {
+                recordService.fail(payment.getId(), "Payment gateway result unknown");
+                log.warn("Failed stale PROCESSING payment {} for order {}", payment.getId(), payment.getOrderId());
+            } catch (Exception e) {
+                log.error("Could not fail stale payment {}", payment.getId(), e);
+            }
+        }
+    }
+}
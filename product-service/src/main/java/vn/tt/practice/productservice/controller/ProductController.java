@@ -11,6 +11,7 @@ import vn.tt.practice.productservice.dto.*;
 import vn.tt.practice.productservice.service.ProductService;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -24,6 +25,7 @@ public class ProductController {
     private static final String HEADER_USER_ROLES = "X-User-Roles";
     private static final String ROLE_ADMIN = "ROLE_ADMIN";
     private static final String ROLE_SUPER_ADMIN = "ROLE_SUPER_ADMIN";
+    private static final int MAX_BATCH_IDS = 200;
 
     private final ProductService productService;
 
@@ -61,6 +63,15 @@ public class ProductController {
 //        );
 //    }
 
+    @GetMapping("/batch")
+    @Operation(summary = "Get products by IDs (one round-trip, max 200 ids)")
+    public ResponseEntity<List<ProductDTO>> getProductsByIds(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
@@ -2,8 +2,8 @@ package vn.tt.practice.productservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.outbox.OutboxPublisher;
 import vn.tt.practice.productservice.config.RabbitMQConfig;
 
 @Slf4j
@@ -11,7 +11,7 @@ import vn.tt.practice.productservice.config.RabbitMQConfig;
 @RequiredArgsConstructor
 public class ProductEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishProductCreated(Long productId, String productName, Long categoryId) {
         publishEvent("CREATED", productId, productName, categoryId);
@@ -28,11 +28,7 @@ public class ProductEventPublisher {
     private void publishEvent(String eventType, Long productId, String productName, Long categoryId) {
         ProductEvent event = new ProductEvent(eventType, productId, productName, categoryId);
         String routingKey = "product." + eventType.toLowerCase();
-        try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.PRODUCT_EXCHANGE, routingKey, event);
-            log.info("Published product event: {} with routing key: {}", event, routingKey);
-        } catch (Exception e) {
-            log.error("Failed to publish product event: {}", event, e);
-        }
+        outboxPublisher.publish("Product", productId, RabbitMQConfig.PRODUCT_EXCHANGE, routingKey, event);
+        log.info("Queued product event: {} with routing key: {}", event, routingKey);
     }
 }
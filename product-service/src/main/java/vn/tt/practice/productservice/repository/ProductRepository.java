@@ -10,6 +10,8 @@ import org.springframework.stereotype.Repository;
 import vn.tt.practice.productservice.entity.Product;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -45,4 +47,22 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
         where p.id = :id
     """)
     Optional<Product> findByIdWithImages(@Param("id") Long id);
-}
\ No newline at end of file
+
+    @Query("""
+        select distinct p
+        from Product p
+        left join fetch p.specs
+        left join fetch p.category
+        where p.id in :ids
+    """)
+    List<Product> findAllByIdInWithDetails(@Param("ids") Collection<Long> ids);
+
+    // second query instead of a double bag fetch; Hibernate attaches images to the already loaded products
+    @Query("""
+        select distinct p
+        from Product p
+        left join fetch p.images
+        where p.id in :ids
+    """)
+    List<Product> findAllByIdInWithImages(@Param("ids") Collection<Long> ids);
+}
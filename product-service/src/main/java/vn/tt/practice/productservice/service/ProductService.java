@@ -26,8 +26,13 @@ import vn.tt.practice.productservice.repository.ProductRepository;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -116,6 +121,31 @@ public class ProductService  {
         return productMapper.toDto(product);
     }
 
+    /**
+     * Batch lookup with two IN queries (details, then images) for the whole id set.
+     * Result follows the order of {@code ids}; unknown ids are skipped.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductDTO> getProductsByIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (distinctIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Product> products = productRepository.findAllByIdInWithDetails(distinctIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        productRepository.findAllByIdInWithImages(distinctIds);
+
+        return distinctIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toDto)
+                .toList();
+    }
+
     @Transactional(readOnly = true)
     public PageResponse<ProductDTO> searchProducts(ProductSearchRequest request) {
         Sort sort = Sort.by(
@@ -0,0 +1,116 @@
+package vn.tt.practice.recommendationservice.client;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.recommendationservice.config.RecommendationProperties;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Coalescing front for {@link ProductServiceClient#getProductsByIds}.
+ * Ids requested by concurrent callers inside a short window are merged (and de-duplicated)
+ * into a single /products/batch call.
+ */
+@Slf4j
+@Component
+public class ProductBatchLoader {
+
+    private final ProductServiceClient productServiceClient;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "product-batch-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private Map<Long, CompletableFuture<ProductServiceClient.ProductDTO>> pending = new HashMap<>();
+    private boolean flushScheduled;
+
+    public ProductBatchLoader(ProductServiceClient productServiceClient, RecommendationProperties properties) {
+        RecommendationProperties.ProductBatch cfg = properties.getProductBatch();
+        this.productServiceClient = productServiceClient;
+        this.windowMs = cfg.getWindowMs();
+        this.maxBatchSize = cfg.getMaxBatchSize();
+        this.timeoutMs = cfg.getTimeoutMs();
+    }
+
+    /**
+     * Products by id; ids product-service does not know (or that failed to load) are absent from the map.
+     */
+    public Map<Long, ProductServiceClient.ProductDTO> getProducts(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, CompletableFuture<ProductServiceClient.ProductDTO>> futures = new HashMap<>();
+        synchronized (lock) {
+            for (Long id : ids) {
+                if (id != null) {
+                    futures.put(id, pending.computeIfAbsent(id, key -> new CompletableFuture<>()));
+                }
+            }
+            if (pending.size() >= maxBatchSize) {
+                executor.execute(this::flush);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                    .get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.error("Batch product lookup failed for {} ids", futures.size(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<Long, ProductServiceClient.ProductDTO> result = new HashMap<>();
+        futures.forEach((id, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally() && future.join() != null) {
+                result.put(id, future.join());
+            }
+        });
+        return result;
+    }
+
+    private void flush() {
+        Map<Long, CompletableFuture<ProductServiceClient.ProductDTO>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+            flushScheduled = false;
+        }
+
+        List<Long> ids = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < ids.size(); from += maxBatchSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + maxBatchSize, ids.size()));
+            try {
+                for (ProductServiceClient.ProductDTO product : productServiceClient.getProductsByIds(chunk)) {
+                    CompletableFuture<ProductServiceClient.ProductDTO> future = batch.get(product.id());
+                    if (future != null) {
+                        future.complete(product);
+                    }
+                }
+                chunk.forEach(id -> batch.get(id).complete(null));
+            } catch (Exception e) {
+                chunk.forEach(id -> batch.get(id).completeExceptionally(e));
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @FeignClient(name = "product-service")
 public interface ProductServiceClient {
@@ -11,6 +12,9 @@ public interface ProductServiceClient {
     @GetMapping("/products/{id}")
     ProductDTO getProductById(@PathVariable Long id);
 
+    @GetMapping("/products/batch")
+    java.util.List<ProductDTO> getProductsByIds(@RequestParam("ids") java.util.Collection<Long> ids);
+
     @GetMapping("/products")
     java.util.List<ProductDTO> getAllProducts();
 
@@ -1,8 +1,9 @@
 package vn.tt.practice.recommendationservice.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,8 +11,28 @@ import org.springframework.context.annotation.Configuration;
 @EnableCaching
 public class CacheConfig {
 
+    public static final String RECOMMENDATIONS_CACHE = "recommendations";
+    public static final String USER_PREFERENCES_CACHE = "userPreferences";
+
+    /**
+     * Caffeine (W-TinyLFU) caches, size-bounded with per-cache TTL.
+     * recordStats() lets actuator publish hit/miss/eviction metrics under cache.* .
+     */
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("recommendations", "userPreferences");
+    public CacheManager cacheManager(RecommendationProperties properties) {
+        RecommendationProperties.Cache cfg = properties.getCache();
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(RECOMMENDATIONS_CACHE, build(cfg.getRecommendations()));
+        cacheManager.registerCustomCache(USER_PREFERENCES_CACHE, build(cfg.getUserPreferences()));
+        return cacheManager;
+    }
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> build(RecommendationProperties.CacheSpec spec) {
+        return Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getTtl())
+                .recordStats()
+                .build();
     }
 }
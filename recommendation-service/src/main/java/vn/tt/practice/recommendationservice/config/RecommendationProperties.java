@@ -0,0 +1,94 @@
+package vn.tt.practice.recommendationservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "recommendation")
+@Getter
+@Setter
+public class RecommendationProperties {
+
+    private Personalized personalized = new Personalized();
+    private Trending trending = new Trending();
+    private Related related = new Related();
+    private ProductBatch productBatch = new ProductBatch();
+    private Cache cache = new Cache();
+    private Ingest ingest = new Ingest();
+
+    @Getter
+    @Setter
+    public static class Personalized {
+        // Number of PERSONALIZED rows kept per user
+        private int limit = 20;
+        // A user is recomputed at most once per debounce window, however many events arrive
+        private long debounceMs = 10_000;
+        // Max users recomputed per scheduler tick
+        private int batchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Trending {
+        // Sliding window length, one bucket per hour
+        private int windowHours = 168;
+        // Weight of an event halves every halfLifeHours
+        private double halfLifeHours = 24;
+        // Size of the incrementally maintained leaderboard
+        private int topK = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Related {
+        // Neighbours kept per product (extra slots absorb incremental updates)
+        private int neighbours = 20;
+        // Only each user's top-N preferences take part in co-occurrence, so heavy users stay bounded
+        private int basketSize = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class ProductBatch {
+        // Lookups arriving within this window share one /products/batch call
+        private long windowMs = 5;
+        // Must not exceed product-service's batch limit (200)
+        private int maxBatchSize = 100;
+        private long timeoutMs = 2_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Ingest {
+        // Distinct (user, product) pairs held before producers are made to flush inline
+        private int maxEntries = 50_000;
+        // Rows per multi-row upsert
+        private int batchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private CacheSpec recommendations = new CacheSpec(10_000, Duration.ofMinutes(10));
+        private CacheSpec userPreferences = new CacheSpec(10_000, Duration.ofMinutes(1));
+    }
+
+    @Getter
+    @Setter
+    public static class CacheSpec {
+        private long maximumSize;
+        private Duration ttl;
+
+        public CacheSpec() {
+        }
+
+        public CacheSpec(long maximumSize, Duration ttl) {
+            this.maximumSize = maximumSize;
+            this.ttl = ttl;
+        }
+    }
+}
@@ -58,6 +58,13 @@ public class RecommendationController {
         );
     }
 
+    @GetMapping("/trending")
+    @Operation(summary = "Get trending products")
+    public ResponseEntity<List<RecommendationDTO>> getTrendingRecommendations(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(recommendationService.getTrendingRecommendations(limit));
+    }
+
     @GetMapping("/similar/{productId}")
     @Operation(summary = "Get similar products")
     public ResponseEntity<List<RecommendationDTO>> getSimilarProducts(
@@ -4,8 +4,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.messaging.MessagingAutoConfiguration;
 import vn.tt.practice.recommendationservice.config.RabbitMQConfig;
+import vn.tt.practice.recommendationservice.enums.InteractionType;
 import vn.tt.practice.recommendationservice.service.RecommendationService;
+import vn.tt.practice.recommendationservice.service.TrendingTracker;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -13,6 +21,7 @@ import vn.tt.practice.recommendationservice.service.RecommendationService;
 public class RecommendationEventListener {
 
     private final RecommendationService recommendationService;
+    private final TrendingTracker trendingTracker;
 
     @RabbitListener(queues = RabbitMQConfig.ORDER_COMPLETED_QUEUE)
     public void handleOrderCompleted(OrderCompletedEvent event) {
@@ -21,6 +30,8 @@ public class RecommendationEventListener {
         
         if (event.getItems() != null) {
             for (OrderCompletedEvent.OrderItemEvent item : event.getItems()) {
+                trendingTracker.record(item.getProductId(), InteractionType.PURCHASE,
+                        item.getQuantity() != null ? item.getQuantity() : 1);
                 try {
                     recommendationService.recordPurchase(
                             event.getUserId(),
@@ -37,21 +48,34 @@ public class RecommendationEventListener {
         }
     }
 
-    @RabbitListener(queues = RabbitMQConfig.PRODUCT_VIEWED_QUEUE)
-    public void handleProductViewed(ProductViewedEvent event) {
-        log.info("Received ProductViewedEvent for productId: {}, userId: {}", 
-                event.getProductId(), event.getUserId());
-        
-        try {
-            recommendationService.recordView(
-                    event.getUserId(),
-                    event.getProductId(),
-                    event.getCategoryId()
-            );
-        } catch (Exception e) {
-            log.error("Failed to record view for userId: {}, productId: {}", 
-                    event.getUserId(), event.getProductId(), e);
+    /**
+     * Views arrive in batches; repeats of the same (user, product) are folded into one buffer update
+     * and repeats of a product into one trending update.
+     */
+    @RabbitListener(queues = RabbitMQConfig.PRODUCT_VIEWED_QUEUE,
+            containerFactory = MessagingAutoConfiguration.BATCH_CONTAINER_FACTORY)
+    public void handleProductViewed(List<ProductViewedEvent> events) {
+        log.debug("Received {} ProductViewedEvents", events.size());
+
+        Map<Long, Integer> viewsByProduct = new HashMap<>();
+        Map<ProductViewedEvent, Integer> viewsByUserProduct = new LinkedHashMap<>();
+        for (ProductViewedEvent event : events) {
+            if (event.getProductId() == null) {
+                continue;
+            }
+            viewsByProduct.merge(event.getProductId(), 1, Integer::sum);
+            viewsByUserProduct.merge(event, 1, Integer::sum);
         }
+
+        viewsByProduct.forEach((productId, views) -> trendingTracker.record(productId, InteractionType.VIEW, views));
+        viewsByUserProduct.forEach((event, views) -> {
+            try {
+                recommendationService.recordView(event.getUserId(), event.getProductId(), event.getCategoryId(), views);
+            } catch (Exception e) {
+                log.error("Failed to record view for userId: {}, productId: {}",
+                        event.getUserId(), event.getProductId(), e);
+            }
+        });
     }
 
     @lombok.Data
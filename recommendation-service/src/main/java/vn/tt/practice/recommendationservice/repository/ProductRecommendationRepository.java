@@ -1,10 +1,13 @@
 package vn.tt.practice.recommendationservice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.tt.practice.recommendationservice.entity.ProductRecommendation;
 import vn.tt.practice.recommendationservice.enums.RecommendationType;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRecommendationRepository extends JpaRepository<ProductRecommendation, Long> {
@@ -19,4 +22,76 @@ public interface ProductRecommendationRepository extends JpaRepository<ProductRe
     List<ProductRecommendation> findByProductIdAndType(Long productId, RecommendationType type);
     
     void deleteByUserIdAndRecommendationType(Long userId, RecommendationType type);
+
+    @Modifying
+    @Query("DELETE FROM ProductRecommendation pr WHERE pr.userId IS NULL AND pr.recommendationType = :type")
+    int deleteGlobalByType(@Param("type") RecommendationType type);
+
+    @Modifying
+    @Query("DELETE FROM ProductRecommendation pr WHERE pr.recommendationType = :type")
+    int bulkDeleteByType(@Param("type") RecommendationType type);
+
+    @Modifying
+    @Query("DELETE FROM ProductRecommendation pr WHERE pr.recommendationType = :type AND pr.userId IN :userIds")
+    int deleteByTypeAndUserIdIn(@Param("type") RecommendationType type,
+                                @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Aggregate purchase totals per product and insert the top {@code limit} as global POPULAR rows
+     * in a single statement. Score is normalised to 0..100 against the best seller so it fits DECIMAL(5,2).
+     */
+    @Modifying
+    @Query(value = """
+            WITH top_products AS (
+                SELECT product_id, SUM(purchase_count) AS total
+                FROM user_preferences
+                GROUP BY product_id
+                HAVING SUM(purchase_count) > 0
+                ORDER BY total DESC, product_id
+                LIMIT :limit
+            )
+            INSERT INTO product_recommendations
+                (user_id, product_id, recommendation_type, score, rank_position, created_at, updated_at)
+            SELECT NULL,
+                   product_id,
+                   'POPULAR',
+                   ROUND(total * 100.0 / MAX(total) OVER (), 2),
+                   ROW_NUMBER() OVER (ORDER BY total DESC, product_id),
+                   NOW(),
+                   NOW()
+            FROM top_products
+            """, nativeQuery = true)
+    int insertPopularFromPreferences(@Param("limit") int limit);
+
+    /**
+     * Insert the top {@code limit} preferences of each given user as PERSONALIZED rows in one statement.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_recommendations
+                (user_id, product_id, recommendation_type, score, rank_position, created_at, updated_at)
+            SELECT user_id, product_id, 'PERSONALIZED', preference_score, rn, NOW(), NOW()
+            FROM (
+                SELECT user_id, product_id, preference_score,
+                       ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY preference_score DESC, product_id) AS rn
+                FROM user_preferences
+                WHERE user_id IN (:userIds)
+            ) ranked
+            WHERE rn <= :limit
+            """, nativeQuery = true)
+    int insertPersonalizedForUsers(@Param("userIds") Collection<Long> userIds, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_recommendations
+                (user_id, product_id, recommendation_type, score, rank_position, created_at, updated_at)
+            SELECT user_id, product_id, 'PERSONALIZED', preference_score, rn, NOW(), NOW()
+            FROM (
+                SELECT user_id, product_id, preference_score,
+                       ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY preference_score DESC, product_id) AS rn
+                FROM user_preferences
+            ) ranked
+            WHERE rn <= :limit
+            """, nativeQuery = true)
+    int insertPersonalizedForAllUsers(@Param("limit") int limit);
 }
@@ -0,0 +1,148 @@
+package vn.tt.practice.recommendationservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Set-based writes to user_preferences that Spring Data cannot express:
+ * multi-row upserts that apply counter deltas instead of read-modify-write.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserPreferenceBatchRepository {
+
+    private static final BigDecimal MAX_SCORE = new BigDecimal("999.99");
+
+    // rows locked in one global order, so two flushes (e.g. on two replicas) cannot deadlock each other
+    private static final Comparator<PreferenceDelta> BY_KEY =
+            Comparator.comparingLong(PreferenceDelta::userId).thenComparingLong(PreferenceDelta::productId);
+
+    private static final String UPSERT_PREFIX = """
+            INSERT INTO user_preferences
+                (user_id, product_id, category_id, view_count, purchase_count,
+                 last_viewed_at, last_purchased_at, preference_score, created_at, updated_at)
+            VALUES
+            """;
+
+    // same formula as UserPreference#calculatePreferenceScore, capped to DECIMAL(5,2)
+    private static final String UPSERT_SUFFIX = """
+            ON CONFLICT (user_id, product_id) DO UPDATE SET
+                category_id       = COALESCE(EXCLUDED.category_id, user_preferences.category_id),
+                view_count        = user_preferences.view_count + EXCLUDED.view_count,
+                purchase_count    = user_preferences.purchase_count + EXCLUDED.purchase_count,
+                last_viewed_at    = GREATEST(user_preferences.last_viewed_at, EXCLUDED.last_viewed_at),
+                last_purchased_at = GREATEST(user_preferences.last_purchased_at, EXCLUDED.last_purchased_at),
+                preference_score  = LEAST(ROUND((user_preferences.view_count + EXCLUDED.view_count) * 0.1
+                                        + user_preferences.purchase_count + EXCLUDED.purchase_count, 2), 999.99),
+                updated_at        = NOW()
+            RETURNING user_id, product_id, (xmax = 0) AS inserted
+            """;
+
+    private static final String DECREMENT_VIEWS = """
+            UPDATE user_preferences
+            SET view_count       = GREATEST(view_count + ?, 0),
+                last_viewed_at   = GREATEST(last_viewed_at, ?),
+                preference_score = LEAST(ROUND(GREATEST(view_count + ?, 0) * 0.1 + purchase_count, 2), 999.99),
+                updated_at       = NOW()
+            WHERE user_id = ? AND product_id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Applies a flush batch in its own transaction: either every delta is stored or none is, so the caller can
+     * re-queue a failed batch without counting any of it twice. Never joins the transaction of the thread that
+     * happens to flush, which may be a request that recorded an interaction.
+     *
+     * @return the pairs that did not exist before
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<PreferenceKey> applyDeltas(List<PreferenceDelta> increments, List<PreferenceDelta> decrements) {
+        List<PreferenceKey> created = upsertIncrements(increments);
+        decrementViews(decrements);
+        return created;
+    }
+
+    /**
+     * One multi-row INSERT ... ON CONFLICT DO UPDATE for the whole batch.
+     * Deltas must be non-negative and (userId, productId) unique within the batch.
+     *
+     * @return the pairs that did not exist before
+     */
+    public List<PreferenceKey> upsertIncrements(List<PreferenceDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+
+        List<PreferenceDelta> sorted = deltas.stream().sorted(BY_KEY).toList();
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+        List<Object> args = new ArrayList<>(sorted.size() * 8);
+        for (int i = 0; i < sorted.size(); i++) {
+            PreferenceDelta delta = sorted.get(i);
+            sql.append(i == 0 ? "" : ",\n").append("(?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())");
+            args.add(delta.userId());
+            args.add(delta.productId());
+            args.add(delta.categoryId());
+            args.add(delta.views());
+            args.add(delta.purchases());
+            args.add(toTimestamp(delta.lastViewedAt()));
+            args.add(toTimestamp(delta.lastPurchasedAt()));
+            args.add(initialScore(delta.views(), delta.purchases()));
+        }
+        sql.append('\n').append(UPSERT_SUFFIX);
+
+        List<PreferenceKey> inserted = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            if (rs.getBoolean("inserted")) {
+                inserted.add(new PreferenceKey(rs.getLong("user_id"), rs.getLong("product_id")));
+            }
+        }, args.toArray());
+        return inserted;
+    }
+
+    /**
+     * Net-negative view deltas (remove from cart) only touch existing rows, never create one.
+     */
+    public void decrementViews(List<PreferenceDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DECREMENT_VIEWS, deltas.stream()
+                .sorted(BY_KEY)
+                .map(delta -> new Object[]{
+                        delta.views(),
+                        toTimestamp(delta.lastViewedAt()),
+                        delta.views(),
+                        delta.userId(),
+                        delta.productId()
+                })
+                .toList());
+    }
+
+    private static BigDecimal initialScore(int views, int purchases) {
+        BigDecimal score = BigDecimal.valueOf(views).multiply(BigDecimal.valueOf(0.1d))
+                .add(BigDecimal.valueOf(purchases))
+                .setScale(2, RoundingMode.HALF_UP);
+        return score.min(MAX_SCORE);
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+
+    public record PreferenceKey(long userId, long productId) {}
+
+    public record PreferenceDelta(long userId, long productId, Long categoryId, int views, int purchases,
+                                  Instant lastViewedAt, Instant lastPurchasedAt) {}
+}
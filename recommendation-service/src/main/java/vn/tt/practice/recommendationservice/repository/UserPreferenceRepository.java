@@ -1,12 +1,18 @@
 package vn.tt.practice.recommendationservice.repository;
 
 import feign.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import vn.tt.practice.recommendationservice.entity.UserPreference;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserPreferenceRepository extends JpaRepository<UserPreference, Long> {
     Optional<UserPreference> findByUserIdAndProductId(Long userId, Long productId);
@@ -17,8 +23,77 @@ public interface UserPreferenceRepository extends JpaRepository<UserPreference,
     @Query("SELECT up FROM UserPreference up WHERE up.userId = :userId ORDER BY up.preferenceScore DESC")
     List<UserPreference> findTopByUserIdOrderByPreferenceScoreDesc(Long userId);
 
-    @Query("select distinct up.userId from UserPreference up where up.productId = :productId")
-    List<Long> findUserIdsByProductId(@Param("productId") Long productId);
+    @Query("select up.productId from UserPreference up where up.userId = :userId order by up.preferenceScore desc")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId, Pageable pageable);
 
-    List<UserPreference> findByUserIdInOrderByUserIdAscPreferenceScoreDesc(List<Long> userIds);
+    /**
+     * Per-product, per-hour activity since {@code since}, keyed by the hour of the row's last activity.
+     * A row only has lifetime counts, so they are scaled by the share of the row's lifetime
+     * (created_at to last activity) that falls after {@code since}, assuming an even rate.
+     */
+    @Query(value = """
+            WITH active AS (
+                SELECT product_id, view_count, purchase_count,
+                       GREATEST(last_viewed_at, last_purchased_at) AS last_at,
+                       COALESCE(created_at, GREATEST(last_viewed_at, last_purchased_at)) AS first_at
+                FROM user_preferences
+                WHERE GREATEST(last_viewed_at, last_purchased_at) >= :since
+            ), scaled AS (
+                SELECT product_id, last_at, view_count, purchase_count,
+                       CASE WHEN first_at >= CAST(:since AS TIMESTAMP) OR last_at - first_at <= INTERVAL '1 hour' THEN 1.0
+                            ELSE EXTRACT(EPOCH FROM last_at - CAST(:since AS TIMESTAMP)) / EXTRACT(EPOCH FROM last_at - first_at)
+                       END AS share
+                FROM active
+            )
+            SELECT product_id AS productId,
+                   CAST(FLOOR(EXTRACT(EPOCH FROM last_at) / 3600) AS BIGINT) AS hour,
+                   CAST(SUM(ROUND(view_count * share)) AS BIGINT) AS views,
+                   CAST(SUM(ROUND(purchase_count * share)) AS BIGINT) AS purchases
+            FROM scaled
+            GROUP BY 1, 2
+            """, nativeQuery = true)
+    List<HourlyActivity> findHourlyActivitySince(@Param("since") Instant since);
+
+    interface HourlyActivity {
+        Long getProductId();
+        Long getHour();
+        Long getViews();
+        Long getPurchases();
+    }
+
+    /**
+     * Item-item co-occurrence over each user's top {@code basketSize} products,
+     * keeping the {@code neighbours} strongest pairs per product.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = """
+            WITH basket AS (
+                SELECT user_id, product_id
+                FROM (
+                    SELECT user_id, product_id,
+                           ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY preference_score DESC, product_id) AS rn
+                    FROM user_preferences
+                ) ranked
+                WHERE rn <= :basketSize
+            ),
+            pairs AS (
+                SELECT a.product_id, b.product_id AS related_product_id, COUNT(*) AS together
+                FROM basket a
+                JOIN basket b ON a.user_id = b.user_id AND a.product_id <> b.product_id
+                GROUP BY a.product_id, b.product_id
+            )
+            SELECT product_id AS productId, related_product_id AS relatedProductId, together
+            FROM (
+                SELECT p.*, ROW_NUMBER() OVER (PARTITION BY product_id ORDER BY together DESC, related_product_id) AS rn
+                FROM pairs p
+            ) top_pairs
+            WHERE rn <= :neighbours
+            """, nativeQuery = true)
+    Stream<CoOccurrence> streamCoOccurrences(@Param("basketSize") int basketSize, @Param("neighbours") int neighbours);
+
+    interface CoOccurrence {
+        Long getProductId();
+        Long getRelatedProductId();
+        Long getTogether();
+    }
 }
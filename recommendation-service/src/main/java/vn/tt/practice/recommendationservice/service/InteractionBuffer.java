@@ -0,0 +1,262 @@
+package vn.tt.practice.recommendationservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.recommendationservice.config.RecommendationProperties;
+import vn.tt.practice.recommendationservice.repository.UserPreferenceBatchRepository;
+import vn.tt.practice.recommendationservice.repository.UserPreferenceBatchRepository.PreferenceDelta;
+import vn.tt.practice.recommendationservice.repository.UserPreferenceBatchRepository.PreferenceKey;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for user interactions.
+ * View/cart/purchase deltas are merged in memory per (userId, productId) and flushed periodically
+ * as multi-row upserts, so hot rows are written once per flush instead of once per event.
+ * When the buffer is full the recording thread flushes one batch inline (backpressure); it is drained on shutdown.
+ * <p>
+ * A batch that fails on a transient database error goes back into the buffer. Any other failure is retried one
+ * row at a time and rows that still fail are dropped, so a single bad delta cannot block every later flush.
+ */
+@Slf4j
+@Component
+public class InteractionBuffer {
+
+    private final UserPreferenceBatchRepository batchRepository;
+    private final PersonalizedRefreshScheduler personalizedRefreshScheduler;
+    private final RecommendationCache recommendationCache;
+    private final RelatedProductIndex relatedProductIndex;
+    private final int maxEntries;
+    private final int batchSize;
+
+    private final Map<PreferenceKey, Delta> buffer = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public InteractionBuffer(UserPreferenceBatchRepository batchRepository,
+                             PersonalizedRefreshScheduler personalizedRefreshScheduler,
+                             RecommendationCache recommendationCache,
+                             RelatedProductIndex relatedProductIndex,
+                             RecommendationProperties properties) {
+        RecommendationProperties.Ingest cfg = properties.getIngest();
+        this.batchRepository = batchRepository;
+        this.personalizedRefreshScheduler = personalizedRefreshScheduler;
+        this.recommendationCache = recommendationCache;
+        this.relatedProductIndex = relatedProductIndex;
+        this.maxEntries = cfg.getMaxEntries();
+        this.batchSize = cfg.getBatchSize();
+    }
+
+    public void recordView(Long userId, Long productId, Long categoryId, int views) {
+        record(userId, productId, categoryId, views, 0);
+    }
+
+    public void recordPurchase(Long userId, Long productId, Long categoryId) {
+        record(userId, productId, categoryId, 0, 1);
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    private void record(Long userId, Long productId, Long categoryId, int views, int purchases) {
+        if (userId == null || productId == null) {
+            throw new IllegalArgumentException("userId and productId are required, got userId=" + userId
+                    + ", productId=" + productId);
+        }
+        PreferenceKey key = new PreferenceKey(userId, productId);
+        if (buffer.size() >= maxEntries && !buffer.containsKey(key)) {
+            // backpressure: the producer pays for one batch instead of growing the buffer
+            flushBatch();
+        }
+        Instant now = Instant.now();
+        buffer.compute(key, (k, delta) -> {
+            Delta merged = delta != null ? delta : new Delta();
+            merged.apply(categoryId, views, purchases, now);
+            return merged;
+        });
+    }
+
+    /**
+     * Writes what was buffered when the flush started, batch by batch; interactions recorded meanwhile wait for
+     * the next run. Stops at the first batch that had to be re-queued.
+     */
+    @Scheduled(fixedDelayString = "${recommendation.ingest.flush-interval-ms:1000}")
+    public void flush() {
+        int pending = buffer.size();
+        int written = 0;
+        while (written < pending) {
+            int flushed = flushBatch();
+            if (flushed <= 0) {
+                return;
+            }
+            written += flushed;
+        }
+    }
+
+    @PreDestroy
+    void drain() {
+        log.info("Flushing {} buffered interactions before shutdown", buffer.size());
+        int flushed;
+        do {
+            flushed = flushBatch();
+        } while (flushed > 0);
+    }
+
+    /**
+     * Removes at most batchSize keys from the buffer and writes them.
+     *
+     * @return keys taken from the buffer, 0 if it was empty, -1 if the batch went back into the buffer
+     */
+    private int flushBatch() {
+        flushLock.lock();
+        try {
+            List<PreferenceDelta> increments = new ArrayList<>();
+            List<PreferenceDelta> decrements = new ArrayList<>();
+            int taken = 0;
+            for (PreferenceKey key : buffer.keySet()) {
+                if (taken >= batchSize) {
+                    break;
+                }
+                Delta delta = buffer.remove(key);
+                if (delta == null) {
+                    continue;
+                }
+                taken++;
+                PreferenceDelta row = delta.toRow(key);
+                if (row.views() >= 0) {
+                    increments.add(row);
+                } else {
+                    // split so the upsert only ever sees non-negative deltas
+                    decrements.add(new PreferenceDelta(row.userId(), row.productId(), row.categoryId(),
+                            row.views(), 0, row.lastViewedAt(), null));
+                    if (row.purchases() > 0) {
+                        increments.add(new PreferenceDelta(row.userId(), row.productId(), row.categoryId(),
+                                0, row.purchases(), null, row.lastPurchasedAt()));
+                    }
+                }
+            }
+            if (taken == 0) {
+                return 0;
+            }
+            return write(increments, decrements) ? taken : -1;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // false when the batch was re-queued; never throws into the recording thread
+    private boolean write(List<PreferenceDelta> increments, List<PreferenceDelta> decrements) {
+        List<PreferenceKey> created;
+        try {
+            // own transaction: on failure nothing of the batch is stored, so all of it can go back
+            created = batchRepository.applyDeltas(increments, decrements);
+        } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+            log.error("Failed to flush {} interaction deltas, re-queueing", increments.size() + decrements.size(), e);
+            increments.forEach(this::requeue);
+            decrements.forEach(this::requeue);
+            return false;
+        } catch (Exception e) {
+            log.warn("Interaction batch of {} deltas rejected, writing rows one by one: {}",
+                    increments.size() + decrements.size(), e.getMessage());
+            created = writeEach(increments, decrements);
+        }
+        afterWrite(increments, decrements, created);
+        return true;
+    }
+
+    // isolates the rows the database refuses; those are dropped, the rest is stored
+    private List<PreferenceKey> writeEach(List<PreferenceDelta> increments, List<PreferenceDelta> decrements) {
+        List<PreferenceKey> created = new ArrayList<>();
+        for (PreferenceDelta row : increments) {
+            try {
+                created.addAll(batchRepository.applyDeltas(List.of(row), List.of()));
+            } catch (Exception e) {
+                log.error("Dropping interaction delta {}", row, e);
+            }
+        }
+        for (PreferenceDelta row : decrements) {
+            try {
+                batchRepository.applyDeltas(List.of(), List.of(row));
+            } catch (Exception e) {
+                log.error("Dropping interaction delta {}", row, e);
+            }
+        }
+        return created;
+    }
+
+    private void afterWrite(List<PreferenceDelta> increments, List<PreferenceDelta> decrements,
+                            List<PreferenceKey> created) {
+        Set<Long> users = new HashSet<>();
+        increments.forEach(row -> users.add(row.userId()));
+        decrements.forEach(row -> users.add(row.userId()));
+        for (Long userId : users) {
+            personalizedRefreshScheduler.markDirty(userId);
+            recommendationCache.evictUserPreferences(userId);
+        }
+        for (PreferenceKey key : created) {
+            relatedProductIndex.onNewInteraction(key.userId(), key.productId());
+        }
+        log.debug("Flushed {} interaction deltas ({} new preferences)", increments.size() + decrements.size(), created.size());
+    }
+
+    private void requeue(PreferenceDelta row) {
+        buffer.compute(new PreferenceKey(row.userId(), row.productId()), (k, delta) -> {
+            Delta merged = delta != null ? delta : new Delta();
+            merged.merge(row);
+            return merged;
+        });
+    }
+
+    /**
+     * Accumulated change for one (user, product); only mutated inside ConcurrentHashMap#compute.
+     */
+    private static final class Delta {
+        private Long categoryId;
+        private int views;
+        private int purchases;
+        private Instant lastViewedAt;
+        private Instant lastPurchasedAt;
+
+        void apply(Long categoryId, int views, int purchases, Instant at) {
+            if (categoryId != null) {
+                this.categoryId = categoryId;
+            }
+            this.views += views;
+            this.purchases += purchases;
+            if (views != 0) {
+                lastViewedAt = at;
+            }
+            if (purchases != 0) {
+                lastPurchasedAt = at;
+            }
+        }
+
+        void merge(PreferenceDelta row) {
+            if (categoryId == null) {
+                categoryId = row.categoryId();
+            }
+            views += row.views();
+            purchases += row.purchases();
+            lastViewedAt = latest(lastViewedAt, row.lastViewedAt());
+            lastPurchasedAt = latest(lastPurchasedAt, row.lastPurchasedAt());
+        }
+
+        PreferenceDelta toRow(PreferenceKey key) {
+            return new PreferenceDelta(key.userId(), key.productId(), categoryId, views, purchases,
+                    lastViewedAt, lastPurchasedAt);
+        }
+
+        private static Instant latest(Instant a, Instant b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            return a.isAfter(b) ? a : b;
+        }
+    }
+}
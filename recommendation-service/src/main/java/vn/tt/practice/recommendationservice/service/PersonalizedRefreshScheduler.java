@@ -0,0 +1,107 @@
+package vn.tt.practice.recommendationservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.recommendationservice.config.RecommendationProperties;
+import vn.tt.practice.recommendationservice.enums.RecommendationType;
+import vn.tt.practice.recommendationservice.repository.ProductRecommendationRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debounced PERSONALIZED recompute.
+ * Events only mark a user dirty (O(1)); a background tick rebuilds the rows of users
+ * whose debounce window has elapsed, in batches, with set-based SQL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PersonalizedRefreshScheduler {
+
+    private final ProductRecommendationRepository recommendationRepository;
+    private final RecommendationProperties properties;
+    private final RecommendationCache recommendationCache;
+
+    // userId -> time (ms) the user was first marked since its last recompute
+    private final Map<Long, Long> dirtyUsers = new ConcurrentHashMap<>();
+
+    public void markDirty(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        dirtyUsers.putIfAbsent(userId, System.currentTimeMillis());
+    }
+
+    public int pendingCount() {
+        return dirtyUsers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.personalized.flush-interval-ms:2000}")
+    @Transactional
+    public void flushDirtyUsers() {
+        if (dirtyUsers.isEmpty()) {
+            return;
+        }
+
+        RecommendationProperties.Personalized cfg = properties.getPersonalized();
+        long readyBefore = System.currentTimeMillis() - cfg.getDebounceMs();
+
+        List<Long> batch = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : dirtyUsers.entrySet()) {
+            if (batch.size() >= cfg.getBatchSize()) {
+                break;
+            }
+            if (entry.getValue() <= readyBefore && dirtyUsers.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getKey());
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            refreshUsers(batch);
+            log.info("Recomputed PERSONALIZED recommendations for {} users ({} still pending)",
+                    batch.size(), dirtyUsers.size());
+        } catch (Exception e) {
+            // put them back so the next tick retries
+            long now = System.currentTimeMillis();
+            batch.forEach(userId -> dirtyUsers.putIfAbsent(userId, now));
+            log.error("Failed to recompute PERSONALIZED recommendations for {} users", batch.size(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuild PERSONALIZED rows for the given users right away (bypasses the debounce window).
+     */
+    @Transactional
+    public void refreshUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        recommendationRepository.deleteByTypeAndUserIdIn(RecommendationType.PERSONALIZED, userIds);
+        recommendationRepository.insertPersonalizedForUsers(userIds, properties.getPersonalized().getLimit());
+        recommendationCache.evictUsers(userIds, RecommendationType.PERSONALIZED);
+    }
+
+    /**
+     * Full rebuild for every user, used by the admin refresh endpoint.
+     */
+    @Transactional
+    public void refreshAll() {
+        dirtyUsers.clear();
+        int deleted = recommendationRepository.bulkDeleteByType(RecommendationType.PERSONALIZED);
+        int inserted = recommendationRepository.insertPersonalizedForAllUsers(properties.getPersonalized().getLimit());
+        recommendationCache.evictType(RecommendationType.PERSONALIZED);
+        log.info("Refreshed PERSONALIZED recommendations: removed={}, inserted={}", deleted, inserted);
+    }
+}
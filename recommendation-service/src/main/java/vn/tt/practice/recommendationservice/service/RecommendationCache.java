@@ -0,0 +1,89 @@
+package vn.tt.practice.recommendationservice.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.tt.practice.recommendationservice.config.CacheConfig;
+import vn.tt.practice.recommendationservice.dto.RecommendationDTO;
+import vn.tt.practice.recommendationservice.dto.UserPreferenceDTO;
+import vn.tt.practice.recommendationservice.enums.RecommendationType;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Typed access to the recommendation caches.
+ * Lists are cached whole per (user, type) so any smaller limit is a slice of the same entry;
+ * evictions run after commit so a concurrent reader cannot re-cache the old rows.
+ */
+@Component
+public class RecommendationCache {
+
+    private final Cache recommendations;
+    private final Cache userPreferences;
+
+    public RecommendationCache(CacheManager cacheManager) {
+        this.recommendations = cacheManager.getCache(CacheConfig.RECOMMENDATIONS_CACHE);
+        this.userPreferences = cacheManager.getCache(CacheConfig.USER_PREFERENCES_CACHE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<RecommendationDTO> getRecommendations(Long userId, RecommendationType type) {
+        return recommendations.get(key(userId, type), List.class);
+    }
+
+    public void putRecommendations(Long userId, RecommendationType type, List<RecommendationDTO> list) {
+        recommendations.put(key(userId, type), List.copyOf(list));
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<UserPreferenceDTO> getUserPreferences(Long userId) {
+        return userPreferences.get(userId, List.class);
+    }
+
+    public void putUserPreferences(Long userId, List<UserPreferenceDTO> list) {
+        userPreferences.put(userId, List.copyOf(list));
+    }
+
+    public void evictUserPreferences(Long userId) {
+        afterCommit(() -> userPreferences.evict(userId));
+    }
+
+    public void evictUsers(Collection<Long> userIds, RecommendationType type) {
+        List<String> keys = userIds.stream().map(userId -> key(userId, type)).toList();
+        afterCommit(() -> keys.forEach(recommendations::evict));
+    }
+
+    /**
+     * Drop every cached list of the given type, global and per-user.
+     */
+    public void evictType(RecommendationType type) {
+        String suffix = "_" + type.name();
+        afterCommit(() -> {
+            if (recommendations.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+                nativeCache.asMap().keySet().removeIf(key -> key.toString().endsWith(suffix));
+            } else {
+                recommendations.clear();
+            }
+        });
+    }
+
+    private static String key(Long userId, RecommendationType type) {
+        return userId + "_" + type.name();
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
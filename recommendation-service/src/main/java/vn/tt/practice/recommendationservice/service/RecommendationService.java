@@ -2,9 +2,10 @@ package vn.tt.practice.recommendationservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.recommendationservice.client.ProductBatchLoader;
 import vn.tt.practice.recommendationservice.client.ProductServiceClient;
 import vn.tt.practice.recommendationservice.dto.RecommendationDTO;
 import vn.tt.practice.recommendationservice.dto.UserPreferenceDTO;
@@ -16,7 +17,7 @@ import vn.tt.practice.recommendationservice.repository.ProductRecommendationRepo
 import vn.tt.practice.recommendationservice.repository.UserPreferenceRepository;
 
 import java.math.BigDecimal;
-import java.time.Instant;
+import java.math.RoundingMode;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,15 +27,46 @@ import java.util.stream.Collectors;
 @Transactional
 public class RecommendationService {
 
+    private static final int POPULAR_LIMIT = 50;
+    private static final int TRENDING_LIMIT = 50;
+
     private final UserPreferenceRepository userPreferenceRepository;
     private final ProductRecommendationRepository recommendationRepository;
-    private final ProductServiceClient productServiceClient;
-
+    private final ProductBatchLoader productBatchLoader;
+    private final PersonalizedRefreshScheduler personalizedRefreshScheduler;
+    private final TrendingTracker trendingTracker;
+    private final RelatedProductIndex relatedProductIndex;
+    private final RecommendationCache recommendationCache;
+    private final InteractionBuffer interactionBuffer;
+
+    /**
+     * The whole stored list is cached per (user, type); {@code limit} only slices it.
+     * A list missing products that could not be loaded is served but not cached, so a product-service hiccup
+     * does not pin a short list for the whole cache TTL.
+     */
     @Transactional
-    @Cacheable(value = "recommendations", key = "#userId + '_' + #type + '_' + #limit")
     public List<RecommendationDTO> getRecommendations(Long userId, RecommendationType type, int limit) {
         log.info("Getting {} recommendations for userId: {}, type: {}", limit, userId, type);
 
+        if (type == RecommendationType.TRENDING) {
+            return getTrendingRecommendations(limit);
+        }
+
+        List<RecommendationDTO> cached = recommendationCache.getRecommendations(userId, type);
+        if (cached == null) {
+            List<ProductRecommendation> stored = loadRecommendations(userId, type);
+            cached = toRecommendationDTOs(stored);
+            if (cached.size() == stored.size()) {
+                recommendationCache.putRecommendations(userId, type, cached);
+            } else {
+                log.warn("Not caching {} recommendations for userId: {}, {} of {} products unavailable",
+                        type, userId, stored.size() - cached.size(), stored.size());
+            }
+        }
+        return cached.subList(0, Math.min(limit, cached.size()));
+    }
+
+    private List<ProductRecommendation> loadRecommendations(Long userId, RecommendationType type) {
         List<ProductRecommendation> recommendations;
         if (userId != null) {
             recommendations = recommendationRepository
@@ -45,8 +77,12 @@ public class RecommendationService {
         }
 
         if (recommendations.isEmpty()) {
-            // Generate recommendations on the fly
-            refreshRecommendations(type);
+            // Generate recommendations on the fly (only this user's rows for PERSONALIZED)
+            if (userId != null && type == RecommendationType.PERSONALIZED) {
+                personalizedRefreshScheduler.refreshUsers(List.of(userId));
+            } else {
+                refreshRecommendations(type);
+            }
             if (userId != null) {
                 recommendations = recommendationRepository
                         .findByUserIdAndRecommendationTypeOrderByRankPositionAsc(userId, type);
@@ -56,81 +92,52 @@ public class RecommendationService {
             }
         }
 
-        return recommendations.stream()
-                .limit(limit)
-                .map(this::toRecommendationDTO)
-                .collect(Collectors.toList());
+        return recommendations;
     }
 
-    @Transactional(readOnly = true)
-    public List<RecommendationDTO> getRelatedProducts(Long productId, int limit) {
-        List<Long> userIds = userPreferenceRepository.findUserIdsByProductId(productId);
-        if (userIds.isEmpty()) return List.of();
-
-        List<UserPreference> allPrefs =
-                userPreferenceRepository.findByUserIdInOrderByUserIdAscPreferenceScoreDesc(userIds);
-
-        Set<Long> relatedProductIds = new LinkedHashSet<>(); // giữ thứ tự add
-        Long currentUser = null;
-        int takenForUser = 0;
+    /**
+     * Served straight from {@link TrendingTracker}; no table is read.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<RecommendationDTO> getTrendingRecommendations(int limit) {
+        return toRecommendationDTOs(toTrendingRecommendations(trendingTracker.top(limit)));
+    }
 
-        for (UserPreference p : allPrefs) {
-            if (!Objects.equals(currentUser, p.getUserId())) {
-                currentUser = p.getUserId();
-                takenForUser = 0;
-            }
-            if (takenForUser >= 5) continue;
-            if (p.getProductId().equals(productId)) continue;
+    /**
+     * Single lookup in the precomputed {@link RelatedProductIndex}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<RecommendationDTO> getRelatedProducts(Long productId, int limit) {
+        List<RelatedProductIndex.RelatedProduct> related = relatedProductIndex.neighboursOf(productId, limit);
 
-            relatedProductIds.add(p.getProductId());
-            takenForUser++;
-            if (relatedProductIds.size() >= limit) break;
+        List<ProductRecommendation> recommendations = new ArrayList<>(related.size());
+        int rank = 1;
+        for (RelatedProductIndex.RelatedProduct product : related) {
+            recommendations.add(ProductRecommendation.builder()
+                    .productId(product.productId())
+                    .recommendationType(RecommendationType.RELATED)
+                    .score(BigDecimal.valueOf(product.together()))
+                    .rankPosition(rank++)
+                    .build());
         }
-
-        // IMPORTANT: getProductRecommendation phải không insert DB nếu method là readOnly
-        return relatedProductIds.stream()
-                .limit(limit)
-                .map(this::getProductRecommendation) // đổi sang hàm chỉ đọc
-                .filter(Objects::nonNull)
-                .toList();
+        return toRecommendationDTOs(recommendations);
     }
 
+    /**
+     * Interactions are buffered and written behind by {@link InteractionBuffer};
+     * user_preferences lags by at most one flush interval.
+     */
     public void recordView(Long userId, Long productId, Long categoryId) {
-        UserPreference preference = userPreferenceRepository
-                .findByUserIdAndProductId(userId, productId)
-                .orElse(UserPreference.builder()
-                        .userId(userId)
-                        .productId(productId)
-                        .categoryId(categoryId)
-                        .viewCount(0)
-                        .purchaseCount(0)
-                        .build());
-
-        preference.setViewCount(preference.getViewCount() + 1);
-        preference.setLastViewedAt(Instant.now());
-        userPreferenceRepository.save(preference);
+        recordView(userId, productId, categoryId, 1);
+    }
 
-        log.debug("Recorded view for userId: {}, productId: {}", userId, productId);
+    public void recordView(Long userId, Long productId, Long categoryId, int views) {
+        interactionBuffer.recordView(userId, productId, categoryId, views);
+        log.debug("Recorded {} views for userId: {}, productId: {}", views, userId, productId);
     }
 
     public void recordPurchase(Long userId, Long productId, Long categoryId) {
-        UserPreference preference = userPreferenceRepository
-                .findByUserIdAndProductId(userId, productId)
-                .orElse(UserPreference.builder()
-                        .userId(userId)
-                        .productId(productId)
-                        .categoryId(categoryId)
-                        .viewCount(0)
-                        .purchaseCount(0)
-                        .build());
-
-        preference.setPurchaseCount(preference.getPurchaseCount() + 1);
-        preference.setLastPurchasedAt(Instant.now());
-        userPreferenceRepository.save(preference);
-
-        // Refresh personalized recommendations
-        refreshRecommendations(RecommendationType.PERSONALIZED);
-
+        interactionBuffer.recordPurchase(userId, productId, categoryId);
         log.debug("Recorded purchase for userId: {}, productId: {}", userId, productId);
     }
 
@@ -138,137 +145,94 @@ public class RecommendationService {
         if (userId == null || productId == null || type == null) {
             return;
         }
+        trendingTracker.record(productId, type, 1);
         switch (type) {
             case VIEW -> recordView(userId, productId, categoryId);
             case ADD_TO_CART -> recordView(userId, productId, categoryId);
             case PURCHASE -> recordPurchase(userId, productId, categoryId);
-            case REMOVE_FROM_CART -> {
-                userPreferenceRepository.findByUserIdAndProductId(userId, productId).ifPresent(pref -> {
-                    int newViewCount = Math.max(0, pref.getViewCount() - 1);
-                    pref.setViewCount(newViewCount);
-                    pref.setLastViewedAt(Instant.now());
-                    userPreferenceRepository.save(pref);
-                });
-            }
+            case REMOVE_FROM_CART -> interactionBuffer.recordView(userId, productId, categoryId, -1);
         }
     }
 
     @Transactional(readOnly = true)
     public List<UserPreferenceDTO> getUserPreferences(Long userId) {
-        return userPreferenceRepository.findByUserIdOrderByPreferenceScoreDesc(userId).stream()
+        List<UserPreferenceDTO> cached = recommendationCache.getUserPreferences(userId);
+        if (cached != null) {
+            return cached;
+        }
+        List<UserPreferenceDTO> preferences = userPreferenceRepository.findByUserIdOrderByPreferenceScoreDesc(userId).stream()
                 .map(this::toUserPreferenceDTO)
                 .collect(Collectors.toList());
+        recommendationCache.putUserPreferences(userId, preferences);
+        return preferences;
     }
 
     public void refreshRecommendations(RecommendationType type) {
         log.info("Refreshing recommendations for type: {}", type);
+        recommendationCache.evictType(type);
 
         switch (type) {
             case POPULAR -> refreshPopularRecommendations();
-            case PERSONALIZED -> refreshPersonalizedRecommendations();
+            case PERSONALIZED -> personalizedRefreshScheduler.refreshAll();
             case TRENDING -> refreshTrendingRecommendations();
-            case RELATED -> {
-                // Related recommendations are generated on-demand
-            }
+            case RELATED -> relatedProductIndex.rebuild();
         }
     }
 
     private void refreshPopularRecommendations() {
-        // Get products with highest purchase counts
-        List<UserPreference> popular = userPreferenceRepository.findAll().stream()
-                .collect(Collectors.groupingBy(
-                        UserPreference::getProductId,
-                        Collectors.summingInt(UserPreference::getPurchaseCount)
-                ))
-                .entrySet().stream()
-                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
-                .limit(50)
-                .map(e -> {
-                    UserPreference pref = userPreferenceRepository
-                            .findByUserIdAndProductId(1L, e.getKey())
-                            .orElse(null);
-                    if (pref == null) {
-                        pref = UserPreference.builder()
-                                .productId(e.getKey())
-                                .purchaseCount(e.getValue())
-                                .build();
-                    }
-                    return pref;
-                })
-                .collect(Collectors.toList());
-
-        recommendationRepository.deleteByUserIdAndRecommendationType(null, RecommendationType.POPULAR);
-
-        int rank = 1;
-        for (UserPreference pref : popular) {
-            ProductRecommendation rec = ProductRecommendation.builder()
-                    .productId(pref.getProductId())
-                    .recommendationType(RecommendationType.POPULAR)
-                    .score(pref.getPreferenceScore())
-                    .rankPosition(rank++)
-                    .build();
-            recommendationRepository.save(rec);
-        }
-    }
-
-    private void refreshPersonalizedRecommendations() {
-        // Get all users and generate personalized recommendations
-        Set<Long> userIds = userPreferenceRepository.findAll().stream()
-                .map(UserPreference::getUserId)
-                .collect(Collectors.toSet());
-
-        for (Long userId : userIds) {
-            recommendationRepository.deleteByUserIdAndRecommendationType(userId, RecommendationType.PERSONALIZED);
-
-            List<UserPreference> userPrefs = userPreferenceRepository
-                    .findByUserIdOrderByPreferenceScoreDesc(userId);
-
-            int rank = 1;
-            for (UserPreference pref : userPrefs.stream().limit(20).collect(Collectors.toList())) {
-                ProductRecommendation rec = ProductRecommendation.builder()
-                        .userId(userId)
-                        .productId(pref.getProductId())
-                        .recommendationType(RecommendationType.PERSONALIZED)
-                        .score(pref.getPreferenceScore())
-                        .rankPosition(rank++)
-                        .build();
-                recommendationRepository.save(rec);
-            }
-        }
+        // Aggregation, top-N and insert all run inside Postgres: no preference rows are loaded into the heap
+        int deleted = recommendationRepository.deleteGlobalByType(RecommendationType.POPULAR);
+        int inserted = recommendationRepository.insertPopularFromPreferences(POPULAR_LIMIT);
+        log.info("Refreshed POPULAR recommendations: removed={}, inserted={}", deleted, inserted);
     }
 
     private void refreshTrendingRecommendations() {
-        // Products viewed/purchased in last 7 days
-        Instant sevenDaysAgo = Instant.now().minusSeconds(7 * 24 * 60 * 60);
-        
-        List<UserPreference> trending = userPreferenceRepository.findAll().stream()
-                .filter(pref -> {
-                    Instant lastActivity = pref.getLastViewedAt() != null ? 
-                            pref.getLastViewedAt() : pref.getLastPurchasedAt();
-                    return lastActivity != null && lastActivity.isAfter(sevenDaysAgo);
-                })
-                .sorted(Comparator.comparing(UserPreference::getPreferenceScore).reversed())
-                .limit(50)
-                .collect(Collectors.toList());
+        // Persist a snapshot of the in-memory leaderboard for consumers that read the table
+        List<ProductRecommendation> trending = toTrendingRecommendations(trendingTracker.top(TRENDING_LIMIT));
 
-        recommendationRepository.deleteByUserIdAndRecommendationType(null, RecommendationType.TRENDING);
+        recommendationRepository.deleteGlobalByType(RecommendationType.TRENDING);
+        recommendationRepository.saveAll(trending);
+        log.info("Refreshed TRENDING recommendations: inserted={}", trending.size());
+    }
 
+    private List<ProductRecommendation> toTrendingRecommendations(List<TrendingTracker.TrendingProduct> top) {
+        if (top.isEmpty()) {
+            return List.of();
+        }
+        // normalise to 0..100 against the leader so the score fits DECIMAL(5,2)
+        double best = top.get(0).score();
+        List<ProductRecommendation> result = new ArrayList<>(top.size());
         int rank = 1;
-        for (UserPreference pref : trending) {
-            ProductRecommendation rec = ProductRecommendation.builder()
-                    .productId(pref.getProductId())
+        for (TrendingTracker.TrendingProduct product : top) {
+            result.add(ProductRecommendation.builder()
+                    .productId(product.productId())
                     .recommendationType(RecommendationType.TRENDING)
-                    .score(pref.getPreferenceScore())
+                    .score(BigDecimal.valueOf(product.score() * 100.0 / best).setScale(2, RoundingMode.HALF_UP))
                     .rankPosition(rank++)
-                    .build();
-            recommendationRepository.save(rec);
+                    .build());
         }
+        return result;
     }
 
-    private RecommendationDTO toRecommendationDTO(ProductRecommendation rec) {
-        try {
-            ProductServiceClient.ProductDTO product = productServiceClient.getProductById(rec.getProductId());
-            return RecommendationDTO.builder()
+    /**
+     * Hydrate product details for the whole list with one batched product-service call.
+     * Products that cannot be resolved are dropped.
+     */
+    private List<RecommendationDTO> toRecommendationDTOs(List<ProductRecommendation> recommendations) {
+        if (recommendations.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductServiceClient.ProductDTO> products = productBatchLoader.getProducts(
+                recommendations.stream().map(ProductRecommendation::getProductId).toList());
+
+        List<RecommendationDTO> result = new ArrayList<>(recommendations.size());
+        for (ProductRecommendation rec : recommendations) {
+            ProductServiceClient.ProductDTO product = products.get(rec.getProductId());
+            if (product == null) {
+                log.warn("Skipping recommendation, product details unavailable for productId: {}", rec.getProductId());
+                continue;
+            }
+            result.add(RecommendationDTO.builder()
                     .productId(product.id())
                     .productName(product.name())
                     .productDescription(product.description())
@@ -278,31 +242,9 @@ public class RecommendationService {
                     .recommendationType(rec.getRecommendationType())
                     .score(rec.getScore())
                     .rankPosition(rec.getRankPosition())
-                    .build();
-        } catch (Exception e) {
-            log.error("Failed to fetch product details for productId: {}", rec.getProductId(), e);
-            return null;
-        }
-    }
-
-    private RecommendationDTO getProductRecommendation(Long productId) {
-        try {
-            ProductServiceClient.ProductDTO product = productServiceClient.getProductById(productId);
-            return RecommendationDTO.builder()
-                    .productId(product.id())
-                    .productName(product.name())
-                    .productDescription(product.description())
-                    .price(product.price())
-                    .categoryId(product.categoryId())
-                    .categoryName(product.categoryName())
-                    .recommendationType(RecommendationType.RELATED)
-                    .score(BigDecimal.ZERO)
-                    .rankPosition(0)
-                    .build();
-        } catch (Exception e) {
-            log.error("Failed to fetch product details for productId: {}", productId, e);
-            return null;
+                    .build());
         }
+        return result;
     }
 
     private UserPreferenceDTO toUserPreferenceDTO(UserPreference pref) {
@@ -0,0 +1,144 @@
+package vn.tt.practice.recommendationservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import vn.tt.practice.recommendationservice.config.RecommendationProperties;
+import vn.tt.practice.recommendationservice.repository.UserPreferenceRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Item-to-item co-occurrence index backing /recommendations/similar.
+ * Rebuilt nightly from user_preferences with one SQL aggregate and kept current by
+ * {@link #onNewInteraction} whenever a user touches a product for the first time.
+ */
+@Slf4j
+@Component
+public class RelatedProductIndex {
+
+    private final UserPreferenceRepository userPreferenceRepository;
+    private final int neighbours;
+    private final int capacity;
+    private final int basketSize;
+
+    private volatile Map<Long, Neighbours> index = new ConcurrentHashMap<>();
+
+    public RelatedProductIndex(UserPreferenceRepository userPreferenceRepository, RecommendationProperties properties) {
+        RecommendationProperties.Related cfg = properties.getRelated();
+        this.userPreferenceRepository = userPreferenceRepository;
+        this.neighbours = cfg.getNeighbours();
+        this.capacity = cfg.getNeighbours() * 2;
+        this.basketSize = cfg.getBasketSize();
+    }
+
+    /**
+     * Neighbours of {@code productId}, most co-occurring first.
+     */
+    public List<RelatedProduct> neighboursOf(Long productId, int limit) {
+        Neighbours entry = index.get(productId);
+        return entry == null ? List.of() : entry.top(Math.min(limit, neighbours));
+    }
+
+    public int indexedProducts() {
+        return index.size();
+    }
+
+    /**
+     * A user interacted with {@code productId} for the first time: it now co-occurs with
+     * every other product in the user's basket.
+     */
+    public void onNewInteraction(Long userId, Long productId) {
+        List<Long> basket = userPreferenceRepository.findProductIdsByUserId(userId, PageRequest.of(0, basketSize));
+        Map<Long, Neighbours> current = index;
+        for (Long other : basket) {
+            if (other.equals(productId)) {
+                continue;
+            }
+            current.computeIfAbsent(productId, id -> new Neighbours(capacity)).increment(other, 1);
+            current.computeIfAbsent(other, id -> new Neighbours(capacity)).increment(productId, 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${recommendation.related.rebuild-cron:0 30 3 * * *}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, Neighbours> fresh = new ConcurrentHashMap<>();
+        try (Stream<UserPreferenceRepository.CoOccurrence> rows =
+                     userPreferenceRepository.streamCoOccurrences(basketSize, capacity)) {
+            rows.forEach(row -> fresh.computeIfAbsent(row.getProductId(), id -> new Neighbours(capacity))
+                    .increment(row.getRelatedProductId(), row.getTogether().intValue()));
+        } catch (Exception e) {
+            log.error("Failed to rebuild related product index, keeping the previous one", e);
+            return;
+        }
+        // pairs first seen while the query ran may be missed until the next rebuild; acceptable for a hint list
+        index = fresh;
+        log.info("Related product index rebuilt: {} products in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    public record RelatedProduct(Long productId, int together) {}
+
+    /**
+     * Sparse neighbour list in parallel primitive arrays. When full, a new neighbour only
+     * replaces the weakest one if it is at least as strong.
+     */
+    private static final class Neighbours {
+        private final long[] ids;
+        private final int[] counts;
+        private int size;
+
+        Neighbours(int capacity) {
+            this.ids = new long[capacity];
+            this.counts = new int[capacity];
+        }
+
+        synchronized void increment(long id, int delta) {
+            int weakest = -1;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    counts[i] += delta;
+                    return;
+                }
+                if (weakest < 0 || counts[i] < counts[weakest]) {
+                    weakest = i;
+                }
+            }
+            if (size < ids.length) {
+                ids[size] = id;
+                counts[size] = delta;
+                size++;
+            } else if (counts[weakest] <= delta) {
+                ids[weakest] = id;
+                counts[weakest] = delta;
+            }
+        }
+
+        synchronized List<RelatedProduct> top(int limit) {
+            boolean[] taken = new boolean[size];
+            List<RelatedProduct> result = new ArrayList<>(Math.min(limit, size));
+            // selection over at most 2 * neighbours entries, cheaper than sorting copies
+            while (result.size() < limit && result.size() < size) {
+                int best = -1;
+                for (int i = 0; i < size; i++) {
+                    if (!taken[i] && (best < 0 || counts[i] > counts[best])) {
+                        best = i;
+                    }
+                }
+                taken[best] = true;
+                result.add(new RelatedProduct(ids[best], counts[best]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package vn.tt.practice.recommendationservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.tt.practice.recommendationservice.config.RecommendationProperties;
+import vn.tt.practice.recommendationservice.enums.InteractionType;
+import vn.tt.practice.recommendationservice.repository.UserPreferenceRepository;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * In-memory TRENDING engine.
+ * Each product keeps an hourly ring buffer of weighted event counts plus an exponentially
+ * decayed score; a bounded leaderboard is updated on every event, so reads never touch the DB.
+ */
+@Slf4j
+@Component
+public class TrendingTracker {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    private final UserPreferenceRepository userPreferenceRepository;
+    private final int windowHours;
+    private final double hourlyDecay;
+    private final double expiredWeight;
+
+    private final Map<Long, ProductCounter> counters = new HashMap<>();
+    private final Leaderboard leaderboard;
+    private long currentHour;
+
+    public TrendingTracker(UserPreferenceRepository userPreferenceRepository, RecommendationProperties properties) {
+        RecommendationProperties.Trending cfg = properties.getTrending();
+        this.userPreferenceRepository = userPreferenceRepository;
+        this.windowHours = cfg.getWindowHours();
+        this.hourlyDecay = Math.pow(0.5, 1.0 / cfg.getHalfLifeHours());
+        this.expiredWeight = Math.pow(hourlyDecay, windowHours);
+        this.leaderboard = new Leaderboard(cfg.getTopK());
+        this.currentHour = hourOf(System.currentTimeMillis());
+    }
+
+    public void record(Long productId, InteractionType type, int quantity) {
+        if (productId == null || type == null || type.getScore() <= 0) {
+            return;
+        }
+        long weight = (long) type.getScore() * Math.max(1, quantity);
+        record(productId, weight, hourOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Top products by decayed score, best first. Pure memory read.
+     */
+    public synchronized List<TrendingProduct> top(int limit) {
+        rollTo(hourOf(System.currentTimeMillis()));
+        return leaderboard.best(limit);
+    }
+
+    public synchronized int trackedProducts() {
+        return counters.size();
+    }
+
+    /**
+     * Hour boundary: age every counter, drop products that fell out of the window
+     * and rebuild the leaderboard (decay keeps relative order, expiry does not).
+     */
+    @Scheduled(cron = "0 0 * * * *")
+    public synchronized void rollover() {
+        rollTo(hourOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Warm start from user_preferences. Only lifetime counts are stored, so each row contributes the share of
+     * its counts that falls inside the window (assuming an even rate since the row was created), placed at the
+     * hour of its last activity. Approximate, but avoids an empty leaderboard after a restart without letting
+     * old favourites outrank what is trending now.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        try {
+            Instant since = Instant.ofEpochMilli((hourOf(System.currentTimeMillis()) - windowHours + 1) * HOUR_MS);
+            List<UserPreferenceRepository.HourlyActivity> rows = userPreferenceRepository.findHourlyActivitySince(since);
+            for (UserPreferenceRepository.HourlyActivity row : rows) {
+                long weight = row.getViews() * (long) InteractionType.VIEW.getScore()
+                        + row.getPurchases() * (long) InteractionType.PURCHASE.getScore();
+                if (weight > 0) {
+                    record(row.getProductId(), weight, row.getHour());
+                }
+            }
+            log.info("Trending tracker seeded from {} activity rows, tracking {} products", rows.size(), trackedProducts());
+        } catch (Exception e) {
+            log.warn("Failed to seed trending tracker, starting empty", e);
+        }
+    }
+
+    private synchronized void record(long productId, long weight, long hour) {
+        rollTo(hour);
+        ProductCounter counter = counters.computeIfAbsent(productId, id -> new ProductCounter(windowHours, currentHour));
+        if (counter.add(weight, hour, hourlyDecay)) {
+            leaderboard.offer(productId, counter.score);
+        }
+    }
+
+    private void rollTo(long hour) {
+        if (hour <= currentHour) {
+            return;
+        }
+        currentHour = hour;
+        leaderboard.clear();
+        Iterator<Map.Entry<Long, ProductCounter>> it = counters.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, ProductCounter> entry = it.next();
+            ProductCounter counter = entry.getValue();
+            counter.advanceTo(hour, hourlyDecay, expiredWeight);
+            if (counter.total == 0) {
+                it.remove();
+            } else {
+                leaderboard.offer(entry.getKey(), counter.score);
+            }
+        }
+    }
+
+    private static long hourOf(long epochMillis) {
+        return epochMillis / HOUR_MS;
+    }
+
+    public record TrendingProduct(Long productId, double score) {}
+
+    /**
+     * Hourly ring buffer; {@code score} is the decayed sum relative to {@code lastHour}.
+     */
+    private static final class ProductCounter {
+        private final long[] buckets;
+        private long lastHour;
+        private long total;
+        private double score;
+
+        ProductCounter(int windowHours, long hour) {
+            this.buckets = new long[windowHours];
+            this.lastHour = hour;
+        }
+
+        boolean add(long weight, long hour, double decay) {
+            if (hour <= lastHour - buckets.length || hour > lastHour) {
+                return false;
+            }
+            buckets[(int) (hour % buckets.length)] += weight;
+            total += weight;
+            score += weight * Math.pow(decay, lastHour - hour);
+            return true;
+        }
+
+        void advanceTo(long hour, double decay, double expiredWeight) {
+            if (hour <= lastHour) {
+                return;
+            }
+            if (hour - lastHour >= buckets.length) {
+                Arrays.fill(buckets, 0L);
+                total = 0;
+                score = 0;
+            } else {
+                for (long h = lastHour + 1; h <= hour; h++) {
+                    int idx = (int) (h % buckets.length);
+                    // bucket idx still holds hour h - window, which slides out now
+                    score = score * decay - buckets[idx] * expiredWeight;
+                    total -= buckets[idx];
+                    buckets[idx] = 0L;
+                }
+                if (total == 0 || score < 0) {
+                    score = 0;
+                }
+            }
+            lastHour = hour;
+        }
+    }
+
+    /**
+     * Bounded top-K keyed by product id. Within one hour scores only grow, so an offer is O(log K).
+     */
+    private static final class Leaderboard {
+        private final int capacity;
+        private final Map<Long, TrendingProduct> entries = new HashMap<>();
+        private final TreeSet<TrendingProduct> ranked = new TreeSet<>(
+                Comparator.comparingDouble(TrendingProduct::score).thenComparing(TrendingProduct::productId));
+
+        Leaderboard(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(long productId, double score) {
+            TrendingProduct previous = entries.remove(productId);
+            if (previous != null) {
+                ranked.remove(previous);
+            } else if (entries.size() >= capacity) {
+                TrendingProduct weakest = ranked.first();
+                if (weakest.score() >= score) {
+                    return;
+                }
+                ranked.pollFirst();
+                entries.remove(weakest.productId());
+            }
+            TrendingProduct entry = new TrendingProduct(productId, score);
+            entries.put(productId, entry);
+            ranked.add(entry);
+        }
+
+        List<TrendingProduct> best(int limit) {
+            List<TrendingProduct> result = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (TrendingProduct entry : ranked.descendingSet()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(entry);
+            }
+            return result;
+        }
+
+        void clear() {
+            entries.clear();
+            ranked.clear();
+        }
+    }
+}
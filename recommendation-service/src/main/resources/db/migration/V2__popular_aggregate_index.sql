@@ -0,0 +1,3 @@
+-- Covering index so the POPULAR refresh aggregate can run as an index-only scan
+CREATE INDEX IF NOT EXISTS idx_user_preferences_product_purchase
+    ON user_preferences(product_id) INCLUDE (purchase_count);
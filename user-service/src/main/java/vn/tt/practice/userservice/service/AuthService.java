@@ -17,6 +17,10 @@ import vn.tt.practice.userservice.repository.UserRepository;
 import vn.tt.practice.userservice.security.CustomUserDetails;
 import vn.tt.practice.userservice.security.JwtTokenProvider;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +36,7 @@ public class AuthService {
     private final org.springframework.data.redis.core.StringRedisTemplate redisTemplate;
 
     private static final String BLACKLIST_PREFIX = "bl_";
+    private static final String REVOCATION_CHANNEL = "auth:token:revoked";
 
     @Transactional
     public void register(UserRegisterRequest request) {
@@ -111,5 +116,17 @@ public class AuthService {
         String key = Objects.requireNonNull(BLACKLIST_PREFIX, "BLACKLIST_PREFIX must not be null") + token;
         String value = Objects.toString(uid);
         redisTemplate.opsForValue().set(Objects.requireNonNull(key), Objects.requireNonNull(value), expiration, TimeUnit.MILLISECONDS);
+        // gateways keep a local filter of revoked tokens and only look at bl_* keys for tokens it flags
+        redisTemplate.convertAndSend(REVOCATION_CHANNEL, tokenId(token));
+    }
+
+    // must match JwtUtil.tokenId in api-gateway: Base64 (no padding) of the token's SHA-256
+    private static String tokenId(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
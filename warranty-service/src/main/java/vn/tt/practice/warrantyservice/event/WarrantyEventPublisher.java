@@ -2,8 +2,8 @@ package vn.tt.practice.warrantyservice.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
+import vn.tt.practice.outbox.OutboxPublisher;
 import vn.tt.practice.warrantyservice.config.RabbitMQConfig;
 import vn.tt.practice.warrantyservice.entity.WarrantyClaim;
 
@@ -12,7 +12,7 @@ import vn.tt.practice.warrantyservice.entity.WarrantyClaim;
 @RequiredArgsConstructor
 public class WarrantyEventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     public void publishClaimStatusChanged(WarrantyClaim claim) {
         ClaimStatusChangedEvent event = new ClaimStatusChangedEvent(
@@ -22,12 +22,8 @@ public class WarrantyEventPublisher {
                 claim.getStatus().name()
         );
         String routingKey = "warranty.claim.status.changed";
-        try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.WARRANTY_EXCHANGE, routingKey, event);
-            log.info("Published claim status changed event for claimId: {}", claim.getId());
-        } catch (Exception e) {
-            log.error("Failed to publish claim status changed event", e);
-        }
+        outboxPublisher.publish("WarrantyClaim", claim.getId(), RabbitMQConfig.WARRANTY_EXCHANGE, routingKey, event);
+        log.info("Queued claim status changed event for claimId: {}", claim.getId());
     }
 
     @lombok.Data